@@ -18,6 +18,8 @@ import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -25,8 +27,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.netbeans.modules.android.core.sdk.DalvikPlatform;
 import org.netbeans.modules.xml.api.model.GrammarQuery;
 import org.netbeans.modules.xml.api.model.GrammarResult;
@@ -45,6 +51,20 @@ abstract class AndroidGrammar implements GrammarQuery {
 
   private static final Logger LOG = Logger.getLogger(AndroidGrammar.class.getName());
 
+  /** A complete reference, {@code @type/name} or {@code @package:type/name}. */
+  private static final Pattern REFERENCE = Pattern.compile("@(?:([\\w.]+):)?(\\w+)/(.+)");
+
+  /** Types of resources that can be used for values of attributes with given format. */
+  private static final Map<AttributeInfo.Format, String> VALUE_REFERENCE_TYPES =
+      ImmutableMap.<AttributeInfo.Format, String>builder()
+          .put(AttributeInfo.Format.BOOLEAN, "bool")
+          .put(AttributeInfo.Format.COLOR, "color")
+          .put(AttributeInfo.Format.DIMENSION, "dimen")
+          .put(AttributeInfo.Format.FRACTION, "fraction")
+          .put(AttributeInfo.Format.INTEGER, "integer")
+          .put(AttributeInfo.Format.STRING, "string")
+          .build();
+
   protected final DalvikPlatform platform;
 
   protected final StyleableModel model;
@@ -112,6 +132,21 @@ abstract class AndroidGrammar implements GrammarQuery {
 
   protected abstract Enumeration<GrammarResult> doQueryAttributes(Element ownerElement, String prefix);
 
+  /**
+   * All attributes that can be used in an element with given tag name.
+   * @param parentTagName tag name of the parent element or null for root element
+   */
+  protected abstract Iterable<AttributeInfo> attributesOf(String tagName, String parentTagName);
+
+  /** Checks whether the model describes elements with given tag name. */
+  boolean isKnownElement(String tagName) {
+    return tagName != null && model.getStyleables().containsKey(tagName);
+  }
+
+  ReferenceResolver getReferenceResolver() {
+    return refResolver;
+  }
+
   @Override
   public final Enumeration<GrammarResult> queryNotations(String prefix) {
     LOG.log(Level.FINE, "queryNotatios({0})", prefix);
@@ -149,17 +184,85 @@ abstract class AndroidGrammar implements GrammarQuery {
         };
   }
 
+  /** Reference up to the resource type, e.g. {@code @android:drawable}. */
+  private static String typePrefix(String valuePrefix, ResourceRef ref) {
+    return ref.samePackage ?
+        valuePrefix + ref.resourceType :
+        valuePrefix + ref.packageName + ":" + ref.resourceType;
+  }
+
+  /**
+   * Flag values completing the last flag in a prefix like {@code top|cen},
+   * flags already used in the prefix are not offered again.
+   */
+  private static List<String> flagChoices(AttributeInfo attr, String prefix) {
+    int lastSeparator = prefix.lastIndexOf('|');
+    String usedPart = prefix.substring(0, lastSeparator + 1);
+    String flagPrefix = prefix.substring(lastSeparator + 1);
+    Set<String> used = Sets.newHashSet(Splitter.on('|').trimResults().split(usedPart));
+    List<String> choices = Lists.newArrayList();
+    for (String flag : attr.getFlagValues()) {
+      if (flag.startsWith(flagPrefix) && !used.contains(flag)) {
+        choices.add(usedPart + flag);
+      }
+    }
+    return choices;
+  }
+
+  /**
+   * Types of resources that can be referenced from a value of given attribute.
+   * Empty set means any type, null means that the attribute does not accept references.
+   */
+  private static Set<String> referenceTypes(AttributeInfo attr) {
+    if (attr.hasFormat(AttributeInfo.Format.REFERENCE)) {
+      return Collections.emptySet();
+    }
+    Set<String> types = Sets.newHashSet();
+    for (Map.Entry<AttributeInfo.Format, String> formatType : VALUE_REFERENCE_TYPES.entrySet()) {
+      if (attr.hasFormat(formatType.getKey())) {
+        types.add(formatType.getValue());
+      }
+    }
+    return types.isEmpty() ? null : types;
+  }
+
+  private static boolean isOfType(ResourceRef ref, Set<String> types) {
+    return types.isEmpty() || types.contains(ref.resourceType);
+  }
+
+  /**
+   * Description of a completion item for a value of given attribute.
+   * References to resources with a known value show the value.
+   */
+  protected String describeChoice(AttributeInfo attr, String choice) {
+    Matcher m = REFERENCE.matcher(choice);
+    if (!m.matches()) {
+      return attr.getDescription();
+    }
+    String value = refResolver.getValue(new ResourceRef(m.group(1) == null, m.group(1), m.group(2), m.group(3)));
+    if (value == null) {
+      return attr.getDescription();
+    }
+    String escaped = value.replace("&", "&amp;").replace("<", "&lt;");
+    return attr.getDescription() != null ?
+        "<b>" + escaped + "</b><br>" + attr.getDescription() :
+        "<b>" + escaped + "</b>";
+  }
+
   protected Iterable<String> getChoices(AttributeInfo attr, final String prefix) {
     Iterable<String> values = Collections.emptySet();
-    if (Iterables.contains(attr.getFormats(), AttributeInfo.Format.BOOLEAN)) {
+    if (attr.hasFormat(AttributeInfo.Format.BOOLEAN)) {
       values = Iterables.concat(values, Lists.newArrayList("true", "false"));
     }
-    if (Iterables.contains(attr.getFormats(), AttributeInfo.Format.ENUM)) {
+    if (attr.hasFormat(AttributeInfo.Format.ENUM)) {
       values = Iterables.concat(
           values,
           Iterables.filter(attr.getEnumValues(), startsWithPredicate(prefix)));
     }
-    if (Iterables.contains(attr.getFormats(), AttributeInfo.Format.DIMENSION)) {
+    if (attr.hasFormat(AttributeInfo.Format.FLAG)) {
+      values = Iterables.concat(values, flagChoices(attr, prefix));
+    }
+    if (attr.hasFormat(AttributeInfo.Format.DIMENSION)) {
       int i = 0;
       while (i < prefix.length() && Character.isDigit(prefix.charAt(i))) {
         i++;
@@ -176,7 +279,8 @@ abstract class AndroidGrammar implements GrammarQuery {
         values = Iterables.concat(values, dimensions);
       }
     }
-    if (Iterables.contains(attr.getFormats(), AttributeInfo.Format.REFERENCE)) {
+    final Set<String> refTypes = referenceTypes(attr);
+    if (refTypes != null) {
       Iterable<String> offeredValues = Collections.emptyList();
       if (prefix.startsWith("@") && prefix.indexOf('/') > 0) {
         offeredValues = Iterables.transform(
@@ -185,7 +289,7 @@ abstract class AndroidGrammar implements GrammarQuery {
                 new Predicate<ResourceRef>() {
                   @Override
                   public boolean apply(ResourceRef input) {
-                    if (input.toString().startsWith(prefix)) {
+                    if (isOfType(input, refTypes) && input.toString().startsWith(prefix)) {
                       return true;
                     }
                     return false;
@@ -200,7 +304,11 @@ abstract class AndroidGrammar implements GrammarQuery {
                 new Predicate<ResourceRef>() {
                   @Override
                   public boolean apply(ResourceRef input) {
-                    if ((valuePrefix + input.resourceType).startsWith(prefix)) {
+                    if (!input.samePackage && valuePrefix.length() > 1) {
+                      // only own resources can be declared
+                      return false;
+                    }
+                    if (isOfType(input, refTypes) && typePrefix(valuePrefix, input).startsWith(prefix)) {
                       return true;
                     }
                     return false;
@@ -209,7 +317,7 @@ abstract class AndroidGrammar implements GrammarQuery {
             new Function<ResourceRef, String>() {
               @Override
               public String apply(ResourceRef input) {
-                return valuePrefix + input.resourceType + "/";
+                return typePrefix(valuePrefix, input) + "/";
               }
             }));
       }
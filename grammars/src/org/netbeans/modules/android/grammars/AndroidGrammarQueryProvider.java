@@ -26,7 +26,6 @@ import org.netbeans.modules.xml.api.model.GrammarEnvironment;
 import org.netbeans.modules.xml.api.model.GrammarQuery;
 import org.netbeans.modules.xml.api.model.GrammarQueryManager;
 import org.openide.filesystems.FileObject;
-import org.openide.filesystems.FileUtil;
 import org.openide.util.Enumerations;
 import org.w3c.dom.Node;
 import org.w3c.dom.Element;
@@ -50,10 +49,7 @@ public final class AndroidGrammarQueryProvider extends GrammarQueryManager {
         return Enumerations.singleton(next);
       }
     }
-    if (useLayoutGrammar(ctx)) {
-      return en;
-    }
-    if (useResourcesGrammar(ctx)) {
+    if (resourceFolderType(ctx.getFileObject()) != null) {
       return en;
     }
     LOG.log(Level.FINE, "enabled -> null");
@@ -77,36 +73,32 @@ public final class AndroidGrammarQueryProvider extends GrammarQueryManager {
     return false;
   }
 
-  private boolean useLayoutGrammar(GrammarEnvironment ctx) {
-    FileObject fo = ctx.getFileObject();
-    if (fo == null) {
-      return false;
-    }
-    Project p = FileOwnerQuery.getOwner(fo);
-    if (!AndroidProjects.isAndroidProject(p)) {
-      return false;
-    }
-    FileObject layoutsDir = p.getProjectDirectory().getFileObject("res/layout");
-    if (layoutsDir == null) {
-      return false;
-    }
-    return FileUtil.isParentOf(layoutsDir, fo) && "xml".equals(fo.getExt());
+  /** Checks whether given file is a layout of an Android project. */
+  static boolean isLayoutFile(FileObject fo) {
+    return resourceFolderType(fo) == ResourceFolder.Type.LAYOUT;
   }
 
-  private boolean useResourcesGrammar(GrammarEnvironment ctx) {
-    FileObject fo = ctx.getFileObject();
-    if (fo == null) {
-      return false;
+  /**
+   * Type of resource folder containing given XML file, e.g. layout for {@code res/layout-land/main.xml}.
+   * Returns null if the file is not a resource of an Android project or if there is no grammar
+   * for its folder type; only layout and values folders have one, drawables or menus do not.
+   * Project ownership of res folders is cached, see {@link ResourceRoots}.
+   */
+  private static ResourceFolder.Type resourceFolderType(FileObject fo) {
+    if (fo == null || !"xml".equals(fo.getExt())) {
+      return null;
     }
-    Project p = FileOwnerQuery.getOwner(fo);
-    if (!AndroidProjects.isAndroidProject(p)) {
-      return false;
+    FileObject folder = fo.getParent();
+    FileObject resDir = folder != null ? folder.getParent() : null;
+    if (resDir == null || !"res".equals(resDir.getNameExt())) {
+      return null;
     }
-    FileObject layoutsDir = p.getProjectDirectory().getFileObject("res/values");
-    if (layoutsDir == null) {
-      return false;
+    ResourceFolder resFolder = ResourceFolder.forName(folder.getNameExt());
+    if (resFolder == null
+        || resFolder.getType() != ResourceFolder.Type.LAYOUT && resFolder.getType() != ResourceFolder.Type.VALUES) {
+      return null;
     }
-    return FileUtil.isParentOf(layoutsDir, fo) && "xml".equals(fo.getExt());
+    return ResourceRoots.findOwner(resDir) != null ? resFolder.getType() : null;
   }
 
   @Override
@@ -118,18 +110,28 @@ public final class AndroidGrammarQueryProvider extends GrammarQueryManager {
   public GrammarQuery getGrammar(GrammarEnvironment env) {
     // XXX(radim): fallback to default android platform?
     FileObject fo = env.getFileObject();
-    Project prj = fo != null ? FileOwnerQuery.getOwner(fo) : null;
+    long start = System.nanoTime();
+    ResourceFolder.Type type = resourceFolderType(fo);
+    Project prj = type != null ? ResourceRoots.findOwner(fo.getParent().getParent())
+        : fo != null ? FileOwnerQuery.getOwner(fo) : null;
     DalvikPlatform prjPlatform = prj != null ? AndroidProjects.projectPlatform(prj) : null;
     LOG.log(Level.FINE, "android SDK for {0} is {1}", new Object[] {fo, prjPlatform});
-    if (useResourcesGrammar(env)) {
-      return new ResourcesGrammar();
-    }
-    if (prjPlatform == null) {
-      return null;
-    } else if (useLayoutGrammar(env)) {
-      return AndroidLayoutGrammar.create(prjPlatform, new ProjectRefResolver(prj));
+    long lookupEnd = System.nanoTime();
+    GrammarQuery grammar;
+    if (type == ResourceFolder.Type.VALUES) {
+      grammar = new ResourcesGrammar(prj != null ? StyleResolver.forProject(prj, prjPlatform) : null);
+    } else if (prjPlatform == null) {
+      grammar = null;
+    } else if (type == ResourceFolder.Type.LAYOUT) {
+      grammar = AndroidLayoutGrammar.create(prjPlatform, new ProjectRefResolver(prj, prjPlatform));
     } else {
-      return new AndroidManifestGrammar(prjPlatform);
+      grammar = new AndroidManifestGrammar(prjPlatform);
+    }
+    if (LOG.isLoggable(Level.FINE)) {
+      // loading of platform models is part of grammar creation
+      LOG.log(Level.FINE, "getGrammar({0}): project lookup {1} ms, grammar creation {2} ms",
+          new Object[] {fo, (lookupEnd - start) / 1000000, (System.nanoTime() - lookupEnd) / 1000000});
     }
+    return grammar;
   }
 }
@@ -15,23 +15,19 @@ package org.netbeans.modules.android.grammars;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
-import java.util.SortedMap;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.netbeans.api.project.Project;
 import org.netbeans.modules.android.core.sdk.DalvikPlatform;
-import org.netbeans.modules.android.core.sdk.Tool;
 import org.netbeans.modules.xml.api.model.GrammarResult;
 import org.netbeans.modules.xml.api.model.HintContext;
-import org.openide.filesystems.FileObject;
-import org.openide.filesystems.URLMapper;
 import org.openide.util.Enumerations;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
@@ -77,18 +73,24 @@ class AndroidLayoutGrammar extends AndroidGrammar {
   }
 
   public static AndroidLayoutGrammar create(DalvikPlatform platform, ReferenceResolver rr) {
-    FileObject attrsLayoutFO = platform.findTool(Tool.WIDGETS.getSystemName());
-    LayoutClassesParser parser = new LayoutClassesParser(URLMapper.findURL(attrsLayoutFO, URLMapper.INTERNAL));
-    return new AndroidLayoutGrammar(platform, parser.load(), rr);
+    return new AndroidLayoutGrammar(platform, StyleableModels.getWidgetData(platform), rr);
   }
 
-  private final WidgetData classData;
+  private final LayoutAttributes attributes;
 
   private AndroidLayoutGrammar(
       DalvikPlatform platform, WidgetData classData, ReferenceResolver rr) {
     super(platform, StyleableModels.getAndroidLayoutsModel(
-        platform, new ParentTagResolver(classData)), rr);
-    this.classData = Preconditions.checkNotNull(classData);
+        platform, new ParentTagResolver(Preconditions.checkNotNull(classData))), rr);
+    this.attributes = StyleableModels.getLayoutAttributes(platform, model, classData);
+  }
+
+  @Override
+  protected Iterable<AttributeInfo> attributesOf(String tagName, String parentTagName) {
+    return Iterables.concat(
+        attributes.forWidget(tagName),
+        attributes.forLayoutParams(parentTagName),
+        attributes.forLayoutParams(tagName));
   }
 
   @Override
@@ -98,22 +100,17 @@ class AndroidLayoutGrammar extends AndroidGrammar {
     LOG.log(Level.FINE, "queryAttributes(tag={0} parent={1} prefix={2})", 
         new Object[] {ownerElement, parentTagName, prefix});
     List<GrammarResult> list = new ArrayList<GrammarResult>();
+    Set<String> addedNames = new HashSet<String>();
     NamedNodeMap existingAttributes = ownerElement.getAttributes();
 
-    for (UIClassDescriptor clazz : UIClassDescriptors.findBySimpleName(classData, ownerElement.getTagName())) {
-      for (UIClassDescriptor clz = clazz; clz != null; clz = UIClassDescriptors.findByFQName(classData, clz.getSuperclass())) {
-        addAttrNames(clz.getSimpleName(), prefix, existingAttributes, list);
-      }
-    }
-    for (UIClassDescriptor clazz : Iterables.concat(
-        UIClassDescriptors.findBySimpleName(classData, LayoutElementType.VIEW_GROUP, parentTagName),
-        UIClassDescriptors.findBySimpleName(classData, LayoutElementType.VIEW_GROUP, ownerElement.getTagName()))) {
-      UIClassDescriptor params = UIClassDescriptors.findParamsForName(classData, clazz.getFQClassName());
-      for (UIClassDescriptor paramClz = params;
-          paramClz != null;
-          paramClz = UIClassDescriptors.findByFQName(classData, paramClz.getSuperclass())) {
-        addAttrNames(layoutParamsStyleableName(paramClz.getSimpleName()),
-            prefix, existingAttributes, list);
+    for (AttributeInfo attribute : Iterables.concat(
+        attributes.forWidget(ownerElement.getTagName(), prefix),
+        attributes.forLayoutParams(parentTagName, prefix),
+        attributes.forLayoutParams(ownerElement.getTagName(), prefix))) {
+      String attrName = attribute.getName();
+      if (existingAttributes.getNamedItem(attrName) == null &&
+          addedNames.add(attrName)) {
+        list.add(new SimpleAttr(attrName, attribute.getDescription()));
       }
     }
 
@@ -121,35 +118,6 @@ class AndroidLayoutGrammar extends AndroidGrammar {
     return Collections.enumeration(list);
   }
 
-  /** Convert ViewGroup.LayoutParams -> ViewGroup_Layout */
-  private String layoutParamsStyleableName(String params) {
-    String styleableSuffix = 
-        params.endsWith("Params") ? params.substring(0, params.length() - "Params".length()) : params;
-    return styleableSuffix.replace('.', '_');
-  }
-
-  private void addAttrNames(String name, String prefix, NamedNodeMap existingAttributes, List<GrammarResult> list) {
-    SortedMap<String, StyleableInfo> styleables = model.getStyleables();
-    StyleableInfo elementData = styleables != null ? styleables.get(name) : null;
-    List<AttributeInfo> possibleAttributes =
-        elementData != null ? elementData.getAttributeNames() : Lists.<AttributeInfo>newArrayList();
-
-    for (AttributeInfo attribute : possibleAttributes) {
-      final String attrName = attribute.getName();
-      if (attribute.getName().startsWith(prefix) &&
-          existingAttributes.getNamedItem(attribute.getName()) == null &&
-          !Iterables.any(list, new Predicate<GrammarResult>() {
-
-            @Override
-            public boolean apply(GrammarResult input) {
-              return input.getNodeName().equals(attrName);
-            }
-          })) {
-        list.add(new SimpleAttr(attrName, attribute.getDescription()));
-      }
-    }
-  }
-
   @Override
   public Enumeration<GrammarResult> queryElements(HintContext ctx) {
     LOG.log(Level.FINE, "queryElements({0})", ctx.getCurrentPrefix());
@@ -157,9 +125,8 @@ class AndroidLayoutGrammar extends AndroidGrammar {
     String prefix = ctx.getCurrentPrefix();
 
     List<GrammarResult> list = new ArrayList<GrammarResult>();
-    for(StyleableInfo s : model.getStyleables().values()) {
-      if (s.getName().startsWith(prefix) 
-          && !s.getName().contains("_") 
+    for(StyleableInfo s : model.getStyleablesWithPrefix(prefix)) {
+      if (!s.getName().contains("_") 
           && !s.getName().startsWith("android:")) {
         list.add(new SimpleElement(s.getName(), s.getDescription()));
       }
@@ -189,7 +156,7 @@ class AndroidLayoutGrammar extends AndroidGrammar {
     for (AttributeInfo attr : attributeInfos(ownerElement.getTagName(), parentTagName)) {
       if (attr.getName().equals(attrName)) {
         for (String choice : getChoices(attr, ctx.getCurrentPrefix())) {
-          choices.add(new SimpleText(choice, attr.getDescription()));
+          choices.add(new SimpleText(choice, describeChoice(attr, choice)));
         }
       }
     }
@@ -209,31 +176,6 @@ class AndroidLayoutGrammar extends AndroidGrammar {
   }
 
   private Iterable<AttributeInfo> attributeInfos(String tagName, String parentTagName) {
-    List<AttributeInfo> infos = Lists.newArrayList();
-    for (UIClassDescriptor clazz : UIClassDescriptors.findBySimpleName(classData, tagName)) {
-      for (UIClassDescriptor clz = clazz; clz != null; clz = UIClassDescriptors.findByFQName(classData, clz.getSuperclass())) {
-        addAttrInfos(clz.getSimpleName(), infos);
-      }
-    }
-    if (parentTagName != null) {
-      for (UIClassDescriptor clazz : UIClassDescriptors.findBySimpleName(classData, LayoutElementType.VIEW_GROUP, parentTagName)) {
-        UIClassDescriptor params = UIClassDescriptors.findParamsForName(classData, clazz.getFQClassName());
-        for (UIClassDescriptor paramClz = params;
-            paramClz != null;
-            paramClz = UIClassDescriptors.findByFQName(classData, paramClz.getSuperclass())) {
-          // TODO need to iterate class hierarchy to get full spec of attr infos
-          addAttrInfos(layoutParamsStyleableName(paramClz.getSimpleName()), infos);
-        }
-      }
-    }
-    return infos;
-  }
-
-  private void addAttrInfos(String styleableName, List<AttributeInfo> list) {
-    SortedMap<String, StyleableInfo> styleables = model.getStyleables();
-    StyleableInfo elementData = styleables != null ? styleables.get(styleableName) : null;
-    List<AttributeInfo> possibleAttributes =
-        elementData != null ? elementData.getAttributeNames() : Lists.<AttributeInfo>newArrayList();
-    list.addAll(possibleAttributes);
+    return Iterables.concat(attributes.forWidget(tagName), attributes.forLayoutParams(parentTagName));
   }
 }
@@ -43,20 +43,24 @@ class AndroidManifestGrammar extends AndroidGrammar {
     super(platform, StyleableModels.getAndroidManifestModel(platform), new NullRefResolver());
   }
 
+  @Override
+  protected Iterable<AttributeInfo> attributesOf(String tagName, String parentTagName) {
+    StyleableInfo elementData = tagName != null ? model.getStyleables().get(tagName) : null;
+    return elementData != null ? elementData.getAttributeNames() : Collections.<AttributeInfo>emptyList();
+  }
+
   @Override
   protected Enumeration<GrammarResult> doQueryAttributes(Element ownerElement, String prefix) {
     NamedNodeMap existingAttributes = ownerElement.getAttributes();
     SortedMap<String, StyleableInfo> styleables = model.getStyleables();
     StyleableInfo elementData = styleables != null ? styleables.get(ownerElement.getTagName()) : null;
     List<AttributeInfo> possibleAttributes =
-        elementData != null ? elementData.getAttributeNames() : Lists.<AttributeInfo>newArrayList();
+        elementData != null ? elementData.getAttributesWithPrefix(prefix) : Lists.<AttributeInfo>newArrayList();
 
     List<GrammarResult> list = new ArrayList<GrammarResult>();
     for (AttributeInfo attribute : possibleAttributes) {
-      if (attribute.getName().startsWith(prefix)) {
-        if (existingAttributes.getNamedItem(attribute.getName()) == null) {
-          list.add(new SimpleAttr(attribute.getName(), attribute.getDescription()));
-        }
+      if (existingAttributes.getNamedItem(attribute.getName()) == null) {
+        list.add(new SimpleAttr(attribute.getName(), attribute.getDescription()));
       }
     }
     LOG.log(Level.FINE, "queryAttributes({0}) -> {1}", new Object[]{prefix, list});
@@ -76,9 +80,8 @@ class AndroidManifestGrammar extends AndroidGrammar {
     String prefix = ctx.getCurrentPrefix();
 
     List<GrammarResult> list = new ArrayList<GrammarResult>();
-    for(StyleableInfo s : model.getStyleables().values()) {
-      if (s.getName().startsWith(prefix)
-          && (parentTagName == null || s.getParentNames().contains(parentTagName))) {
+    for(StyleableInfo s : model.getStyleablesWithPrefix(prefix)) {
+      if (parentTagName == null || s.getParentNames().contains(parentTagName)) {
         list.add(new SimpleElement(s.getName(), s.getDescription()));
       }
     }
@@ -103,7 +106,7 @@ class AndroidManifestGrammar extends AndroidGrammar {
     for (AttributeInfo attr : model.getStyleables().get(ownerElement.getNodeName()).getAttributeNames()) {
       if (attr.getName().equals(attrName)) {
         for (String choice : getChoices(attr, ctx.getCurrentPrefix())) {
-          choices.add(new SimpleText(choice, attr.getDescription()));
+          choices.add(new SimpleText(choice, describeChoice(attr, choice)));
         }
       }
     }
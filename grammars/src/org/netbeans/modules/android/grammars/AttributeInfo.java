@@ -14,14 +14,19 @@
 package org.netbeans.modules.android.grammars;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
-import java.util.Collections;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 /**
  * Object that can be included in Android XML file to describe view or view layout element.
+ * <p>
+ * Instances are immutable. Formats are kept in a bit mask, lists of enum and flag values
+ * are shared by all attributes having the same values.
  *
  * @author radim
  */
@@ -38,26 +43,67 @@ class AttributeInfo {
     DIMENSION,
     FRACTION,
     ENUM,
-    FLAG
+    FLAG;
+
+    /** Bit of this format in a format mask. */
+    int mask() {
+      return 1 << ordinal();
+    }
+
+    /** Format with given name as used in {@code format} attribute of attrs.xml or null. */
+    static Format forName(String name) {
+      try {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+      } catch (IllegalArgumentException ex) {
+        return null;
+      }
+    }
   }
 
+  /** Distinct lists of values are few, they are kept for the whole session. */
+  private static final Interner<List<String>> VALUES = Interners.newStrongInterner();
+
   private final String name;
   /*Nullable*/
   private final String description;
-  private final Set<Format> formats = Sets.newHashSet();
-  private final List<String> enums = Lists.newArrayList();
+  private final int formats;
+  private final List<String> enums;
+  private final List<String> flags;
 
-  public AttributeInfo(String name, String description) {
+  AttributeInfo(String name, String description, int formats, List<String> enums, List<String> flags) {
     this.name = Preconditions.checkNotNull(name);
     this.description = description;
+    this.formats = formats;
+    this.enums = internValues(enums);
+    this.flags = internValues(flags);
   }
 
-  void addEnum(String enumValue) {
-    enums.add(enumValue);
+  private static List<String> internValues(List<String> values) {
+    if (values.isEmpty()) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<String> interned = ImmutableList.builder();
+    for (String value : values) {
+      interned.add(value.intern());
+    }
+    return VALUES.intern(interned.build());
   }
 
-  void addFormat(Format format) {
-    formats.add(format);
+  /**
+   * Parses value of {@code format} attribute, a {@code |} separated list of format names, to a format mask.
+   * Unknown names are ignored.
+   */
+  static int parseFormats(String formatAttr) {
+    int mask = 0;
+    if (formatAttr != null) {
+      for (String formatName : formatAttr.split("\\|")) {
+        Format format = Format.forName(formatName);
+        if (format != null) {
+          mask |= format.mask();
+        }
+      }
+    }
+    return mask;
   }
 
   public String getName() {
@@ -68,12 +114,32 @@ class AttributeInfo {
     return description;
   }
 
-  public Iterable<Format> getFormats() {
-    return Collections.unmodifiableSet(formats);
+  /** Formats of this attribute as a bit mask, see {@link Format#mask()}. */
+  int getFormatMask() {
+    return formats;
+  }
+
+  boolean hasFormat(Format format) {
+    return (formats & format.mask()) != 0;
+  }
+
+  public Set<Format> getFormats() {
+    Set<Format> result = EnumSet.noneOf(Format.class);
+    for (Format f : Format.values()) {
+      if (hasFormat(f)) {
+        result.add(f);
+      }
+    }
+    return result;
+  }
+
+  public List<String> getEnumValues() {
+    return enums;
   }
 
-  public Iterable<String> getEnumValues() {
-    return Collections.unmodifiableList(enums);
+  /** Names of flags that can be combined using {@code |}. */
+  public List<String> getFlagValues() {
+    return flags;
   }
 
   @Override
@@ -82,8 +148,9 @@ class AttributeInfo {
         "name=" + name +
         // ", description=" + description +
         ", formats=" +
-        formats +
-        ", enums=" + enums + '}';
+        getFormats() +
+        ", enums=" + enums +
+        ", flags=" + flags + '}';
   }
 
 }
@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.TreeMultimap;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Public resources of the Android framework ({@code @android:type/name}) read from
+ * {@code android.R} inner classes of a platform's {@code android.jar}.
+ * <p>
+ * Class files are read directly, only their constant pool and fields are looked at.
+ */
+class FrameworkResources implements ReferenceResolver {
+
+  static final String ANDROID_PACKAGE = "android";
+
+  private static final String R_CLASS_PREFIX = "android/R$";
+  private static final String CLASS_SUFFIX = ".class";
+  /** Arrays of attribute IDs, they cannot be referenced from XML. */
+  private static final String STYLEABLE = "styleable";
+
+  private static final int CLASS_MAGIC = 0xCAFEBABE;
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_STATIC = 0x0008;
+
+  /** Shared table of platforms whose resources cannot be read. */
+  static final FrameworkResources EMPTY = new FrameworkResources(ImmutableSetMultimap.<String, String>of());
+
+  private final SetMultimap<String, String> resources;
+  private final List<ResourceRef> references;
+
+  FrameworkResources(SetMultimap<String, String> resources) {
+    this.resources = ImmutableSetMultimap.copyOf(Preconditions.checkNotNull(resources));
+    ImmutableList.Builder<ResourceRef> refs = ImmutableList.builder();
+    for (Map.Entry<String, String> resource : this.resources.entries()) {
+      refs.add(new ResourceRef(false, ANDROID_PACKAGE, resource.getKey(), resource.getValue()));
+    }
+    this.references = refs.build();
+  }
+
+  /** Names of framework resources by their type, sorted by type and name. */
+  SetMultimap<String, String> getResources() {
+    return resources;
+  }
+
+  @Override
+  public List<ResourceRef> getReferences() {
+    return references;
+  }
+
+  /** Values of framework resources are not read from the platform. */
+  @Override
+  public String getValue(ResourceRef ref) {
+    return null;
+  }
+
+  /** Reads resource names from {@code android.R$*} classes of given jar. */
+  static FrameworkResources read(File androidJar) throws IOException {
+    TreeMultimap<String, String> resources = TreeMultimap.create();
+    ZipFile zip = new ZipFile(androidJar);
+    try {
+      for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+        ZipEntry entry = entries.nextElement();
+        String name = entry.getName();
+        if (!name.startsWith(R_CLASS_PREFIX) || !name.endsWith(CLASS_SUFFIX)) {
+          continue;
+        }
+        String type = name.substring(R_CLASS_PREFIX.length(), name.length() - CLASS_SUFFIX.length());
+        if (STYLEABLE.equals(type) || type.indexOf('$') >= 0) {
+          continue;
+        }
+        InputStream is = zip.getInputStream(entry);
+        try {
+          resources.putAll(type, readIntConstants(is));
+        } finally {
+          is.close();
+        }
+      }
+    } finally {
+      zip.close();
+    }
+    return new FrameworkResources(resources);
+  }
+
+  /** Names of public static int fields declared by a class file. */
+  static List<String> readIntConstants(InputStream classFile) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(classFile));
+    if (in.readInt() != CLASS_MAGIC) {
+      throw new IOException("not a class file");
+    }
+    in.readUnsignedShort(); // minor version
+    in.readUnsignedShort(); // major version
+    int poolSize = in.readUnsignedShort();
+    String[] utf8 = new String[poolSize];
+    for (int i = 1; i < poolSize; i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case 1: // Utf8
+          utf8[i] = in.readUTF();
+          break;
+        case 7: // Class
+        case 8: // String
+        case 16: // MethodType
+        case 19: // Module
+        case 20: // Package
+          in.skipBytes(2);
+          break;
+        case 15: // MethodHandle
+          in.skipBytes(3);
+          break;
+        case 3: // Integer
+        case 4: // Float
+        case 9: // Fieldref
+        case 10: // Methodref
+        case 11: // InterfaceMethodref
+        case 12: // NameAndType
+        case 17: // Dynamic
+        case 18: // InvokeDynamic
+          in.skipBytes(4);
+          break;
+        case 5: // Long
+        case 6: // Double
+          in.skipBytes(8);
+          i++; // takes two entries
+          break;
+        default:
+          throw new IOException("unknown constant pool tag " + tag);
+      }
+    }
+    in.skipBytes(6); // access flags, this class, super class
+    int interfaces = in.readUnsignedShort();
+    in.skipBytes(2 * interfaces);
+    int fields = in.readUnsignedShort();
+    ImmutableList.Builder<String> names = ImmutableList.builder();
+    for (int i = 0; i < fields; i++) {
+      int access = in.readUnsignedShort();
+      String name = utf8[in.readUnsignedShort()];
+      String descriptor = utf8[in.readUnsignedShort()];
+      int attributes = in.readUnsignedShort();
+      for (int j = 0; j < attributes; j++) {
+        in.skipBytes(2);
+        skipFully(in, in.readInt() & 0xffffffffL);
+      }
+      if ((access & (ACC_PUBLIC | ACC_STATIC)) == (ACC_PUBLIC | ACC_STATIC)
+          && "I".equals(descriptor) && name != null) {
+        names.add(name);
+      }
+    }
+    return names.build();
+  }
+
+  private static void skipFully(DataInputStream in, long n) throws IOException {
+    while (n > 0) {
+      int skipped = in.skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+      if (skipped <= 0) {
+        throw new IOException("truncated class file");
+      }
+      n -= skipped;
+    }
+  }
+}
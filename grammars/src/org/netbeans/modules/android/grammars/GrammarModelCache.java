@@ -0,0 +1,488 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ * Stores parsed platform metadata ({@link StyleableModel}, {@link WidgetData}, {@link FrameworkResources})
+ * in the user directory so that the first completion after IDE start does not need to parse the SDK files again.
+ * <p>
+ * Each entry is identified by a key made of the kind of data, path, size and timestamp of the source file.
+ * Entries are read into a buffer at once, they are not memory mapped so that they can be replaced on Windows.
+ */
+class GrammarModelCache {
+
+  private static final Logger LOG = Logger.getLogger(GrammarModelCache.class.getName());
+
+  private static final int MAGIC = 0x414e4752; // ANGR
+  /** Increase whenever the format changes. */
+  private static final int VERSION = 2;
+
+  private static final String MANIFEST = "manifest";
+  private static final String LAYOUTS = "layouts";
+  private static final String WIDGETS = "widgets";
+  private static final String FRAMEWORK_RESOURCES = "framework-res";
+
+  private static GrammarModelCache instance;
+
+  /*Nullable*/
+  private final File cacheDir;
+
+  GrammarModelCache(File cacheDir) {
+    this.cacheDir = cacheDir;
+  }
+
+  /** Cache in {@code var/cache/android-grammars} of the user directory or a disabled cache outside of the IDE. */
+  static synchronized GrammarModelCache getDefault() {
+    if (instance == null) {
+      String userDir = System.getProperty("netbeans.user");
+      instance = new GrammarModelCache(
+          userDir != null ? new File(userDir, "var/cache/android-grammars") : null);
+    }
+    return instance;
+  }
+
+  StyleableModel loadModel(FileObject attrs, boolean isManifest) {
+    DataInputStream in = open(attrs, isManifest ? MANIFEST : LAYOUTS);
+    if (in == null) {
+      return null;
+    }
+    try {
+      return readModel(in);
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, "cannot read cached model for " + attrs, ex);
+      drop(attrs, isManifest ? MANIFEST : LAYOUTS);
+      return null;
+    } catch (RuntimeException ex) {
+      LOG.log(Level.INFO, "corrupt cached model for " + attrs, ex);
+      drop(attrs, isManifest ? MANIFEST : LAYOUTS);
+      return null;
+    }
+  }
+
+  void storeModel(FileObject attrs, boolean isManifest, StyleableModel model) {
+    DataOutputStream out = create(attrs, isManifest ? MANIFEST : LAYOUTS);
+    if (out == null) {
+      return;
+    }
+    try {
+      writeModel(out, model);
+      out.close();
+      commit(attrs, isManifest ? MANIFEST : LAYOUTS);
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, "cannot cache model for " + attrs, ex);
+      closeQuietly(out);
+    }
+  }
+
+  WidgetData loadWidgets(FileObject widgets) {
+    DataInputStream in = open(widgets, WIDGETS);
+    if (in == null) {
+      return null;
+    }
+    try {
+      return readWidgets(in);
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, "cannot read cached widgets for " + widgets, ex);
+      drop(widgets, WIDGETS);
+      return null;
+    } catch (RuntimeException ex) {
+      LOG.log(Level.INFO, "corrupt cached widgets for " + widgets, ex);
+      drop(widgets, WIDGETS);
+      return null;
+    }
+  }
+
+  void storeWidgets(FileObject widgets, WidgetData data) {
+    DataOutputStream out = create(widgets, WIDGETS);
+    if (out == null) {
+      return;
+    }
+    try {
+      writeWidgets(out, data);
+      out.close();
+      commit(widgets, WIDGETS);
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, "cannot cache widgets for " + widgets, ex);
+      closeQuietly(out);
+    }
+  }
+
+  FrameworkResources loadFrameworkResources(FileObject androidJar) {
+    DataInputStream in = open(androidJar, FRAMEWORK_RESOURCES);
+    if (in == null) {
+      return null;
+    }
+    try {
+      return readFrameworkResources(in);
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, "cannot read cached framework resources for " + androidJar, ex);
+      drop(androidJar, FRAMEWORK_RESOURCES);
+      return null;
+    } catch (RuntimeException ex) {
+      LOG.log(Level.INFO, "corrupt cached framework resources for " + androidJar, ex);
+      drop(androidJar, FRAMEWORK_RESOURCES);
+      return null;
+    }
+  }
+
+  void storeFrameworkResources(FileObject androidJar, FrameworkResources resources) {
+    DataOutputStream out = create(androidJar, FRAMEWORK_RESOURCES);
+    if (out == null) {
+      return;
+    }
+    try {
+      writeFrameworkResources(out, resources);
+      out.close();
+      commit(androidJar, FRAMEWORK_RESOURCES);
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, "cannot cache framework resources for " + androidJar, ex);
+      closeQuietly(out);
+    }
+  }
+
+  private static String key(FileObject source, String kind) {
+    File f = FileUtil.toFile(source);
+    String path = f != null ? f.getAbsolutePath() : source.getPath();
+    return kind + ':' + path + ':' + source.getSize() + ':' + source.lastModified().getTime();
+  }
+
+  private File cacheFile(FileObject source, String kind) {
+    // file name only depends on the source, a changed source overwrites its stale entry
+    File f = FileUtil.toFile(source);
+    String path = f != null ? f.getAbsolutePath() : source.getPath();
+    return new File(cacheDir, kind + '-' + Integer.toHexString(path.hashCode()) + ".bin");
+  }
+
+  private DataInputStream open(FileObject source, String kind) {
+    if (cacheDir == null || source == null) {
+      return null;
+    }
+    File file = cacheFile(source, kind);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      // read the entry in one go instead of mapping it, a mapping keeps the file locked on Windows
+      // until it is garbage collected and a later commit could not replace it
+      FileInputStream fis = new FileInputStream(file);
+      ByteBuffer buffer;
+      try {
+        FileChannel channel = fis.getChannel();
+        buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            throw new EOFException("truncated " + file);
+          }
+        }
+        buffer.flip();
+      } finally {
+        fis.close();
+      }
+      DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !key(source, kind).equals(in.readUTF())) {
+        LOG.log(Level.FINE, "stale cache entry {0}", file);
+        return null;
+      }
+      return in;
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, "cannot open " + file, ex);
+      return null;
+    }
+  }
+
+  private DataOutputStream create(FileObject source, String kind) {
+    if (cacheDir == null || source == null) {
+      return null;
+    }
+    if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+      LOG.log(Level.FINE, "cannot create {0}", cacheDir);
+      return null;
+    }
+    File tmp = new File(cacheDir, cacheFile(source, kind).getName() + ".tmp");
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(key(source, kind));
+      return out;
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, "cannot create " + tmp, ex);
+      return null;
+    }
+  }
+
+  /** Replace the entry by the completely written temporary file. */
+  private void commit(FileObject source, String kind) throws IOException {
+    File file = cacheFile(source, kind);
+    File tmp = new File(cacheDir, file.getName() + ".tmp");
+    if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+      tmp.delete();
+      throw new IOException("cannot write " + file);
+    }
+  }
+
+  /** Delete an unreadable entry, the data is parsed again and stored anew. */
+  private void drop(FileObject source, String kind) {
+    File file = cacheFile(source, kind);
+    if (file.exists() && !file.delete()) {
+      LOG.log(Level.FINE, "cannot delete {0}", file);
+    }
+  }
+
+  private static void closeQuietly(DataOutputStream out) {
+    try {
+      out.close();
+    } catch (IOException ex) {
+      // ignore
+    }
+  }
+
+  static void writeModel(DataOutputStream out, StyleableModel model) throws IOException {
+    // attribute infos are shared between styleables and the lookup table, write each of them once
+    Map<AttributeInfo, Integer> attrIds = new IdentityHashMap<AttributeInfo, Integer>();
+    List<AttributeInfo> attrs = Lists.newArrayList();
+    for (AttributeInfo ai : model.getAttributeValues().values()) {
+      if (!attrIds.containsKey(ai)) {
+        attrIds.put(ai, attrs.size());
+        attrs.add(ai);
+      }
+    }
+    for (StyleableInfo si : model.getStyleables().values()) {
+      for (AttributeInfo ai : si.getAttributeNames()) {
+        if (!attrIds.containsKey(ai)) {
+          attrIds.put(ai, attrs.size());
+          attrs.add(ai);
+        }
+      }
+    }
+
+    out.writeInt(attrs.size());
+    for (AttributeInfo ai : attrs) {
+      out.writeUTF(ai.getName());
+      writeNullable(out, ai.getDescription());
+      out.writeInt(ai.getFormatMask());
+      writeStrings(out, ai.getEnumValues());
+      writeStrings(out, ai.getFlagValues());
+    }
+
+    out.writeInt(model.getAttributeValues().size());
+    for (Map.Entry<String, AttributeInfo> entry : model.getAttributeValues().entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(attrIds.get(entry.getValue()));
+    }
+
+    out.writeInt(model.getStyleables().size());
+    for (StyleableInfo si : model.getStyleables().values()) {
+      out.writeUTF(si.getName());
+      writeNullable(out, si.getDescription());
+      out.writeInt(si.getParentNames().size());
+      for (String parent : si.getParentNames()) {
+        writeNullable(out, parent);
+      }
+      out.writeInt(si.getAttributeNames().size());
+      for (AttributeInfo ai : si.getAttributeNames()) {
+        out.writeInt(attrIds.get(ai));
+      }
+    }
+  }
+
+  static StyleableModel readModel(DataInputStream in) throws IOException {
+    StyleableModel model = new StyleableModel();
+
+    int attrCount = in.readInt();
+    // no capacity from the entry, a corrupt count must not allocate a huge list
+    List<AttributeInfo> attrs = Lists.newArrayList();
+    for (int i = 0; i < attrCount; i++) {
+      String name = in.readUTF();
+      String description = readNullable(in);
+      int formats = in.readInt();
+      List<String> enums = readStrings(in);
+      attrs.add(model.createAttribute(name, description, formats, enums, readStrings(in)));
+    }
+
+    for (int i = in.readInt(); i > 0; i--) {
+      model.addAttribute(in.readUTF(), attrs.get(readIndex(in, attrs.size())));
+    }
+
+    for (int i = in.readInt(); i > 0; i--) {
+      String name = in.readUTF();
+      String description = readNullable(in);
+      Set<String> parents = Sets.newHashSet();
+      for (int j = in.readInt(); j > 0; j--) {
+        parents.add(readNullable(in));
+      }
+      StyleableInfo si = model.createStyleable(name, description, parents);
+      for (int j = in.readInt(); j > 0; j--) {
+        si.addAttribute(attrs.get(readIndex(in, attrs.size())));
+      }
+    }
+    model.freeze();
+    return model;
+  }
+
+  static void writeWidgets(DataOutputStream out, WidgetData data) throws IOException {
+    out.writeInt(data.classes.size());
+    for (UIClassDescriptor clz : data.classes) {
+      out.writeUTF(clz.getFQClassName());
+      out.writeUTF(clz.getSuperclass());
+      out.writeUTF(clz.getSimpleName());
+    }
+    out.writeInt(data.data.size());
+    for (Map.Entry<LayoutElementType, Collection<UIClassDescriptor>> entry : data.data.entrySet()) {
+      out.writeByte(entry.getKey().ordinal());
+      out.writeInt(entry.getValue().size());
+      for (UIClassDescriptor clz : entry.getValue()) {
+        out.writeUTF(clz.getFQClassName());
+      }
+    }
+  }
+
+  static WidgetData readWidgets(DataInputStream in) throws IOException {
+    Map<String, UIClassDescriptor> classes = Maps.newLinkedHashMap();
+    for (int i = in.readInt(); i > 0; i--) {
+      UIClassDescriptor clz = new LayoutClassesParser.UIClassDescriptorImpl(in.readUTF(), in.readUTF(), in.readUTF());
+      classes.put(clz.getFQClassName(), clz);
+    }
+    Map<LayoutElementType, Collection<UIClassDescriptor>> data =
+        new EnumMap<LayoutElementType, Collection<UIClassDescriptor>>(LayoutElementType.class);
+    LayoutElementType[] allTypes = LayoutElementType.values();
+    for (int i = in.readInt(); i > 0; i--) {
+      LayoutElementType type = allTypes[readIndex(in.readByte(), allTypes.length)];
+      Set<UIClassDescriptor> typeClasses = Sets.newHashSet();
+      for (int j = in.readInt(); j > 0; j--) {
+        UIClassDescriptor clz = classes.get(in.readUTF());
+        if (clz == null) {
+          throw new IOException("inconsistent widget data");
+        }
+        typeClasses.add(clz);
+      }
+      data.put(type, typeClasses);
+    }
+    return new WidgetData(data, Sets.newHashSet(classes.values()));
+  }
+
+  static void writeFrameworkResources(DataOutputStream out, FrameworkResources resources) throws IOException {
+    Map<String, Collection<String>> byType = resources.getResources().asMap();
+    out.writeInt(byType.size());
+    for (Map.Entry<String, Collection<String>> entry : byType.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue().size());
+      for (String name : entry.getValue()) {
+        out.writeUTF(name);
+      }
+    }
+  }
+
+  static FrameworkResources readFrameworkResources(DataInputStream in) throws IOException {
+    SetMultimap<String, String> resources = LinkedHashMultimap.create();
+    for (int i = in.readInt(); i > 0; i--) {
+      String type = in.readUTF();
+      for (int j = in.readInt(); j > 0; j--) {
+        resources.put(type, in.readUTF());
+      }
+    }
+    return new FrameworkResources(resources);
+  }
+
+  private static int readIndex(DataInputStream in, int size) throws IOException {
+    return readIndex(in.readInt(), size);
+  }
+
+  /** Check an index read from an entry, a corrupt entry must not fail with a runtime exception. */
+  private static int readIndex(int index, int size) throws IOException {
+    if (index < 0 || index >= size) {
+      throw new IOException("index " + index + " out of range " + size);
+    }
+    return index;
+  }
+
+  private static void writeNullable(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (String s : strings) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static List<String> readStrings(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    List<String> strings = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      strings.add(in.readUTF());
+    }
+    return strings;
+  }
+
+  /** Reads a buffer. */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.api.project.Project;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.project.api.AndroidProjects;
+import org.netbeans.modules.android.project.spi.AndroidProjectWarmUp;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Loads models used by layout and manifest grammars of an opened project
+ * so that the first completion does not wait for them.
+ */
+@ServiceProvider(service = AndroidProjectWarmUp.class)
+public class GrammarWarmUp implements AndroidProjectWarmUp {
+
+  private static final Logger LOG = Logger.getLogger(GrammarWarmUp.class.getName());
+
+  @Override
+  public void warmUp(Project project) {
+    DalvikPlatform platform = AndroidProjects.projectPlatform(project);
+    if (platform == null) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    StyleableModel manifestModel = StyleableModels.getAndroidManifestModel(platform);
+    if (manifestModel != null) {
+      manifestModel.getStyleablesWithPrefix("");
+    }
+    if (Thread.currentThread().isInterrupted()) {
+      return;
+    }
+    AndroidLayoutGrammar.create(platform, new NullRefResolver()).getStyleableModel().getStyleablesWithPrefix("");
+    if (Thread.currentThread().isInterrupted()) {
+      return;
+    }
+    StyleableModels.getFrameworkResources(platform);
+    for (ProjectResourceIndex index : ProjectResourceIndex.forProjectAndLibraries(project)) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      index.getResources();
+    }
+    LOG.log(Level.FINE, "grammars of {0} ready in {1} ms",
+        new Object[] {project, System.currentTimeMillis() - start});
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Complete attribute lists of layout elements of one platform.
+ * A widget has the attributes of its class and all its superclasses, a view group
+ * offers layout parameters of its LayoutParams class and their superclasses to its children.
+ * Lists are computed on first use and reused by all layout grammars of the platform.
+ */
+class LayoutAttributes {
+
+  private final StyleableModel model;
+  private final WidgetData classData;
+
+  private final ConcurrentMap<String, PrefixIndex<AttributeInfo>> widgetAttributes =
+      new ConcurrentHashMap<String, PrefixIndex<AttributeInfo>>();
+  private final ConcurrentMap<String, PrefixIndex<AttributeInfo>> layoutParamsAttributes =
+      new ConcurrentHashMap<String, PrefixIndex<AttributeInfo>>();
+
+  LayoutAttributes(StyleableModel model, WidgetData classData) {
+    this.model = Preconditions.checkNotNull(model);
+    this.classData = Preconditions.checkNotNull(classData);
+  }
+
+  /** Checks whether this table was built from given data. */
+  boolean isFor(StyleableModel model, WidgetData classData) {
+    return this.model == model && this.classData == classData;
+  }
+
+  /**
+   * Attributes of element with given tag name including inherited ones, sorted by name.
+   * When an attribute is declared by more classes the most specific declaration is used.
+   */
+  List<AttributeInfo> forWidget(String tagName) {
+    return forWidget(tagName, "");
+  }
+
+  /** Attributes of element with given tag name starting with given prefix, sorted by name. */
+  List<AttributeInfo> forWidget(String tagName, String prefix) {
+    if (tagName == null) {
+      return Collections.emptyList();
+    }
+    PrefixIndex<AttributeInfo> attrs = widgetAttributes.get(tagName);
+    if (attrs == null) {
+      Map<String, AttributeInfo> collected = Maps.newLinkedHashMap();
+      for (UIClassDescriptor clazz : UIClassDescriptors.findBySimpleName(classData, tagName)) {
+        for (UIClassDescriptor clz = clazz; clz != null; clz = UIClassDescriptors.findByFQName(classData, clz.getSuperclass())) {
+          collect(clz.getSimpleName(), collected);
+        }
+      }
+      attrs = PrefixIndex.create(collected.values(), PrefixIndex.ATTRIBUTE_NAME);
+      widgetAttributes.putIfAbsent(tagName, attrs);
+    }
+    return attrs.withPrefix(prefix);
+  }
+
+  /**
+   * Layout parameters that a view group with given tag name offers to its children, sorted by name.
+   * When a parameter is declared by more classes the most specific declaration is used.
+   */
+  List<AttributeInfo> forLayoutParams(String viewGroupTagName) {
+    return forLayoutParams(viewGroupTagName, "");
+  }
+
+  /** Layout parameters of a view group starting with given prefix, sorted by name. */
+  List<AttributeInfo> forLayoutParams(String viewGroupTagName, String prefix) {
+    if (viewGroupTagName == null) {
+      return Collections.emptyList();
+    }
+    PrefixIndex<AttributeInfo> attrs = layoutParamsAttributes.get(viewGroupTagName);
+    if (attrs == null) {
+      Map<String, AttributeInfo> collected = Maps.newLinkedHashMap();
+      for (UIClassDescriptor clazz :
+          UIClassDescriptors.findBySimpleName(classData, LayoutElementType.VIEW_GROUP, viewGroupTagName)) {
+        UIClassDescriptor params = UIClassDescriptors.findParamsForName(classData, clazz.getFQClassName());
+        for (UIClassDescriptor paramClz = params;
+            paramClz != null;
+            paramClz = UIClassDescriptors.findByFQName(classData, paramClz.getSuperclass())) {
+          collect(layoutParamsStyleableName(paramClz.getSimpleName()), collected);
+        }
+      }
+      attrs = PrefixIndex.create(collected.values(), PrefixIndex.ATTRIBUTE_NAME);
+      layoutParamsAttributes.putIfAbsent(viewGroupTagName, attrs);
+    }
+    return attrs.withPrefix(prefix);
+  }
+
+  /** Convert ViewGroup.LayoutParams -&gt; ViewGroup_Layout */
+  static String layoutParamsStyleableName(String params) {
+    String styleableSuffix =
+        params.endsWith("Params") ? params.substring(0, params.length() - "Params".length()) : params;
+    return styleableSuffix.replace('.', '_');
+  }
+
+  private void collect(String styleableName, Map<String, AttributeInfo> collected) {
+    StyleableInfo elementData = model.getStyleables().get(styleableName);
+    if (elementData == null) {
+      return;
+    }
+    for (AttributeInfo attribute : elementData.getAttributeNames()) {
+      if (!collected.containsKey(attribute.getName())) {
+        collected.put(attribute.getName(), attribute);
+      }
+    }
+  }
+}
@@ -136,7 +136,7 @@ class LayoutClassesParser {
 
   }
 
-  private static class UIClassDescriptorImpl implements UIClassDescriptor {
+  static class UIClassDescriptorImpl implements UIClassDescriptor {
 
     private final String clzName;
     private final String superClzName;
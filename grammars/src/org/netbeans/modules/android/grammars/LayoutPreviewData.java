@@ -0,0 +1,387 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.project.api.AndroidProjects;
+import org.openide.filesystems.FileObject;
+import org.openide.xml.XMLUtil;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Headless data for a preview of a layout file: a tree of views with their widget classes
+ * and attribute values where references to resources are resolved.
+ * <p>
+ * Like {@link ResourceValidator} it remembers analyzed elements between runs and only elements
+ * whose tag, parent or attributes changed are analyzed again. The tree of a file is cached
+ * until the file changes.
+ */
+class LayoutPreviewData {
+
+  private static final Logger LOG = Logger.getLogger(LayoutPreviewData.class.getName());
+
+  private static final Pattern DIMENSION = Pattern.compile("(-?(?:\\d+\\.?\\d*|\\.\\d+))(px|dp|dip|sp|pt|in|mm)");
+  private static final Pattern REFERENCE = Pattern.compile("@(?:([\\w.]+):)?(\\w+)/(.+)");
+  private static final String NEW_ID_PREFIX = "@+";
+
+  private static final Map<FileObject, LayoutPreviewData> previews = new WeakHashMap<FileObject, LayoutPreviewData>();
+
+  /** Screen densities used to convert dimensions to pixels. */
+  enum Density {
+    LDPI(120),
+    MDPI(160),
+    TVDPI(213),
+    HDPI(240),
+    XHDPI(320),
+    XXHDPI(480);
+
+    final int dpi;
+
+    private Density(int dpi) {
+      this.dpi = dpi;
+    }
+  }
+
+  /** A view of the layout with resolved attribute values. */
+  static final class ViewNode {
+    final String tag;
+    /** Class of the view or null for custom views and unknown elements. */
+    final UIClassDescriptor widget;
+    /** Attributes as they are written in the file. */
+    final Map<String, String> attributes;
+    /** Attribute values with references to resources replaced by their values when they are known. */
+    final Map<String, String> values;
+    final List<ViewNode> children;
+    final int line;
+    private final ElementData data;
+
+    private ViewNode(String tag, ElementData data, Map<String, String> values, List<ViewNode> children, int line) {
+      this.tag = tag;
+      this.data = data;
+      this.widget = data.widget;
+      this.attributes = data.attributes;
+      this.values = values;
+      this.children = children;
+      this.line = line;
+    }
+
+    /**
+     * Size of a dimension attribute in pixels for given density.
+     * Returns null when the attribute is not a dimension or its value is not known, e.g.
+     * for {@code wrap_content}.
+     */
+    Float getDimension(String attrName, Density density) {
+      if (!data.dimensionAttrs.contains(attrName)) {
+        return null;
+      }
+      String value = values.get(attrName);
+      return value != null ? toPixels(value, density) : null;
+    }
+
+    /** Sizes of all dimension attributes with known values in pixels for given density. */
+    Map<String, Float> getDimensions(Density density) {
+      Map<String, Float> dimensions = Maps.newTreeMap();
+      for (String attrName : data.dimensionAttrs) {
+        Float size = getDimension(attrName, density);
+        if (size != null) {
+          dimensions.put(attrName, size);
+        }
+      }
+      return dimensions;
+    }
+
+    @Override
+    public String toString() {
+      return "ViewNode{" + "tag=" + tag + ", line=" + line + ", children=" + children.size() + '}';
+    }
+  }
+
+  /** Result of analysis of one element that does not depend on other elements or resources. */
+  private static final class ElementData {
+    final UIClassDescriptor widget;
+    final Map<String, String> attributes;
+    final List<String> dimensionAttrs;
+    /** Names of attributes whose values are references to resources. */
+    final List<String> references;
+
+    ElementData(UIClassDescriptor widget, Map<String, String> attributes,
+        List<String> dimensionAttrs, List<String> references) {
+      this.widget = widget;
+      this.attributes = attributes;
+      this.dimensionAttrs = dimensionAttrs;
+      this.references = references;
+    }
+  }
+
+  private final AndroidLayoutGrammar grammar;
+  private final WidgetData classData;
+
+  /** Analyzed elements from the last run keyed by element text. */
+  private Map<String, ElementData> analyzedElements = Collections.emptyMap();
+  /** Number of elements analyzed (not reused) in the last run. */
+  int lastAnalyzedCount;
+
+  /** The file, held weakly as it is the key of the cache of previews. */
+  private Reference<FileObject> file;
+  private Date fileTimestamp;
+  private ViewNode fileTree;
+
+  LayoutPreviewData(AndroidLayoutGrammar grammar, WidgetData classData) {
+    this.grammar = Preconditions.checkNotNull(grammar);
+    this.classData = Preconditions.checkNotNull(classData);
+  }
+
+  /**
+   * Returns preview data of a layout file of an Android project, shared by all its users.
+   * Returns null for other files.
+   */
+  static LayoutPreviewData forFile(FileObject fo) {
+    if (!AndroidGrammarQueryProvider.isLayoutFile(fo)) {
+      return null;
+    }
+    Project prj = FileOwnerQuery.getOwner(fo);
+    DalvikPlatform platform = prj != null ? AndroidProjects.projectPlatform(prj) : null;
+    if (platform == null) {
+      return null;
+    }
+    synchronized (previews) {
+      LayoutPreviewData preview = previews.get(fo);
+      if (preview == null || preview.grammar.platform != platform) {
+        preview = new LayoutPreviewData(
+            AndroidLayoutGrammar.create(platform, new ProjectRefResolver(prj, platform)),
+            StyleableModels.getWidgetData(platform));
+        preview.file = new WeakReference<FileObject>(fo);
+        previews.put(fo, preview);
+      }
+      return preview;
+    }
+  }
+
+  /**
+   * Tree of the saved content of the file. It is parsed again only when the file was modified,
+   * otherwise only references are resolved again and views whose values did not change are reused.
+   * Returns null if the file cannot be read or it is not a layout.
+   */
+  synchronized ViewNode getTree() {
+    Preconditions.checkState(file != null, "not created for a file");
+    FileObject fo = file.get();
+    if (fo == null) {
+      return null;
+    }
+    Date timestamp = fo.lastModified();
+    if (fileTree == null || !timestamp.equals(fileTimestamp)) {
+      try {
+        InputStream is = fo.getInputStream();
+        try {
+          fileTree = build(new InputSource(is));
+        } finally {
+          is.close();
+        }
+        fileTimestamp = timestamp;
+      } catch (IOException ex) {
+        LOG.log(Level.FINE, null, ex);
+        return null;
+      }
+    } else {
+      fileTree = refresh(fileTree);
+    }
+    return fileTree;
+  }
+
+  /** Resolves references of a tree again, returns the same view if nothing changed. */
+  private ViewNode refresh(ViewNode view) {
+    boolean changed = false;
+    List<ViewNode> children = Lists.newArrayListWithCapacity(view.children.size());
+    for (ViewNode child : view.children) {
+      ViewNode refreshed = refresh(child);
+      changed |= refreshed != child;
+      children.add(refreshed);
+    }
+    Map<String, String> values = resolveValues(view.data);
+    if (!changed && values.equals(view.values)) {
+      return view;
+    }
+    return new ViewNode(view.tag, view.data, values, ImmutableList.copyOf(children), view.line);
+  }
+
+  /**
+   * Builds a tree of the document, e.g. of text of an editor.
+   * Returns null if the document contains no element.
+   */
+  synchronized ViewNode build(InputSource source) {
+    final Map<String, ElementData> current = Maps.newHashMap();
+    final LinkedList<List<ViewNode>> openChildren = Lists.newLinkedList();
+    final LinkedList<Object[]> openElements = Lists.newLinkedList();
+    final List<ViewNode> roots = Lists.newArrayListWithCapacity(1);
+    lastAnalyzedCount = 0;
+
+    DefaultHandler handler = new DefaultHandler() {
+      private Locator locator;
+
+      @Override
+      public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
+      }
+
+      @Override
+      public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+        Object[] parent = openElements.peek();
+        String parentTag = parent != null ? (String) parent[0] : null;
+        String key = elementKey(qName, parentTag, attrs);
+        ElementData data = current.get(key);
+        if (data == null) {
+          data = analyzedElements.get(key);
+          if (data == null) {
+            data = analyzeElement(qName, parentTag, attrs);
+            lastAnalyzedCount++;
+          }
+          current.put(key, data);
+        }
+        int line = locator != null ? locator.getLineNumber() : -1;
+        openElements.push(new Object[] {qName, data, line});
+        openChildren.push(Lists.<ViewNode>newArrayList());
+      }
+
+      @Override
+      public void endElement(String uri, String localName, String qName) throws SAXException {
+        Object[] element = openElements.pop();
+        List<ViewNode> children = openChildren.pop();
+        ElementData data = (ElementData) element[1];
+        ViewNode view = new ViewNode(qName, data, resolveValues(data),
+            ImmutableList.copyOf(children), (Integer) element[2]);
+        (openChildren.isEmpty() ? roots : openChildren.peek()).add(view);
+      }
+    };
+    try {
+      XMLReader reader = XMLUtil.createXMLReader();
+      reader.setContentHandler(handler);
+      reader.parse(source);
+    } catch (SAXException ex) {
+      // broken document while it is edited, there is no tree
+      LOG.log(Level.FINE, "layout not parsed: {0}", ex.getMessage());
+      return null;
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, null, ex);
+      return null;
+    }
+    analyzedElements = current;
+    return Iterables.getFirst(roots, null);
+  }
+
+  private static String elementKey(String tag, String parentTag, Attributes attrs) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(parentTag).append('>').append(tag);
+    for (int i = 0; i < attrs.getLength(); i++) {
+      sb.append('\u0000').append(attrs.getQName(i)).append('=').append(attrs.getValue(i));
+    }
+    return sb.toString();
+  }
+
+  private ElementData analyzeElement(String tag, String parentTag, Attributes attrs) {
+    UIClassDescriptor widget = tag.indexOf('.') >= 0 ?
+        UIClassDescriptors.findByFQName(classData, tag) :
+        Iterables.getFirst(UIClassDescriptors.findBySimpleName(classData, tag), null);
+    Map<String, AttributeInfo> known = Maps.newHashMap();
+    for (AttributeInfo attribute : grammar.attributesOf(tag, parentTag)) {
+      if (!known.containsKey(attribute.getName())) {
+        known.put(attribute.getName(), attribute);
+      }
+    }
+    ImmutableMap.Builder<String, String> attributes = ImmutableMap.builder();
+    ImmutableList.Builder<String> dimensionAttrs = ImmutableList.builder();
+    ImmutableList.Builder<String> references = ImmutableList.builder();
+    for (int i = 0; i < attrs.getLength(); i++) {
+      String name = attrs.getQName(i);
+      String value = attrs.getValue(i);
+      attributes.put(name, value);
+      AttributeInfo attribute = known.get(name);
+      if (attribute != null && attribute.hasFormat(AttributeInfo.Format.DIMENSION)) {
+        dimensionAttrs.add(name);
+      }
+      if (!value.startsWith(NEW_ID_PREFIX) && REFERENCE.matcher(value).matches()) {
+        references.add(name);
+      }
+    }
+    return new ElementData(widget, attributes.build(), dimensionAttrs.build(), references.build());
+  }
+
+  /** Attribute values with resolved references. Resources can change so this is done in each run. */
+  private Map<String, String> resolveValues(ElementData data) {
+    if (data.references.isEmpty()) {
+      return data.attributes;
+    }
+    Map<String, String> values = Maps.newHashMap(data.attributes);
+    for (String name : data.references) {
+      Matcher m = REFERENCE.matcher(data.attributes.get(name));
+      if (m.matches()) {
+        boolean samePackage = m.group(1) == null;
+        String value = grammar.getReferenceResolver().getValue(
+            new ResourceRef(samePackage, m.group(1), m.group(2), m.group(3)));
+        if (value != null) {
+          values.put(name, value);
+        }
+      }
+    }
+    return Collections.unmodifiableMap(values);
+  }
+
+  /** Converts a dimension to pixels, returns null if the value is not a dimension. */
+  static Float toPixels(String value, Density density) {
+    Matcher m = DIMENSION.matcher(value.trim());
+    if (!m.matches()) {
+      return null;
+    }
+    float size = Float.parseFloat(m.group(1));
+    String unit = m.group(2);
+    if ("px".equals(unit)) {
+      return size;
+    } else if ("dp".equals(unit) || "dip".equals(unit) || "sp".equals(unit)) {
+      // default font scale
+      return size * density.dpi / Density.MDPI.dpi;
+    } else if ("pt".equals(unit)) {
+      return size * density.dpi / 72;
+    } else if ("in".equals(unit)) {
+      return size * density.dpi;
+    } else {
+      return size * density.dpi / 25.4f;
+    }
+  }
+}
@@ -29,4 +29,9 @@ class NullRefResolver implements ReferenceResolver {
   public List<ResourceRef> getReferences() {
     return Collections.emptyList();
   }
+
+  @Override
+  public String getValue(ResourceRef ref) {
+    return null;
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable sorted array of names with binary search for all values whose name starts with a prefix.
+ * Used for completion as-you-type over styleables and attributes.
+ */
+final class PrefixIndex<T> {
+
+  private final String[] keys;
+  private final List<T> values;
+
+  private PrefixIndex(String[] keys, List<T> values) {
+    this.keys = keys;
+    this.values = values;
+  }
+
+  /** Creates an index of given values. Values with equal names keep their order. */
+  static <T> PrefixIndex<T> create(Iterable<? extends T> values, final Function<? super T, String> nameFunction) {
+    List<T> sorted = Lists.newArrayList(values);
+    Collections.sort(sorted, new Comparator<T>() {
+
+      @Override
+      public int compare(T o1, T o2) {
+        return nameFunction.apply(o1).compareTo(nameFunction.apply(o2));
+      }
+    });
+    String[] keys = new String[sorted.size()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = nameFunction.apply(sorted.get(i));
+    }
+    return new PrefixIndex<T>(keys, ImmutableList.copyOf(sorted));
+  }
+
+  /** All values sorted by name. */
+  List<T> all() {
+    return values;
+  }
+
+  /** Values whose name starts with given prefix, sorted by name. The result is a view, not a copy. */
+  List<T> withPrefix(String prefix) {
+    if (prefix == null || prefix.length() == 0) {
+      return values;
+    }
+    int from = lowerBound(prefix);
+    // names with the prefix form a contiguous range, find its end in the rest of the array
+    int lo = from, hi = keys.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (keys[mid].startsWith(prefix)) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return values.subList(from, lo);
+  }
+
+  int size() {
+    return keys.length;
+  }
+
+  /** First position whose name is not less than given key. */
+  private int lowerBound(String key) {
+    int lo = 0, hi = keys.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (keys[mid].compareTo(key) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  static final Function<StyleableInfo, String> STYLEABLE_NAME = new Function<StyleableInfo, String>() {
+
+    @Override
+    public String apply(StyleableInfo input) {
+      return input.getName();
+    }
+  };
+
+  static final Function<AttributeInfo, String> ATTRIBUTE_NAME = new Function<AttributeInfo, String>() {
+
+    @Override
+    public String apply(AttributeInfo input) {
+      return input.getName();
+    }
+  };
+}
@@ -15,82 +15,142 @@ package org.netbeans.modules.android.grammars;
 
 import com.android.sdklib.xml.ManifestData;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import java.io.IOException;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.TreeMultimap;
 import java.util.Collections;
 import java.util.List;
-import java.util.logging.Level;
+import java.util.Map;
 import java.util.logging.Logger;
-import javax.lang.model.element.TypeElement;
-import javax.lang.model.element.VariableElement;
-import javax.lang.model.util.ElementFilter;
-import org.netbeans.api.java.source.*;
-import org.netbeans.api.java.source.JavaSource.Phase;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.netbeans.api.project.Project;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
 import org.netbeans.modules.android.project.AndroidProjectUtil;
-import org.openide.filesystems.FileObject;
 
 /**
+ * Resolves references to resources of a project using {@link ProjectResourceIndex}
+ * and optionally to public resources of its platform.
+ * Resources of library projects are merged into the namespace of the project like the build does.
  *
  * @author radim
  */
 class ProjectRefResolver implements ReferenceResolver {
   public static final Logger LOG = Logger.getLogger(ProjectRefResolver.class.getName());
 
+  /** Reference to a resource of the project itself, e.g. {@code @color/text}. */
+  private static final Pattern OWN_REFERENCE = Pattern.compile("@(\\w+)/(.+)");
+  /** Limits length of reference chains, they can contain cycles. */
+  private static final int MAX_REFERENCE_CHAIN = 10;
+  private static final String STYLE = "style";
+
   private final Project prj;
+  /*Nullable*/
+  private final DalvikPlatform platform;
+  private String pkg;
+  private boolean pkgResolved;
+  private List<SetMultimap<String, String>> indexedResources = Collections.emptyList();
+  private FrameworkResources frameworkResources;
+  private List<ResourceRef> references;
+  private List<ProjectResourceIndex> indexes;
 
   public ProjectRefResolver(Project prj) {
+    this(prj, null);
+  }
+
+  public ProjectRefResolver(Project prj, DalvikPlatform platform) {
     this.prj = Preconditions.checkNotNull(prj);
+    this.platform = platform;
   }
 
   @Override
-  public List<ResourceRef> getReferences() {
-    final List<ResourceRef> results = Lists.newArrayList();
-    ManifestData manifest = AndroidProjectUtil.parseProjectManifest(prj);
-    final String pkg = manifest != null ? manifest.getPackage() : null;
-    FileObject rFile = pkg != null ?
-        prj.getProjectDirectory().getFileObject("gen/" + pkg.replace('.', '/') + "/R.java") :
-        null;
-    if (rFile == null) {
-      LOG.log(Level.FINE, "no R.java");
-      return Collections.emptyList();
+  public synchronized List<ResourceRef> getReferences() {
+    List<SetMultimap<String, String>> resources = Lists.newArrayList();
+    indexes = ProjectResourceIndex.forProjectAndLibraries(prj);
+    for (ProjectResourceIndex index : indexes) {
+      resources.add(index.getResources());
     }
-    ClasspathInfo cpInfo = ClasspathInfo.create(rFile);
-    if (cpInfo == null) {
-      LOG.log(Level.FINE, "no ClasspathInfo");
-      return Collections.emptyList();
-    }
-    JavaSource javaSource = JavaSource.create(cpInfo, rFile);
-    if (javaSource == null) {
-      return Collections.emptyList();
+    FrameworkResources framework = platform != null ? StyleableModels.getFrameworkResources(platform) : null;
+    if (!sameInstances(resources, indexedResources) || framework != frameworkResources) {
+      String pkgName = getPackage();
+      ImmutableList.Builder<ResourceRef> refs = ImmutableList.builder();
+      SetMultimap<String, String> merged = resources.get(0);
+      if (resources.size() > 1) {
+        merged = TreeMultimap.create();
+        for (SetMultimap<String, String> prjResources : resources) {
+          merged.putAll(prjResources);
+        }
+      }
+      for (Map.Entry<String, String> resource : merged.entries()) {
+        refs.add(new ResourceRef(true, pkgName, resource.getKey(), resource.getValue()));
+      }
+      if (framework != null) {
+        refs.addAll(framework.getReferences());
+      }
+      references = refs.build();
+      indexedResources = resources;
+      frameworkResources = framework;
     }
+    return references;
+  }
 
-    try {
-      javaSource.runUserActionTask(new Task<CompilationController>() {
-
-        @Override
-        public void run(CompilationController parameter) throws IOException {
-
-          parameter.toPhase(Phase.ELEMENTS_RESOLVED);
+  /**
+   * Value of a project or library resource. References to other resources of the project
+   * are followed, a parent is returned for styles.
+   */
+  @Override
+  public synchronized String getValue(ResourceRef ref) {
+    if (!ref.samePackage) {
+      return null;
+    }
+    if (indexes == null) {
+      getReferences();
+    }
+    String value = findValue(ref.resourceType + "/" + ref.resourceName);
+    for (int i = 0; value != null && i < MAX_REFERENCE_CHAIN; i++) {
+      Matcher m = OWN_REFERENCE.matcher(value);
+      if (!m.matches() || STYLE.equals(ref.resourceType)) {
+        break;
+      }
+      String referenced = findValue(m.group(1) + "/" + m.group(2));
+      if (referenced == null) {
+        break;
+      }
+      value = referenced;
+    }
+    return value;
+  }
 
-          List<? extends TypeElement> topLevelElements = parameter.getTopLevelElements();
-          for (TypeElement el : topLevelElements) {
-            if (!el.getSimpleName().contentEquals("R")) continue;
+  /** Value from the project or the first library declaring it. */
+  private String findValue(String key) {
+    for (ProjectResourceIndex index : indexes) {
+      String value = index.getValues().get(key);
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
 
-            for (TypeElement category : ElementFilter.typesIn(el.getEnclosedElements())) {
-              String catName = category.getSimpleName().toString();
-              for (VariableElement resource : ElementFilter.fieldsIn(category.getEnclosedElements())) {
-                String resName = resource.getSimpleName().toString();
-                results.add(new ResourceRef(true, pkg, catName, resName));
-              }
-            }
-          }
-        }
-      }, true);
-    } catch (IOException e) {
-      LOG.log(Level.SEVERE, e.getMessage(), e);
+  static boolean sameInstances(List<?> l1, List<?> l2) {
+    if (l1.size() != l2.size()) {
+      return false;
+    }
+    for (int i = 0; i < l1.size(); i++) {
+      if (l1.get(i) != l2.get(i)) {
+        return false;
+      }
     }
+    return true;
+  }
 
-    return results;
+  private String getPackage() {
+    if (!pkgResolved) {
+      ManifestData manifest = AndroidProjectUtil.parseProjectManifest(prj);
+      pkg = manifest != null ? manifest.getPackage() : null;
+      pkgResolved = true;
+    }
+    return pkg;
   }
 }
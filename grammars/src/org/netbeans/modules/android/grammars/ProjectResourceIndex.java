@@ -0,0 +1,570 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.collect.TreeMultimap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ProjectManager;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.project.AndroidProject;
+import org.openide.filesystems.FileAttributeEvent;
+import org.openide.filesystems.FileChangeListener;
+import org.openide.filesystems.FileEvent;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileRenameEvent;
+import org.openide.filesystems.FileUtil;
+import org.openide.xml.XMLUtil;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Index of resources declared in {@code res/} folder of a project: names from values XML files,
+ * file based resources and {@code @+id} declarations.
+ * <p>
+ * The index is built on first use and then kept up to date by listening on the resource folders.
+ * Only changed files are parsed again. It does not need generated {@code R.java}.
+ * Library projects have their own index that is shared by all projects using them.
+ */
+class ProjectResourceIndex {
+
+  private static final Logger LOG = Logger.getLogger(ProjectResourceIndex.class.getName());
+
+  private static final String RES = "res";
+  private static final String NEW_ID_PREFIX = "@+id/";
+  private static final String VALUES = "values";
+  /** Folder of a platform containing framework resources in {@code res}. */
+  private static final String PLATFORM_DATA = "data";
+  /** Types of resources whose value is recorded, their text is the value. */
+  private static final Set<String> VALUE_TYPES =
+      ImmutableSet.of("bool", "color", "dimen", "fraction", "integer", "string");
+
+  private static final Map<Project, ProjectResourceIndex> indexes = new WeakHashMap<Project, ProjectResourceIndex>();
+  private static final Map<FileObject, ProjectResourceIndex> platformIndexes =
+      new WeakHashMap<FileObject, ProjectResourceIndex>();
+
+  /** Index of given project, shared by all its editors and by projects using it as a library. */
+  static synchronized ProjectResourceIndex forProject(Project prj) {
+    ProjectResourceIndex index = indexes.get(prj);
+    if (index == null) {
+      index = new ProjectResourceIndex(prj.getProjectDirectory());
+      indexes.put(prj, index);
+    }
+    return index;
+  }
+
+  /**
+   * Index of values of the framework resources shipped with a platform in its {@code data/res} folder.
+   * Only values files in {@code values} and {@code values-vNN} are indexed, translations and other
+   * configurations are skipped. Returns null if the platform has no resources.
+   */
+  static synchronized ProjectResourceIndex forPlatform(DalvikPlatform platform) {
+    FileObject platformDir = platform.getPlatformFolder();
+    FileObject dataDir = platformDir != null ? platformDir.getFileObject(PLATFORM_DATA) : null;
+    if (dataDir == null || dataDir.getFileObject(RES) == null) {
+      return null;
+    }
+    ProjectResourceIndex index = platformIndexes.get(dataDir);
+    if (index == null) {
+      index = new ProjectResourceIndex(dataDir, true);
+      platformIndexes.put(dataDir, index);
+    }
+    return index;
+  }
+
+  /**
+   * Indexes of given project and of all library projects it uses directly or indirectly.
+   * The project itself comes first, each library is listed once.
+   */
+  static List<ProjectResourceIndex> forProjectAndLibraries(Project prj) {
+    Set<Project> projects = Sets.newLinkedHashSet();
+    collectLibraries(prj, projects);
+    List<ProjectResourceIndex> result = Lists.newArrayListWithCapacity(projects.size());
+    for (Project p : projects) {
+      result.add(forProject(p));
+    }
+    return result;
+  }
+
+  private static void collectLibraries(Project prj, Set<Project> projects) {
+    if (!projects.add(prj)) {
+      return;
+    }
+    AndroidProject aPrj = prj.getLookup().lookup(AndroidProject.class);
+    if (aPrj == null) {
+      return;
+    }
+    for (FileObject libDir : aPrj.info().getDependentProjectDirs()) {
+      try {
+        Project lib = ProjectManager.getDefault().findProject(libDir);
+        if (lib != null) {
+          collectLibraries(lib, projects);
+        }
+      } catch (IOException ex) {
+        LOG.log(Level.FINE, "cannot load library project " + libDir, ex);
+      }
+    }
+  }
+
+  private final FileObject projectDir;
+  /**
+   * Indexes only values folders without configuration qualifiers other than the API level when set,
+   * used for platform resources whose translations would otherwise be parsed too.
+   */
+  private final boolean defaultValuesOnly;
+  private final FileChangeListener listener = new ResourceFolderListener();
+
+  /** Resources (type -&gt; names) declared by each file. */
+  private final Map<FileObject, Multimap<String, String>> contributions = Maps.newHashMap();
+  /** Values (type/name -&gt; value) declared by each values file. */
+  private final Map<FileObject, Map<String, String>> valueContributions = Maps.newHashMap();
+  /** Styles (name -&gt; style) declared by each values file. */
+  private final Map<FileObject, Map<String, Style>> styleContributions = Maps.newHashMap();
+  /** Weak listeners attached to folders, the index can be collected while the folders are alive. */
+  private final Map<FileObject, FileChangeListener> listenedFolders = Maps.newHashMap();
+  private final Set<FileObject> dirtyFiles = Sets.newHashSet();
+  private boolean fullScanNeeded = true;
+  private SetMultimap<String, String> resources;
+  private Map<String, String> values;
+  private Map<String, Style> styles;
+
+  ProjectResourceIndex(FileObject projectDir) {
+    this(projectDir, false);
+  }
+
+  private ProjectResourceIndex(FileObject projectDir, boolean defaultValuesOnly) {
+    this.projectDir = projectDir;
+    this.defaultValuesOnly = defaultValuesOnly;
+    projectDir.addFileChangeListener(FileUtil.weakFileChangeListener(listener, projectDir));
+  }
+
+  /** A style declared in a values file. */
+  static final class Style {
+    /** Reference to the parent style or null. */
+    final String parent;
+    /** Values of items by their name, e.g. {@code android:textColor}. */
+    final Map<String, String> items;
+
+    Style(String parent, Map<String, String> items) {
+      this.parent = parent;
+      this.items = ImmutableMap.copyOf(items);
+    }
+
+    @Override
+    public String toString() {
+      return "Style{" + "parent=" + parent + ", items=" + items + '}';
+    }
+  }
+
+  /**
+   * Names of all resources by their type (string, layout, id, ...), sorted by type and name.
+   * The returned map is immutable, a new instance is returned after a change of resources.
+   */
+  synchronized SetMultimap<String, String> getResources() {
+    update();
+    return resources;
+  }
+
+  /**
+   * Values of simple resources and parents of styles from values files, keyed by {@code type/name},
+   * e.g. {@code dimen/margin -> 4dp} or {@code style/Big -> @style/Base}.
+   * Values are not resolved, a value can be a reference to another resource.
+   * Values from the default {@code values} folder win over qualified folders.
+   * The returned map is immutable, a new instance is returned after a change of resources.
+   */
+  synchronized Map<String, String> getValues() {
+    update();
+    return values;
+  }
+
+  /**
+   * Styles by their name. Styles from the default {@code values} folder win over qualified folders.
+   * The returned map is immutable, a new instance is returned after a change of resources.
+   */
+  synchronized Map<String, Style> getStyles() {
+    update();
+    return styles;
+  }
+
+  private void update() {
+    if (fullScanNeeded) {
+      scanAll();
+    } else if (!dirtyFiles.isEmpty()) {
+      for (FileObject file : dirtyFiles) {
+        scanFile(file);
+      }
+      dirtyFiles.clear();
+      resources = null;
+    }
+    if (resources == null) {
+      TreeMultimap<String, String> sorted = TreeMultimap.create();
+      for (Multimap<String, String> declared : contributions.values()) {
+        sorted.putAll(declared);
+      }
+      resources = ImmutableSetMultimap.copyOf(sorted);
+
+      values = mergeByFolder(valueContributions);
+      styles = mergeByFolder(styleContributions);
+    }
+  }
+
+  /** Merges maps declared by files, files from default folder {@code values} come before qualified ones. */
+  private static <V> Map<String, V> mergeByFolder(Map<FileObject, Map<String, V>> contributions) {
+    SortedMap<String, Map<String, V>> byPath = Maps.newTreeMap();
+    for (Map.Entry<FileObject, Map<String, V>> declared : contributions.entrySet()) {
+      FileObject file = declared.getKey();
+      String order = VALUES.equals(file.getParent().getNameExt()) ? "0" : "1";
+      byPath.put(order + file.getPath(), declared.getValue());
+    }
+    Map<String, V> merged = Maps.newHashMap();
+    for (Map<String, V> declared : byPath.values()) {
+      for (Map.Entry<String, V> value : declared.entrySet()) {
+        if (!merged.containsKey(value.getKey())) {
+          merged.put(value.getKey(), value.getValue());
+        }
+      }
+    }
+    return ImmutableMap.copyOf(merged);
+  }
+
+  private void scanAll() {
+    long start = System.currentTimeMillis();
+    for (Map.Entry<FileObject, FileChangeListener> folder : listenedFolders.entrySet()) {
+      folder.getKey().removeFileChangeListener(folder.getValue());
+    }
+    listenedFolders.clear();
+    contributions.clear();
+    valueContributions.clear();
+    styleContributions.clear();
+    dirtyFiles.clear();
+    resources = null;
+    fullScanNeeded = false;
+
+    FileObject resDir = projectDir.getFileObject(RES);
+    if (resDir == null || !resDir.isFolder()) {
+      return;
+    }
+    listen(resDir);
+    for (FileObject folder : resDir.getChildren()) {
+      if (!folder.isFolder() || folder.getNameExt().startsWith(".")) {
+        continue;
+      }
+      if (defaultValuesOnly && !isDefaultValuesFolder(folder.getNameExt())) {
+        continue;
+      }
+      listen(folder);
+      for (FileObject file : folder.getChildren()) {
+        scanFile(file);
+      }
+    }
+    LOG.log(Level.FINE, "indexed {0} resource files in {1} in {2} ms",
+        new Object[] {contributions.size(), resDir, System.currentTimeMillis() - start});
+  }
+
+  /** Tells if the folder is {@code values} or {@code values-vNN}. */
+  @VisibleForTesting
+  static boolean isDefaultValuesFolder(String folderName) {
+    ResourceFolder resFolder = ResourceFolder.forName(folderName);
+    return resFolder != null && resFolder.getType() == ResourceFolder.Type.VALUES
+        && EnumSet.of(ResourceFolder.Qualifier.VERSION).containsAll(resFolder.getQualifiers().keySet());
+  }
+
+  private void listen(FileObject folder) {
+    if (!listenedFolders.containsKey(folder)) {
+      FileChangeListener weakListener = FileUtil.weakFileChangeListener(listener, folder);
+      listenedFolders.put(folder, weakListener);
+      folder.addFileChangeListener(weakListener);
+    }
+  }
+
+  private void scanFile(FileObject file) {
+    contributions.remove(file);
+    valueContributions.remove(file);
+    styleContributions.remove(file);
+    if (!file.isValid() || !file.isData() || file.getNameExt().startsWith(".")) {
+      return;
+    }
+    ResourceFolder folder = ResourceFolder.forName(file.getParent().getNameExt());
+    if (folder == null) {
+      return;
+    }
+    String type = folder.getType().getName();
+    Multimap<String, String> declared = HashMultimap.create();
+    if (folder.getType() == ResourceFolder.Type.VALUES) {
+      if ("xml".equals(file.getExt())) {
+        ValuesHandler handler = new ValuesHandler(declared, defaultValuesOnly);
+        parse(file, handler);
+        if (!handler.values.isEmpty()) {
+          valueContributions.put(file, handler.values);
+        }
+        if (!handler.styles.isEmpty()) {
+          styleContributions.put(file, handler.styles);
+        }
+      }
+    } else if (!defaultValuesOnly) {
+      declared.put(type, resourceName(file));
+      if ("xml".equals(file.getExt())) {
+        parse(file, new IdHandler(declared));
+      }
+    }
+    contributions.put(file, declared);
+  }
+
+  /** Name of a file based resource, e.g. star for star.9.png. */
+  static String resourceName(FileObject file) {
+    String name = file.getName();
+    return name.endsWith(".9") ? name.substring(0, name.length() - 2) : name;
+  }
+
+  private static void parse(FileObject file, DefaultHandler handler) {
+    InputStream is = null;
+    try {
+      XMLReader reader = XMLUtil.createXMLReader();
+      reader.setContentHandler(handler);
+      is = file.getInputStream();
+      reader.parse(new InputSource(is));
+    } catch (SAXException ex) {
+      LOG.log(Level.FINE, "cannot parse " + file, ex);
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, "cannot read " + file, ex);
+    } finally {
+      if (is != null) {
+        try {
+          is.close();
+        } catch (IOException ex) {
+          LOG.log(Level.FINE, null, ex);
+        }
+      }
+    }
+  }
+
+  /** Collects {@code @+id/name} declarations from attribute values. */
+  private static class IdHandler extends DefaultHandler {
+    protected final Multimap<String, String> declared;
+
+    IdHandler(Multimap<String, String> declared) {
+      this.declared = declared;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+      for (int i = 0; i < attrs.getLength(); i++) {
+        String value = attrs.getValue(i);
+        if (value.startsWith(NEW_ID_PREFIX) && value.length() > NEW_ID_PREFIX.length()) {
+          declared.put("id", value.substring(NEW_ID_PREFIX.length()));
+        }
+      }
+    }
+  }
+
+  /** Collects resources declared in values XML files, values of simple resources and styles. */
+  private static class ValuesHandler extends IdHandler {
+    final Map<String, String> values = Maps.newHashMap();
+    final Map<String, Style> styles = Maps.newHashMap();
+    private int depth;
+    private boolean inStyleable;
+    /** Key of a simple resource whose value is being read or null. */
+    private String valueKey;
+    /** Style being read or null, its parent and items. */
+    private String styleName;
+    private String parentOfStyle;
+    private final Map<String, String> styleItems = Maps.newHashMap();
+    /** Name of a style item whose value is being read or null. */
+    private String itemName;
+    private final StringBuilder text = new StringBuilder();
+    /** Framework styles name their items without the android: prefix, it is added to match project styles. */
+    private final boolean framework;
+
+    ValuesHandler(Multimap<String, String> declared, boolean framework) {
+      super(declared);
+      this.framework = framework;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+      super.startElement(uri, localName, qName, attrs);
+      depth++;
+      String name = attrs.getValue("name");
+      if (depth == 2) {
+        inStyleable = "declare-styleable".equals(qName);
+        String type = valueType(qName, attrs.getValue("type"));
+        if (type != null && name != null) {
+          declared.put(type, name);
+          if (VALUE_TYPES.contains(type)) {
+            valueKey = type + "/" + name;
+            text.setLength(0);
+          } else if ("style".equals(type)) {
+            styleName = name;
+            parentOfStyle = styleParent(name, attrs.getValue("parent"));
+            styleItems.clear();
+            if (parentOfStyle != null) {
+              values.put(type + "/" + name, parentOfStyle);
+            }
+          }
+        }
+      } else if (depth == 3 && inStyleable && "attr".equals(qName)
+          && name != null && !name.startsWith("android:")) {
+        declared.put("attr", name);
+      } else if (depth == 3 && styleName != null && "item".equals(qName) && name != null) {
+        itemName = name;
+        text.setLength(0);
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+      if (valueKey != null || itemName != null) {
+        text.append(ch, start, length);
+      }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+      if (depth == 2 && valueKey != null) {
+        values.put(valueKey, text.toString().trim());
+        valueKey = null;
+      } else if (depth == 2 && styleName != null) {
+        styles.put(styleName, new Style(parentOfStyle, styleItems));
+        styleName = null;
+      } else if (depth == 3 && itemName != null) {
+        styleItems.put(framework && itemName.indexOf(':') < 0 ? "android:" + itemName : itemName,
+            text.toString().trim());
+        itemName = null;
+      }
+      depth--;
+    }
+
+    /** Type of resource declared by a child of {@code resources} element or null. */
+    private static String valueType(String tag, String typeAttr) {
+      if ("item".equals(tag)) {
+        return typeAttr;
+      }
+      if ("string-array".equals(tag) || "integer-array".equals(tag)) {
+        return "array";
+      }
+      if ("declare-styleable".equals(tag) || "eat-comment".equals(tag) || "skip".equals(tag)) {
+        return null;
+      }
+      return tag;
+    }
+  }
+
+  /**
+   * Reference to parent of a style, either explicit or implied by a dotted name like {@code Big.Red}.
+   * Returns null for styles without a parent.
+   */
+  static String styleParent(String name, String parentAttr) {
+    if (parentAttr != null) {
+      String parent = parentAttr.trim();
+      if (parent.length() == 0) {
+        return null;
+      }
+      if (parent.startsWith("@") || parent.startsWith("?")) {
+        return parent;
+      }
+      return parent.startsWith("android:") ?
+          "@android:style/" + parent.substring("android:".length()) :
+          "@style/" + parent;
+    }
+    int lastDot = name.lastIndexOf('.');
+    return lastDot > 0 ? "@style/" + name.substring(0, lastDot) : null;
+  }
+
+  private class ResourceFolderListener implements FileChangeListener {
+
+    @Override
+    public void fileFolderCreated(FileEvent fe) {
+      FileObject folder = fe.getFile();
+      if (folder.getParent() != null && (folder.getParent().equals(projectDir) ? RES.equals(folder.getNameExt())
+          : isListened(folder.getParent()))) {
+        invalidateAll();
+      }
+    }
+
+    @Override
+    public void fileDataCreated(FileEvent fe) {
+      invalidate(fe.getFile());
+    }
+
+    @Override
+    public void fileChanged(FileEvent fe) {
+      invalidate(fe.getFile());
+    }
+
+    @Override
+    public void fileDeleted(FileEvent fe) {
+      if (fe.getFile().isFolder() || isListened(fe.getFile())) {
+        invalidateAll();
+      } else {
+        invalidate(fe.getFile());
+      }
+    }
+
+    @Override
+    public void fileRenamed(FileRenameEvent fe) {
+      invalidateAll();
+    }
+
+    @Override
+    public void fileAttributeChanged(FileAttributeEvent fe) {
+    }
+
+    /** Events come on filesystem threads, listened folders are changed by scans under the index lock. */
+    private boolean isListened(FileObject folder) {
+      synchronized (ProjectResourceIndex.this) {
+        return listenedFolders.containsKey(folder);
+      }
+    }
+
+    private void invalidate(FileObject file) {
+      FileObject folder = file.getParent();
+      if (folder == null || folder.equals(projectDir)) {
+        return;
+      }
+      synchronized (ProjectResourceIndex.this) {
+        if (listenedFolders.containsKey(folder) && !folder.equals(projectDir.getFileObject(RES))) {
+          dirtyFiles.add(file);
+        }
+      }
+    }
+
+    private void invalidateAll() {
+      synchronized (ProjectResourceIndex.this) {
+        fullScanNeeded = true;
+      }
+    }
+  }
+}
@@ -21,4 +21,11 @@ import java.util.List;
  */
 interface ReferenceResolver {
   List<ResourceRef> getReferences();
+
+  /**
+   * Value of a resource to show to the user, e.g. {@code 16dp} for {@code @dimen/margin}
+   * or parent of a style. References are resolved when possible.
+   * Returns null if the value is not known.
+   */
+  String getValue(ResourceRef ref);
 }
@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.base.Preconditions;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Type and configuration qualifiers of a resource folder like {@code layout-land} or {@code values-de-rAT-v11}.
+ * Folder names are parsed once, the results are cached.
+ */
+final class ResourceFolder {
+
+  /** Type of resources in a folder. */
+  enum Type {
+    ANIM,
+    ANIMATOR,
+    COLOR,
+    DRAWABLE,
+    INTERPOLATOR,
+    LAYOUT,
+    MENU,
+    MIPMAP,
+    RAW,
+    VALUES,
+    XML;
+
+    /** Name of the type used in folder names and in references, e.g. {@code layout}. */
+    String getName() {
+      return name().toLowerCase(Locale.ENGLISH);
+    }
+  }
+
+  /** Configuration qualifiers in the order they have to be used in a folder name. */
+  enum Qualifier {
+    MCC("mcc\\d+"),
+    MNC("mnc\\d+"),
+    // two or three letter code (not the ui mode car) or BCP 47 tag like b+sr+Latn
+    LANGUAGE("[a-z]{2}|(?!car)[a-z]{3}|b\\+[a-zA-Z]{2,3}(\\+[a-zA-Z0-9]+)*"),
+    REGION("r[A-Z]{2}"),
+    LAYOUT_DIRECTION("ldrtl|ldltr"),
+    SMALLEST_WIDTH("sw\\d+dp"),
+    WIDTH("w\\d+dp"),
+    HEIGHT("h\\d+dp"),
+    SCREEN_SIZE("small|normal|large|xlarge"),
+    SCREEN_ASPECT("long|notlong"),
+    ROUND("round|notround"),
+    ORIENTATION("port|land|square"),
+    UI_MODE("car|desk|television|appliance|watch"),
+    NIGHT_MODE("night|notnight"),
+    DENSITY("ldpi|mdpi|tvdpi|hdpi|xhdpi|xxhdpi|xxxhdpi|nodpi|anydpi|\\d+dpi"),
+    TOUCHSCREEN("notouch|stylus|finger"),
+    KEYBOARD_STATE("keysexposed|keyshidden|keyssoft"),
+    TEXT_INPUT("nokeys|qwerty|12key"),
+    NAVIGATION_STATE("navexposed|navhidden"),
+    NAVIGATION("nonav|dpad|trackball|wheel"),
+    SCREEN_DIMENSION("\\d+x\\d+"),
+    VERSION("v\\d+");
+
+    private final Pattern pattern;
+
+    private Qualifier(String regex) {
+      this.pattern = Pattern.compile(regex);
+    }
+  }
+
+  /** Marks names that are not resource folders in the cache. */
+  private static final ResourceFolder INVALID = new ResourceFolder(Type.RAW, Collections.<Qualifier, String>emptyMap());
+
+  private static final ConcurrentMap<String, ResourceFolder> folders = new ConcurrentHashMap<String, ResourceFolder>();
+
+  private final Type type;
+  private final Map<Qualifier, String> qualifiers;
+
+  private ResourceFolder(Type type, Map<Qualifier, String> qualifiers) {
+    this.type = Preconditions.checkNotNull(type);
+    this.qualifiers = qualifiers;
+  }
+
+  /**
+   * Returns description of a resource folder with given name
+   * or null if the name is not a valid resource folder name.
+   */
+  static ResourceFolder forName(String folderName) {
+    ResourceFolder folder = folders.get(folderName);
+    if (folder == null) {
+      folder = parse(folderName);
+      folders.putIfAbsent(folderName, folder != null ? folder : INVALID);
+    }
+    return folder != INVALID ? folder : null;
+  }
+
+  private static ResourceFolder parse(String folderName) {
+    String[] parts = folderName.split("-", -1);
+    Type type = null;
+    for (Type t : Type.values()) {
+      if (t.getName().equals(parts[0])) {
+        type = t;
+        break;
+      }
+    }
+    if (type == null) {
+      return null;
+    }
+    Map<Qualifier, String> qualifiers = new EnumMap<Qualifier, String>(Qualifier.class);
+    Qualifier[] allQualifiers = Qualifier.values();
+    int next = 0;
+    for (int i = 1; i < parts.length; i++) {
+      while (next < allQualifiers.length && !allQualifiers[next].pattern.matcher(parts[i]).matches()) {
+        next++;
+      }
+      if (next == allQualifiers.length) {
+        // unknown qualifier or qualifiers in wrong order
+        return null;
+      }
+      qualifiers.put(allQualifiers[next], parts[i]);
+      next++;
+    }
+    return new ResourceFolder(type, Collections.unmodifiableMap(qualifiers));
+  }
+
+  Type getType() {
+    return type;
+  }
+
+  /** Qualifiers used in the folder name and their values. */
+  Map<Qualifier, String> getQualifiers() {
+    return qualifiers;
+  }
+
+  @Override
+  public String toString() {
+    return "ResourceFolder{" + "type=" + type + ", qualifiers=" + qualifiers + '}';
+  }
+}
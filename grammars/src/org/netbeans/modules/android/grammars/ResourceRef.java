@@ -35,12 +35,16 @@ public class ResourceRef {
   public final String packageName;
   public final String resourceType;
   public final String resourceName;
+  /** Text of the reference, completion compares it on each key stroke. */
+  private final String text;
 
   public ResourceRef(boolean samePackage, String packageName, String resourceType, String resourceName) {
     this.samePackage = samePackage;
     this.packageName = packageName;
     this.resourceType = resourceType;
     this.resourceName = resourceName;
+    this.text = "@" + (samePackage ? "" : packageName + ":") +
+        resourceType + "/" + resourceName;
   }
 
   @Override
@@ -79,7 +83,6 @@ public class ResourceRef {
 
   @Override
   public String toString() {
-    return "@" + (samePackage ? "" : packageName + ":") +
-        resourceType + "/" + resourceName;
+    return text;
   }
 }
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.netbeans.modules.android.project.api.AndroidProjects;
+import org.openide.filesystems.FileChangeAdapter;
+import org.openide.filesystems.FileEvent;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileRenameEvent;
+import org.openide.filesystems.FileUtil;
+
+/**
+ * Remembers which {@code res} folders belong to Android projects so that the grammar provider
+ * does not query project ownership for each opened XML file.
+ * <p>
+ * A cached answer is dropped when the folder is deleted or renamed or when files are added to,
+ * removed from or renamed in the folder above it as project metadata may have changed.
+ */
+final class ResourceRoots {
+
+  private static final Logger LOG = Logger.getLogger(ResourceRoots.class.getName());
+
+  private static final String RES = "res";
+
+  private static final Map<FileObject, Entry> entries = new WeakHashMap<FileObject, Entry>();
+
+  private ResourceRoots() {
+  }
+
+  /**
+   * Returns the Android project whose resource folder is given folder, null if there is no such project.
+   */
+  static Project findOwner(FileObject resDir) {
+    if (resDir == null || !RES.equals(resDir.getNameExt()) || resDir.getParent() == null) {
+      return null;
+    }
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(resDir);
+      if (entry != null && entry.valid) {
+        Project owner = entry.owner.get();
+        if (owner != null || !entry.android) {
+          return owner;
+        }
+      }
+    }
+    Project p = FileOwnerQuery.getOwner(resDir);
+    Project owner = AndroidProjects.isAndroidProject(p) && resDir.equals(p.getProjectDirectory().getFileObject(RES)) ?
+        p : null;
+    LOG.log(Level.FINE, "owner of {0} is {1}", new Object[] {resDir, owner});
+    synchronized (entries) {
+      if (entry == null) {
+        entry = new Entry(resDir);
+        entries.put(resDir, entry);
+      }
+      entry.owner = new WeakReference<Project>(owner);
+      entry.android = owner != null;
+      entry.valid = true;
+    }
+    return owner;
+  }
+
+  /**
+   * Cached owner of one res folder. Listens on the folder and its parent
+   * and it is held by the cache as long as the folder is.
+   */
+  private static class Entry extends FileChangeAdapter {
+    private final Reference<FileObject> resDir;
+    private Reference<Project> owner;
+    private boolean android;
+    private boolean valid;
+
+    Entry(FileObject resDir) {
+      this.resDir = new WeakReference<FileObject>(resDir);
+      resDir.addFileChangeListener(FileUtil.weakFileChangeListener(this, resDir));
+      FileObject parent = resDir.getParent();
+      parent.addFileChangeListener(FileUtil.weakFileChangeListener(this, parent));
+    }
+
+    @Override
+    public void fileDataCreated(FileEvent fe) {
+      changed(fe);
+    }
+
+    @Override
+    public void fileFolderCreated(FileEvent fe) {
+      changed(fe);
+    }
+
+    @Override
+    public void fileDeleted(FileEvent fe) {
+      changed(fe);
+    }
+
+    @Override
+    public void fileRenamed(FileRenameEvent fe) {
+      changed(fe);
+    }
+
+    private void changed(FileEvent fe) {
+      FileObject dir = resDir.get();
+      if (dir == null) {
+        return;
+      }
+      // the folder itself or a file next to it (project metadata) changed, files inside the folder do not matter
+      FileObject file = fe.getFile();
+      if (file.equals(dir) || !dir.equals(file.getParent())) {
+        LOG.log(Level.FINE, "{0} changed, forgetting owner of {1}", new Object[] {file, dir});
+        synchronized (entries) {
+          valid = false;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.collect.Lists;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+import org.netbeans.api.editor.EditorRegistry;
+import org.netbeans.spi.editor.hints.ErrorDescription;
+import org.netbeans.spi.editor.hints.ErrorDescriptionFactory;
+import org.netbeans.spi.editor.hints.HintsController;
+import org.netbeans.spi.editor.hints.Severity;
+import org.openide.filesystems.FileObject;
+import org.openide.loaders.DataObject;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Shows problems found by {@link ResourceValidator} in editors of layout and manifest files.
+ * A validator is attached to a document when its editor gets focus for the first time,
+ * the document is then validated in background after each edit.
+ */
+final class ResourceValidationHints implements PropertyChangeListener {
+
+  private static final Logger LOG = Logger.getLogger(ResourceValidationHints.class.getName());
+
+  private static final RequestProcessor RP = new RequestProcessor(ResourceValidationHints.class.getName());
+
+  /** Name of the layer of errors in {@link HintsController}. */
+  private static final String HINTS_LAYER = "android-resource-validator";
+  /** Document property set once the document was inspected, holds its validator if there is one. */
+  private static final Object VALIDATOR_PROPERTY = ResourceValidationHints.class;
+
+  private ResourceValidationHints() {
+  }
+
+  /** Starts watching editors, called once when the module is restored. */
+  static void install() {
+    EditorRegistry.addPropertyChangeListener(new ResourceValidationHints());
+  }
+
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    if (!EditorRegistry.FOCUS_GAINED_PROPERTY.equals(evt.getPropertyName())) {
+      return;
+    }
+    JTextComponent component = EditorRegistry.focusedComponent();
+    final Document doc = component != null ? component.getDocument() : null;
+    if (doc == null || doc.getProperty(VALIDATOR_PROPERTY) != null) {
+      return;
+    }
+    final FileObject fo = fileOf(doc);
+    if (fo == null || !"xml".equals(fo.getExt())) {
+      return;
+    }
+    doc.putProperty(VALIDATOR_PROPERTY, Boolean.FALSE);
+    // creating the validator loads the grammar models of the platform
+    RP.post(new Runnable() {
+
+      @Override
+      public void run() {
+        ResourceValidator validator = ResourceValidator.forFile(fo);
+        if (validator == null) {
+          return;
+        }
+        LOG.log(Level.FINE, "validating {0}", fo);
+        doc.putProperty(VALIDATOR_PROPERTY, validator);
+        DocumentValidation validation = new DocumentValidation(doc, validator);
+        doc.addDocumentListener(validation);
+        validation.schedule();
+      }
+    });
+  }
+
+  private static FileObject fileOf(Document doc) {
+    Object source = doc.getProperty(Document.StreamDescriptionProperty);
+    if (source instanceof DataObject) {
+      return ((DataObject) source).getPrimaryFile();
+    }
+    return source instanceof FileObject ? (FileObject) source : null;
+  }
+
+  /** Validates one document after its changes and publishes the problems as editor errors. */
+  private static final class DocumentValidation implements DocumentListener, ResourceValidator.Listener {
+    private final Document doc;
+    private final ResourceValidator validator;
+
+    DocumentValidation(Document doc, ResourceValidator validator) {
+      this.doc = doc;
+      this.validator = validator;
+    }
+
+    void schedule() {
+      final String[] text = new String[1];
+      doc.render(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            text[0] = doc.getText(0, doc.getLength());
+          } catch (BadLocationException ex) {
+            LOG.log(Level.FINE, null, ex);
+          }
+        }
+      });
+      if (text[0] != null) {
+        validator.validateLater(text[0], this);
+      }
+    }
+
+    @Override
+    public void validated(List<ResourceValidator.Problem> problems) {
+      List<ErrorDescription> errors = Lists.newArrayListWithCapacity(problems.size());
+      for (ResourceValidator.Problem problem : problems) {
+        errors.add(ErrorDescriptionFactory.createErrorDescription(
+            Severity.WARNING, problem.message, doc, Math.max(problem.line, 1)));
+      }
+      HintsController.setErrors(doc, HINTS_LAYER, errors);
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+      schedule();
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+      schedule();
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+    }
+  }
+}
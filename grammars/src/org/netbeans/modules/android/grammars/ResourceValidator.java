@@ -0,0 +1,395 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.project.api.AndroidProjects;
+import org.openide.filesystems.FileObject;
+import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
+import org.openide.xml.XMLUtil;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks layout and manifest files using the models of their grammar: unknown attributes,
+ * invalid enumerated values, dimension units and references to missing resources.
+ * <p>
+ * Results of elements are remembered between runs, only elements whose tag, parent or attributes
+ * changed since the last run are checked again. Problems of files open in editors are shown
+ * by {@link ResourceValidationHints}.
+ */
+class ResourceValidator {
+
+  private static final Logger LOG = Logger.getLogger(ResourceValidator.class.getName());
+
+  private static final RequestProcessor RP = new RequestProcessor(ResourceValidator.class.getName(), 1, true);
+  /** Delay after last edit before validation runs. */
+  private static final int VALIDATION_DELAY = 500;
+
+  private static final String ANDROID_PREFIX = "android:";
+  private static final String NEW_ID_PREFIX = "@+id/";
+  private static final Pattern DIMENSION = Pattern.compile("-?(\\d+\\.?\\d*|\\.\\d+)([a-z]*)");
+  private static final Pattern INTEGER = Pattern.compile("-?\\d+|0x\\p{XDigit}+");
+  private static final Pattern FLOAT = Pattern.compile("-?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+  private static final Pattern COLOR = Pattern.compile("#(\\p{XDigit}{3,4}|\\p{XDigit}{6}|\\p{XDigit}{8})");
+  private static final Pattern FRACTION = Pattern.compile("-?(\\d+\\.?\\d*|\\.\\d+)%p?");
+  private static final Set<String> DIMENSION_UNITS = Sets.newHashSet("dp", "dip", "sp", "pt", "mm", "in", "px");
+  private static final Pattern REFERENCE = Pattern.compile("@\\+?(?:([\\w.]+):)?(\\w+)/(.+)");
+
+  /** A problem found in a file. */
+  static final class Problem {
+    final int line;
+    final int column;
+    final String message;
+
+    Problem(int line, int column, String message) {
+      this.line = line;
+      this.column = column;
+      this.message = message;
+    }
+
+    @Override
+    public String toString() {
+      return line + ":" + column + ": " + message;
+    }
+  }
+
+  /** Receives results of background validation. */
+  interface Listener {
+    void validated(List<Problem> problems);
+  }
+
+  /** Result of checks of one element. */
+  private static final class ElementResult {
+    final List<String> messages;
+    /** References that depend on other elements and resources, checked in each run. */
+    final List<String> references;
+
+    ElementResult(List<String> messages, List<String> references) {
+      this.messages = messages;
+      this.references = references;
+    }
+  }
+
+  private final AndroidGrammar grammar;
+
+  /** Results of elements from the last run keyed by element text. */
+  private Map<String, ElementResult> checkedElements = Collections.emptyMap();
+  /** Number of elements checked (not reused) in the last run. */
+  int lastCheckedCount;
+
+  private List<ResourceRef> knownRefsSource;
+  private Set<String> knownRefs = Collections.emptySet();
+
+  private RequestProcessor.Task task;
+  private String pendingText;
+  private Listener pendingListener;
+
+  ResourceValidator(AndroidGrammar grammar) {
+    this.grammar = Preconditions.checkNotNull(grammar);
+  }
+
+  /**
+   * Creates a validator for a layout or manifest file of an Android project.
+   * Returns null for other files.
+   */
+  static ResourceValidator forFile(FileObject fo) {
+    Project prj = FileOwnerQuery.getOwner(fo);
+    DalvikPlatform platform = prj != null ? AndroidProjects.projectPlatform(prj) : null;
+    if (platform == null) {
+      return null;
+    }
+    if (AndroidGrammarQueryProvider.isLayoutFile(fo)) {
+      return new ResourceValidator(AndroidLayoutGrammar.create(platform, new ProjectRefResolver(prj, platform)));
+    }
+    if ("AndroidManifest.xml".equals(fo.getNameExt()) && prj.getProjectDirectory().equals(fo.getParent())) {
+      return new ResourceValidator(new AndroidManifestGrammar(platform));
+    }
+    return null;
+  }
+
+  /**
+   * Validates given text in a background thread after a short delay.
+   * Repeated calls before the validation starts are coalesced, only the latest text is validated.
+   */
+  void validateLater(String text, Listener listener) {
+    synchronized (this) {
+      pendingText = text;
+      pendingListener = listener;
+      if (task == null) {
+        task = RP.create(new Runnable() {
+
+          @Override
+          public void run() {
+            String text;
+            Listener listener;
+            synchronized (ResourceValidator.this) {
+              text = pendingText;
+              listener = pendingListener;
+              pendingText = null;
+              pendingListener = null;
+            }
+            if (text != null) {
+              listener.validated(validate(new InputSource(new StringReader(text))));
+            }
+          }
+        });
+      }
+    }
+    task.schedule(VALIDATION_DELAY);
+  }
+
+  /** Validates the document and returns found problems ordered by their position. */
+  synchronized List<Problem> validate(InputSource source) {
+    final Map<String, ElementResult> current = Maps.newHashMap();
+    final List<Problem> problems = Lists.newArrayList();
+    final List<Object[]> references = Lists.newArrayList();
+    final Set<String> declaredIds = Sets.newHashSet();
+    lastCheckedCount = 0;
+
+    DefaultHandler handler = new DefaultHandler() {
+      private Locator locator;
+      private final LinkedList<String> openTags = Lists.newLinkedList();
+
+      @Override
+      public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
+      }
+
+      @Override
+      public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new SAXException("validation cancelled");
+        }
+        String parentTag = openTags.peek();
+        String key = elementKey(qName, parentTag, attrs);
+        ElementResult result = current.get(key);
+        if (result == null) {
+          result = checkedElements.get(key);
+          if (result == null) {
+            result = checkElement(qName, parentTag, attrs);
+            lastCheckedCount++;
+          }
+          current.put(key, result);
+        }
+        int line = locator != null ? locator.getLineNumber() : -1;
+        int column = locator != null ? locator.getColumnNumber() : -1;
+        for (String message : result.messages) {
+          problems.add(new Problem(line, column, message));
+        }
+        for (String ref : result.references) {
+          references.add(new Object[] {line, column, ref});
+        }
+        for (int i = 0; i < attrs.getLength(); i++) {
+          if (attrs.getValue(i).startsWith(NEW_ID_PREFIX)) {
+            declaredIds.add("@id/" + attrs.getValue(i).substring(NEW_ID_PREFIX.length()));
+          }
+        }
+        openTags.push(qName);
+      }
+
+      @Override
+      public void endElement(String uri, String localName, String qName) throws SAXException {
+        openTags.pop();
+      }
+    };
+    try {
+      XMLReader reader = XMLUtil.createXMLReader();
+      reader.setContentHandler(handler);
+      reader.parse(source);
+    } catch (SAXException ex) {
+      // broken document while it is edited, report what was found so far
+      LOG.log(Level.FINE, "validation stopped: {0}", ex.getMessage());
+    } catch (IOException ex) {
+      LOG.log(Level.FINE, null, ex);
+    }
+    checkedElements = current;
+
+    updateKnownRefs();
+    boolean checkProjectRefs = false;
+    boolean checkFrameworkRefs = false;
+    for (String ref : knownRefs) {
+      if (ref.startsWith("@" + FrameworkResources.ANDROID_PACKAGE + ":")) {
+        checkFrameworkRefs = true;
+      } else {
+        checkProjectRefs = true;
+      }
+    }
+    for (Object[] pending : references) {
+      String ref = (String) pending[2];
+      boolean framework = ref.startsWith("@" + FrameworkResources.ANDROID_PACKAGE + ":");
+      if ((framework ? checkFrameworkRefs : checkProjectRefs)
+          && !knownRefs.contains(ref) && !declaredIds.contains(ref)) {
+        problems.add(new Problem((Integer) pending[0], (Integer) pending[1],
+            NbBundle.getMessage(ResourceValidator.class, "MSG_UnknownResource", ref)));
+      }
+    }
+    Collections.sort(problems, new Comparator<Problem>() {
+
+      @Override
+      public int compare(Problem p1, Problem p2) {
+        return p1.line != p2.line ? p1.line - p2.line : p1.column - p2.column;
+      }
+    });
+    return problems;
+  }
+
+  private void updateKnownRefs() {
+    List<ResourceRef> refs = grammar.getReferenceResolver().getReferences();
+    if (refs != knownRefsSource) {
+      Set<String> known = Sets.newHashSetWithExpectedSize(refs.size());
+      for (ResourceRef ref : refs) {
+        known.add(ref.toString());
+      }
+      knownRefs = known;
+      knownRefsSource = refs;
+    }
+  }
+
+  private static String elementKey(String tag, String parentTag, Attributes attrs) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(parentTag).append('>').append(tag);
+    for (int i = 0; i < attrs.getLength(); i++) {
+      sb.append('\u0000').append(attrs.getQName(i)).append('=').append(attrs.getValue(i));
+    }
+    return sb.toString();
+  }
+
+  private ElementResult checkElement(String tag, String parentTag, Attributes attrs) {
+    Map<String, AttributeInfo> allowed = Maps.newHashMap();
+    for (AttributeInfo attribute : grammar.attributesOf(tag, parentTag)) {
+      if (!allowed.containsKey(attribute.getName())) {
+        allowed.put(attribute.getName(), attribute);
+      }
+    }
+    // custom views and their children can use attributes not described by the platform
+    boolean knownContext = grammar.isKnownElement(tag) && (parentTag == null || grammar.isKnownElement(parentTag));
+    List<String> messages = ImmutableList.of();
+    List<String> references = ImmutableList.of();
+    for (int i = 0; i < attrs.getLength(); i++) {
+      String name = attrs.getQName(i);
+      String value = attrs.getValue(i);
+      if (!name.startsWith(ANDROID_PREFIX)) {
+        continue;
+      }
+      AttributeInfo attribute = allowed.get(name);
+      if (attribute == null) {
+        if (knownContext) {
+          messages = add(messages, NbBundle.getMessage(ResourceValidator.class, "MSG_UnknownAttribute", name, tag));
+        }
+        continue;
+      }
+      if (value.startsWith("@")) {
+        Matcher m = REFERENCE.matcher(value);
+        if (!value.startsWith(NEW_ID_PREFIX) && m.matches()
+            && (m.group(1) == null || FrameworkResources.ANDROID_PACKAGE.equals(m.group(1)))) {
+          references = add(references, value);
+        }
+        continue;
+      }
+      String error = checkValue(attribute, value);
+      if (error != null) {
+        messages = add(messages, error);
+      }
+    }
+    return new ElementResult(messages, references);
+  }
+
+  private static <T> List<T> add(List<T> list, T item) {
+    List<T> result = list.isEmpty() ? Lists.<T>newArrayListWithCapacity(2) : list;
+    result.add(item);
+    return result;
+  }
+
+  /** Checks a value that is not a reference, returns error message or null. */
+  static String checkValue(AttributeInfo attribute, String value) {
+    if (value.startsWith("?")) {
+      return null; // theme attribute
+    }
+    int formats = attribute.getFormatMask();
+    if (formats == 0 || attribute.hasFormat(AttributeInfo.Format.STRING)) {
+      return null;
+    }
+    if (attribute.hasFormat(AttributeInfo.Format.BOOLEAN) && ("true".equals(value) || "false".equals(value))) {
+      return null;
+    }
+    if (attribute.hasFormat(AttributeInfo.Format.ENUM) && attribute.getEnumValues().contains(value)) {
+      return null;
+    }
+    if (attribute.hasFormat(AttributeInfo.Format.FLAG) && isFlagCombination(attribute, value)) {
+      return null;
+    }
+    if (attribute.hasFormat(AttributeInfo.Format.INTEGER) && INTEGER.matcher(value).matches()) {
+      return null;
+    }
+    if (attribute.hasFormat(AttributeInfo.Format.FLOAT) && FLOAT.matcher(value).matches()) {
+      return null;
+    }
+    if (attribute.hasFormat(AttributeInfo.Format.COLOR) && COLOR.matcher(value).matches()) {
+      return null;
+    }
+    if (attribute.hasFormat(AttributeInfo.Format.FRACTION) && FRACTION.matcher(value).matches()) {
+      return null;
+    }
+    if (attribute.hasFormat(AttributeInfo.Format.DIMENSION)) {
+      Matcher m = DIMENSION.matcher(value);
+      if (m.matches()) {
+        if (m.group(2).length() == 0) {
+          return NbBundle.getMessage(ResourceValidator.class, "MSG_MissingUnit", attribute.getName());
+        }
+        return DIMENSION_UNITS.contains(m.group(2)) ?
+            null :
+            NbBundle.getMessage(ResourceValidator.class, "MSG_UnknownUnit", m.group(2), attribute.getName());
+      }
+    }
+    if (formats == AttributeInfo.Format.REFERENCE.mask()) {
+      return NbBundle.getMessage(ResourceValidator.class, "MSG_ReferenceExpected", attribute.getName());
+    }
+    return NbBundle.getMessage(ResourceValidator.class, "MSG_InvalidValue", value, attribute.getName());
+  }
+
+  /** Checks that value is one or more flags of given attribute separated by {@code |}. */
+  private static boolean isFlagCombination(AttributeInfo attribute, String value) {
+    for (String flag : value.split("\\|", -1)) {
+      if (!attribute.getFlagValues().contains(flag.trim())) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.netbeans.api.project.Project;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.grammars.resources.StyleSupport;
+
+/**
+ * Resolves effective items of styles and themes following their parents through styles
+ * of a project, its libraries and its platform.
+ * <p>
+ * Resolved styles are remembered and shared by all editors of the project until
+ * styles in one of the indexes change.
+ */
+class StyleResolver implements StyleSupport {
+
+  private static final Logger LOG = Logger.getLogger(StyleResolver.class.getName());
+
+  private static final String ANDROID_PREFIX = FrameworkResources.ANDROID_PACKAGE + ":";
+  /** Reference to a style, {@code @style/Name} or {@code @android:style/Name}. */
+  private static final Pattern STYLE_REFERENCE = Pattern.compile("@(?:([\\w.]+):)?style/(.+)");
+
+  private static final Map<Project, StyleResolver> resolvers = new WeakHashMap<Project, StyleResolver>();
+
+  /** Resolver of given project, shared by all its editors. */
+  static synchronized StyleResolver forProject(Project prj, DalvikPlatform platform) {
+    StyleResolver resolver = resolvers.get(prj);
+    if (resolver == null || resolver.platform != platform) {
+      resolver = new StyleResolver(prj, platform);
+      resolvers.put(prj, resolver);
+    }
+    return resolver;
+  }
+
+  private final Project prj;
+  /*Nullable*/
+  private final DalvikPlatform platform;
+  private List<ProjectResourceIndex> projectIndexes = Collections.emptyList();
+  /*Nullable*/
+  private ProjectResourceIndex frameworkIndex;
+  /** Styles of the indexes used to compute remembered results. */
+  private List<Map<String, ProjectResourceIndex.Style>> styles = Collections.emptyList();
+  /** Effective items by style key, framework styles have {@code android:} prefix. */
+  private final Map<String, Map<String, String>> resolved = Maps.newHashMap();
+  private List<String> itemNames;
+
+  StyleResolver(Project prj, DalvikPlatform platform) {
+    this.prj = prj;
+    this.platform = platform;
+  }
+
+  /**
+   * Items of a style including the inherited ones.
+   *
+   * @param styleRef reference to the style like {@code @style/Big} or {@code @android:style/Theme}
+   * @return immutable map of item values by item names, empty if the style is not known
+   */
+  synchronized Map<String, String> getEffectiveItems(String styleRef) {
+    checkStyles();
+    String key = styleKey(styleRef, false);
+    return key != null ? resolve(key, Sets.<String>newHashSet()) : Collections.<String, String>emptyMap();
+  }
+
+  @Override
+  public synchronized String getInheritedValue(String styleName, String parent, String itemName) {
+    checkStyles();
+    String key = styleKey(ProjectResourceIndex.styleParent(styleName, parent), false);
+    return key != null ? resolve(key, Sets.newHashSet(styleName)).get(itemName) : null;
+  }
+
+  @Override
+  public synchronized List<String> getItemNames() {
+    checkStyles();
+    if (itemNames == null) {
+      Set<String> names = Sets.newTreeSet();
+      if (platform != null) {
+        StyleableModel layoutsModel = AndroidLayoutGrammar.create(platform, new NullRefResolver()).getStyleableModel();
+        for (String attr : layoutsModel.getAttributeValues().keySet()) {
+          names.add(ANDROID_PREFIX + attr);
+        }
+      }
+      for (ProjectResourceIndex index : projectIndexes) {
+        names.addAll(index.getResources().get("attr"));
+      }
+      itemNames = ImmutableList.copyOf(names);
+    }
+    return itemNames;
+  }
+
+  /** Forgets remembered results when styles of the project, its libraries or platform changed. */
+  private void checkStyles() {
+    projectIndexes = ProjectResourceIndex.forProjectAndLibraries(prj);
+    frameworkIndex = platform != null ? ProjectResourceIndex.forPlatform(platform) : null;
+    List<Map<String, ProjectResourceIndex.Style>> current = Lists.newArrayList();
+    for (ProjectResourceIndex index : projectIndexes) {
+      current.add(index.getStyles());
+    }
+    if (frameworkIndex != null) {
+      current.add(frameworkIndex.getStyles());
+    }
+    if (!ProjectRefResolver.sameInstances(current, styles)) {
+      LOG.log(Level.FINE, "styles of {0} changed", prj);
+      resolved.clear();
+      itemNames = null;
+      styles = current;
+    }
+  }
+
+  private Map<String, String> resolve(String key, Set<String> visiting) {
+    Map<String, String> items = resolved.get(key);
+    if (items != null) {
+      return items;
+    }
+    visiting.add(key);
+    ProjectResourceIndex.Style style = findStyle(key);
+    if (style == null) {
+      items = ImmutableMap.of();
+    } else {
+      Map<String, String> merged = Maps.newHashMap();
+      String parentKey = styleKey(style.parent, key.startsWith(ANDROID_PREFIX));
+      if (parentKey != null && !visiting.contains(parentKey)) {
+        merged.putAll(resolve(parentKey, visiting));
+      }
+      merged.putAll(style.items);
+      items = ImmutableMap.copyOf(merged);
+    }
+    resolved.put(key, items);
+    return items;
+  }
+
+  private ProjectResourceIndex.Style findStyle(String key) {
+    if (key.startsWith(ANDROID_PREFIX)) {
+      return frameworkIndex != null ? frameworkIndex.getStyles().get(key.substring(ANDROID_PREFIX.length())) : null;
+    }
+    for (ProjectResourceIndex index : projectIndexes) {
+      ProjectResourceIndex.Style style = index.getStyles().get(key);
+      if (style != null) {
+        return style;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Key of a referenced style or null if the reference is not a style reference.
+   * References without a package used by framework styles point to framework styles.
+   */
+  private static String styleKey(String styleRef, boolean inFramework) {
+    if (styleRef == null) {
+      return null;
+    }
+    Matcher m = STYLE_REFERENCE.matcher(styleRef);
+    if (!m.matches()) {
+      return null;
+    }
+    boolean framework = m.group(1) != null ? FrameworkResources.ANDROID_PACKAGE.equals(m.group(1)) : inFramework;
+    return framework ? ANDROID_PREFIX + m.group(2) : m.group(2);
+  }
+}
@@ -14,14 +14,20 @@
 package org.netbeans.modules.android.grammars;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 /**
  * Object that can be included in Android XML file to describe view or view layout element.
+ * <p>
+ * Attributes are added while the model is built, then the styleable is frozen
+ * and its attributes are kept in an immutable array based list.
  *
  * @author radim
  */
@@ -29,17 +35,30 @@ class StyleableInfo {
   private final String name;
   /*Nullable*/
   private final String description;
-  private final Set<String> parents = new HashSet<String>();
-  private final List<AttributeInfo> attributeNames = Lists.newArrayList();
+  private final Set<String> parents;
+  private List<AttributeInfo> attributeNames = Lists.newArrayList();
+  private boolean frozen;
+  private volatile PrefixIndex<AttributeInfo> attributeIndex;
 
   public StyleableInfo(String name, String description, Set<String> parents) {
     this.name = Preconditions.checkNotNull(name);
     this.description = description;
-    this.parents.addAll(parents);
+    // names of parents that could not be converted to tag names are null
+    this.parents = ImmutableSet.copyOf(Iterables.filter(parents, Predicates.notNull()));
   }
 
   void addAttribute(AttributeInfo attr) {
+    Preconditions.checkState(!frozen, "styleable %s is frozen", name);
     attributeNames.add(attr);
+    attributeIndex = null;
+  }
+
+  /** Makes the list of attributes immutable and compact, no attributes can be added after this. */
+  void freeze() {
+    if (!frozen) {
+      attributeNames = ImmutableList.copyOf(attributeNames);
+      frozen = true;
+    }
   }
 
   public String getName() {
@@ -52,11 +71,20 @@ class StyleableInfo {
 
   /** Names of parent tags that can contain this styleable. Applicable to tag styleables. */
   public Set<String> getParentNames() {
-    return Collections.unmodifiableSet(parents);
+    return parents;
   }
 
   public List<AttributeInfo> getAttributeNames() {
-    return Collections.unmodifiableList(attributeNames);
+    return frozen ? attributeNames : Collections.unmodifiableList(attributeNames);
+  }
+  /** Attributes whose name starts with given prefix, sorted by name. */
+  List<AttributeInfo> getAttributesWithPrefix(String prefix) {
+    PrefixIndex<AttributeInfo> index = attributeIndex;
+    if (index == null) {
+      index = PrefixIndex.create(attributeNames, PrefixIndex.ATTRIBUTE_NAME);
+      attributeIndex = index;
+    }
+    return index.withPrefix(prefix);
   }
 
   @Override
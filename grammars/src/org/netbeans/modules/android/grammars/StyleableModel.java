@@ -14,8 +14,14 @@
 
 package org.netbeans.modules.android.grammars;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
@@ -25,6 +31,10 @@ import java.util.logging.Logger;
 
 /**
  * A wrapper around XML files describing structure of Android XML files.
+ * <p>
+ * The model is filled by a parser or read from the cache and then {@link #freeze() frozen}.
+ * Frozen model uses immutable array based collections. Names and descriptions are shared
+ * by all attributes and styleables of a model that use the same text.
  *
  * @author Radim Kubacki
  */
@@ -32,23 +42,42 @@ class StyleableModel {
 
   private static final Logger LOG = Logger.getLogger(StyleableModel.class.getName());
 
-  private final SortedMap<String, StyleableInfo> styleables = new TreeMap<String, StyleableInfo>();
+  private SortedMap<String, StyleableInfo> styleables = new TreeMap<String, StyleableInfo>();
+
+  /** Styleables by name for completion, built when needed after the model is complete. */
+  private volatile PrefixIndex<StyleableInfo> styleableIndex;
 
   /** Lookup table of possible values for attribute names. */
-  private final Map<String, AttributeInfo> attributeValues = new HashMap<String, AttributeInfo>();
+  private Map<String, AttributeInfo> attributeValues = new HashMap<String, AttributeInfo>();
+
+  /** Shares texts while the model is built, null when the model is frozen. */
+  private Interner<String> texts = Interners.newStrongInterner();
 
   AttributeInfo getAttributeValue(String attrName) {
     return attributeValues.get(attrName);
   }
 
   void addAttribute(String name, AttributeInfo ai) {
+    checkNotFrozen();
     attributeValues.put(name, ai);
   }
 
+  Map<String, AttributeInfo> getAttributeValues() {
+    return Collections.unmodifiableMap(attributeValues);
+  }
+
+  /** Creates an attribute description, the attribute is not added to the model. */
+  AttributeInfo createAttribute(String name, String description, int formats, List<String> enums, List<String> flags) {
+    checkNotFrozen();
+    return new AttributeInfo(texts.intern(name), intern(description), formats, enums, flags);
+  }
+
   StyleableInfo createStyleable(String name, String description, Set<String> parents) {
-    StyleableInfo s = new StyleableInfo(name, description, parents);
+    checkNotFrozen();
+    StyleableInfo s = new StyleableInfo(name, intern(description), parents);
     LOG.log(Level.FINEST, "adding styleable {0}", s);
     styleables.put(name, s);
+    styleableIndex = null;
     return s;
   }
 
@@ -56,6 +85,37 @@ class StyleableModel {
     return Collections.unmodifiableSortedMap(styleables);
   }
 
+  /** Makes the model immutable once all styleables and attributes were added. */
+  void freeze() {
+    if (texts == null) {
+      return;
+    }
+    for (StyleableInfo s : styleables.values()) {
+      s.freeze();
+    }
+    styleables = ImmutableSortedMap.copyOfSorted(styleables);
+    attributeValues = ImmutableMap.copyOf(attributeValues);
+    texts = null;
+  }
+
+  private String intern(String text) {
+    return text != null ? texts.intern(text) : null;
+  }
+
+  private void checkNotFrozen() {
+    Preconditions.checkState(texts != null, "model is frozen");
+  }
+
+  /** Styleables whose name starts with given prefix, sorted by name. */
+  List<StyleableInfo> getStyleablesWithPrefix(String prefix) {
+    PrefixIndex<StyleableInfo> index = styleableIndex;
+    if (index == null) {
+      index = PrefixIndex.create(styleables.values(), PrefixIndex.STYLEABLE_NAME);
+      styleableIndex = index;
+    }
+    return index.withPrefix(prefix);
+  }
+
   @Override
   public String toString() {
     return "StyleableModel{" + "styleables=" + styleables + ", attributeValues=" + attributeValues + '}';
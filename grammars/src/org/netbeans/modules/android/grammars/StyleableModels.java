@@ -15,17 +15,30 @@
 package org.netbeans.modules.android.grammars;
 
 import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
 import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.filesystems.URLMapper;
 import org.openide.util.Exceptions;
 import org.openide.xml.XMLUtil;
 import org.xml.sax.Attributes;
@@ -49,6 +62,12 @@ class StyleableModels {
   /** Tag {@code name} for possible attribute values. */
   private static final String ENUM = "enum";
 
+  /** Tag for values that can be combined. */
+  private static final String FLAG = "flag";
+
+  /** Name of {@code format} attribute, a {@code |} separated list of formats. */
+  private static final String FORMAT = "format";
+
   /** Name of {@code name} tag or attribute. */
   private static final String NAME = "name";
 
@@ -64,30 +83,225 @@ class StyleableModels {
   /** Prefix of all style-able from a AndroidManifest. */
   private static final String ANDROID_MANIFEST = "AndroidManifest";
 
-  private static Map<FileObject, StyleableModel> models = new HashMap<FileObject, StyleableModel>();
+  /**
+   * A model or widget data parsed from a file together with the timestamp of the file.
+   * The first request starts parsing, concurrent requests for the same file wait for its result.
+   */
+  private static class CachedModel {
+    final FutureTask<Object> model;
+    final long lastModified;
+
+    CachedModel(FutureTask<Object> model, long lastModified) {
+      this.model = model;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /**
+   * Parsed models shared by all editors, keyed by the attrs or widgets file of a platform.
+   * Reads of parsed models do not lock, parsing of one file does not block requests for other files.
+   */
+  private static final ConcurrentMap<FileObject, CachedModel> models =
+      new ConcurrentHashMap<FileObject, CachedModel>();
+
+  /** Flattened attribute lists of layout elements per platform. */
+  private static final ConcurrentMap<DalvikPlatform, LayoutAttributes> layoutAttributes =
+      new ConcurrentHashMap<DalvikPlatform, LayoutAttributes>();
+
+  private static PropertyChangeListener sdkListener;
+
+  public static StyleableModel getAndroidManifestModel(DalvikPlatform platform) {
+    final FileObject attrsManifestFO = platform.findTool(Tool.ATTRS_MANIFEST.getSystemName());
+    return cachedModel(attrsManifestFO, StyleableModel.class, new Callable<Object>() {
 
-  public static synchronized StyleableModel getAndroidManifestModel(DalvikPlatform platform) {
-    FileObject attrsManifestFO = platform.findTool(Tool.ATTRS_MANIFEST.getSystemName());
-    StyleableModel manifestModel = models.get(attrsManifestFO);
-    if (manifestModel == null) {
-      manifestModel = StyleableModels.getModel(attrsManifestFO, true, new Function<String, String>() {
+      @Override
+      public Object call() {
+        StyleableModel manifestModel = GrammarModelCache.getDefault().loadModel(attrsManifestFO, true);
+        if (manifestModel == null) {
+          manifestModel = StyleableModels.getModel(attrsManifestFO, true, new Function<String, String>() {
 
-        @Override public String apply(String input) {
-          return null;
+            @Override public String apply(String input) {
+              return null;
+            }
+          });
+          if (manifestModel != null) {
+            GrammarModelCache.getDefault().storeModel(attrsManifestFO, true, manifestModel);
+          }
+        }
+        return manifestModel;
+      }
+    });
+  }
+
+  public static StyleableModel getAndroidLayoutsModel(DalvikPlatform platform,
+      final Function<String, String> parentTagSupplier) {
+    final FileObject attrsLayoutFO = platform.findTool(Tool.ATTRS_LAYOUT.getSystemName());
+    return cachedModel(attrsLayoutFO, StyleableModel.class, new Callable<Object>() {
+
+      @Override
+      public Object call() {
+        StyleableModel layoutsModel = GrammarModelCache.getDefault().loadModel(attrsLayoutFO, false);
+        if (layoutsModel == null) {
+          layoutsModel = StyleableModels.getModel(attrsLayoutFO, false, parentTagSupplier);
+          if (layoutsModel != null) {
+            GrammarModelCache.getDefault().storeModel(attrsLayoutFO, false, layoutsModel);
+          }
         }
-      });
+        return layoutsModel;
+      }
+    });
+  }
+
+  /** Widget classes of a platform, read from its {@code widgets.txt}. */
+  public static WidgetData getWidgetData(DalvikPlatform platform) {
+    final FileObject widgetsFO = platform.findTool(Tool.WIDGETS.getSystemName());
+    return cachedModel(widgetsFO, WidgetData.class, new Callable<Object>() {
+
+      @Override
+      public Object call() {
+        WidgetData widgets = GrammarModelCache.getDefault().loadWidgets(widgetsFO);
+        if (widgets == null) {
+          LayoutClassesParser parser = new LayoutClassesParser(URLMapper.findURL(widgetsFO, URLMapper.INTERNAL));
+          widgets = parser.load();
+          GrammarModelCache.getDefault().storeWidgets(widgetsFO, widgets);
+        }
+        return widgets;
+      }
+    });
+  }
+
+  /**
+   * Public resources of the framework ({@code @android:...}) read from {@code android.jar} of a platform.
+   * Returns the shared {@link FrameworkResources#EMPTY} table when the jar cannot be read,
+   * the failure is remembered until the jar changes.
+   */
+  static FrameworkResources getFrameworkResources(final DalvikPlatform platform) {
+    FileObject platformDir = platform.getPlatformFolder();
+    final FileObject androidJar = platformDir != null ? platformDir.getFileObject(DalvikPlatform.PLATFORM_JAR) : null;
+    FrameworkResources resources = cachedModel(androidJar, FrameworkResources.class, new Callable<Object>() {
+
+      @Override
+      public Object call() {
+        FrameworkResources resources = GrammarModelCache.getDefault().loadFrameworkResources(androidJar);
+        if (resources == null) {
+          File androidJarFile = androidJar != null ? FileUtil.toFile(androidJar) : null;
+          if (androidJarFile == null) {
+            LOG.log(Level.FINE, "no android.jar in {0}", platform);
+            return FrameworkResources.EMPTY;
+          }
+          try {
+            resources = FrameworkResources.read(androidJarFile);
+            GrammarModelCache.getDefault().storeFrameworkResources(androidJar, resources);
+          } catch (IOException ex) {
+            LOG.log(Level.INFO, "cannot read framework resources from " + androidJarFile, ex);
+            return FrameworkResources.EMPTY;
+          }
+        }
+        return resources;
+      }
+    });
+    return resources != null ? resources : FrameworkResources.EMPTY;
+  }
+
+  /**
+   * Attribute lists of layout elements of a platform, built from given model and widgets.
+   */
+  static LayoutAttributes getLayoutAttributes(
+      DalvikPlatform platform, StyleableModel layoutsModel, WidgetData widgets) {
+    LayoutAttributes attrs = layoutAttributes.get(platform);
+    if (attrs == null || !attrs.isFor(layoutsModel, widgets)) {
+      // concurrent callers may each create a table, they are equal and filled lazily
+      attrs = new LayoutAttributes(layoutsModel, widgets);
+      layoutAttributes.put(platform, attrs);
     }
-    return manifestModel;
+    return attrs;
   }
 
-  public static synchronized StyleableModel getAndroidLayoutsModel(DalvikPlatform platform,
-      Function<String, String> parentTagSupplier) {
-    FileObject attrsLayoutFO = platform.findTool(Tool.ATTRS_LAYOUT.getSystemName());
-    StyleableModel manifestModel = models.get(attrsLayoutFO);
-    if (manifestModel == null) {
-      manifestModel = StyleableModels.getModel(attrsLayoutFO, false, parentTagSupplier);
+  /** Forget all parsed models, e.g. when the SDK changes. */
+  static void clearCache() {
+    models.clear();
+    layoutAttributes.clear();
+  }
+
+  /**
+   * Returns the model parsed from given file. The file is parsed by given loader when it was not
+   * parsed yet or it was modified since. Concurrent requests share one run of the loader.
+   * Results of failed runs (null) are not remembered.
+   */
+  private static <T> T cachedModel(FileObject attrsFO, Class<T> type, Callable<Object> loader) {
+    if (attrsFO == null) {
+      return type.cast(call(loader));
+    }
+    long lastModified = attrsFO.lastModified().getTime();
+    CachedModel cached = models.get(attrsFO);
+    if (cached != null && (!attrsFO.isValid() || lastModified != cached.lastModified)) {
+      LOG.log(Level.FINE, "{0} changed, reparsing", attrsFO);
+      models.remove(attrsFO, cached);
+      cached = null;
+    }
+    if (cached == null) {
+      CachedModel created = new CachedModel(new FutureTask<Object>(loader), lastModified);
+      cached = models.putIfAbsent(attrsFO, created);
+      if (cached == null) {
+        cached = created;
+        listenOnSdk();
+        created.model.run();
+      }
+    }
+    Object model;
+    try {
+      model = waitFor(cached.model);
+    } catch (ExecutionException ex) {
+      models.remove(attrsFO, cached);
+      throw Throwables.propagate(ex.getCause());
+    }
+    if (model == null) {
+      models.remove(attrsFO, cached);
+    }
+    return type.cast(model);
+  }
+
+  private static Object call(Callable<Object> loader) {
+    try {
+      return loader.call();
+    } catch (Exception ex) {
+      throw Throwables.propagate(ex);
+    }
+  }
+
+  /** Waits for a model even when the thread is interrupted, e.g. a cancelled validation. */
+  private static Object waitFor(Future<Object> model) throws ExecutionException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return model.get();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static synchronized void listenOnSdk() {
+    if (sdkListener == null) {
+      sdkListener = new PropertyChangeListener() {
+
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+          if (DalvikPlatformManager.PROP_SDK_LOCATION.equals(evt.getPropertyName())
+              || DalvikPlatformManager.PROP_INSTALLED_PLATFORMS.equals(evt.getPropertyName())) {
+            LOG.log(Level.FINE, "SDK changed, dropping cached models");
+            clearCache();
+          }
+        }
+      };
+      DalvikPlatformManager.getDefault().addPropertyChangeListener(sdkListener);
     }
-    return manifestModel;
   }
 
   /**
@@ -125,7 +339,12 @@ class StyleableModels {
       DefaultHandler2 handler = new DefaultHandler2() {
 
         StyleableInfo currentStyleableTag;
-        AttributeInfo currentAttribute;
+        /** Attribute being parsed, it is built when its end tag is reached. */
+        String attrName;
+        String attrDescription;
+        int attrFormats;
+        List<String> attrEnums = Lists.newArrayList();
+        List<String> attrFlags = Lists.newArrayList();
         StringBuilder lastComment = new StringBuilder();
 
         @Override
@@ -136,35 +355,11 @@ class StyleableModels {
           } else if (EAT_COMMENT.equals(qName)) {
             lastComment.setLength(0);
           } else if (ATTR.equals(qName)) {
-            String name = attrs.getValue(NAME);
-            if (name != null) {
-
-              AttributeInfo genericAttribute = findDefaultAttrInfo(
-                  model, currentStyleableTag != null ? currentStyleableTag.getName() : null, name);
-              currentAttribute = buildAttribute("android:" + name, genericAttribute);
-              if (currentStyleableTag != null) {
-                currentStyleableTag.addAttribute(currentAttribute);
-              } else {
-                model.addAttribute(name, currentAttribute);
-              }
-
-              // TODO format is | separated list of formats
-              String format = attrs.getValue("format");
-              if ("boolean".equals(format)) {
-                currentAttribute.addFormat(AttributeInfo.Format.BOOLEAN);
-              } else if ("dimension".equals(format)) {
-                currentAttribute.addFormat(AttributeInfo.Format.DIMENSION);
-              } else if ("reference".equals(format)) {
-                currentAttribute.addFormat(AttributeInfo.Format.REFERENCE);
-              }
-            }
-            lastComment.setLength(0);
+            startAttribute(attrs.getValue(NAME), attrs.getValue(FORMAT));
           } else if (ENUM.equals(qName)) {
-            if (currentAttribute != null) {
-              currentAttribute.addFormat(AttributeInfo.Format.ENUM);
-              currentAttribute.addEnum(attrs.getValue(NAME));
-            }
-            lastComment.setLength(0);
+            addValue(attrEnums, AttributeInfo.Format.ENUM, attrs.getValue(NAME));
+          } else if (FLAG.equals(qName)) {
+            addValue(attrFlags, AttributeInfo.Format.FLAG, attrs.getValue(NAME));
           }
         }
 
@@ -172,12 +367,55 @@ class StyleableModels {
         public void endElement(String uri, String localName, String qName) throws SAXException {
             lastComment.setLength(0);
             if (ATTR.equals(qName)) {
-              currentAttribute = null;
+              endAttribute();
             } else if (DECLARE_STYLEABLE.equals(qName)) {
               currentStyleableTag = null;
             }
         }
 
+        private void startAttribute(String name, String format) {
+          attrName = name;
+          if (name != null) {
+            AttributeInfo genericAttribute = findDefaultAttrInfo(
+                model, currentStyleableTag != null ? currentStyleableTag.getName() : null, name);
+            attrDescription = lastComment.length() > 0 ? lastComment.toString().trim() :
+                genericAttribute != null ? genericAttribute.getDescription() : null;
+            attrFormats = AttributeInfo.parseFormats(format);
+            attrEnums.clear();
+            attrFlags.clear();
+            if (genericAttribute != null) {
+              attrFormats |= genericAttribute.getFormatMask();
+              attrEnums.addAll(genericAttribute.getEnumValues());
+              attrFlags.addAll(genericAttribute.getFlagValues());
+            }
+          }
+          lastComment.setLength(0);
+        }
+
+        private void addValue(List<String> values, AttributeInfo.Format format, String value) {
+          if (attrName != null && value != null) {
+            attrFormats |= format.mask();
+            if (!values.contains(value)) {
+              values.add(value);
+            }
+          }
+          lastComment.setLength(0);
+        }
+
+        private void endAttribute() {
+          if (attrName == null) {
+            return;
+          }
+          AttributeInfo attribute = model.createAttribute(
+              "android:" + attrName, attrDescription, attrFormats, attrEnums, attrFlags);
+          if (currentStyleableTag != null) {
+            currentStyleableTag.addAttribute(attribute);
+          } else {
+            model.addAttribute(attrName, attribute);
+          }
+          attrName = null;
+        }
+
         @Override
         public void comment(char[] ch, int start, int length) throws SAXException {
           lastComment.append(ch, start, length);
@@ -205,23 +443,6 @@ class StyleableModels {
           return s;
         }
 
-        private AttributeInfo buildAttribute(String name, AttributeInfo defaultAttrInfo) {
-          AttributeInfo a = new AttributeInfo(
-              name, 
-              lastComment.length() > 0 ? lastComment.toString().trim() : 
-                  defaultAttrInfo != null ? defaultAttrInfo.getDescription() : null);
-          if (defaultAttrInfo != null) {
-            for (AttributeInfo.Format f : defaultAttrInfo.getFormats()) {
-              a.addFormat(f);
-            }
-            for (String s : defaultAttrInfo.getEnumValues()) {
-              a.addEnum(s);
-            }
-          }
-          lastComment.setLength(0);
-          return a;
-        }
-
         private AttributeInfo findDefaultAttrInfo(StyleableModel model, String tagName, String attrName) {
           if (tagName == null) {
             return model.getAttributeValue(attrName);
@@ -229,9 +450,11 @@ class StyleableModels {
           String superTagName = superTagNameSupplier.apply(tagName);
           if (superTagName != null) {
             StyleableInfo styleable = model.getStyleables().get(superTagName);
-            for (AttributeInfo attrInfo : styleable.getAttributeNames()) {
-              if (attrInfo.getName().equals("android:" + attrName)) {
-                return attrInfo;
+            if (styleable != null) {
+              for (AttributeInfo attrInfo : styleable.getAttributeNames()) {
+                if (attrInfo.getName().equals("android:" + attrName)) {
+                  return attrInfo;
+                }
               }
             }
           }
@@ -249,6 +472,7 @@ class StyleableModels {
         LOG.log(Level.WARNING, "Missing XML default values file.");
       }
 
+      model.freeze();
       return model;
     } catch (SAXException ex) {
       Exceptions.printStackTrace(ex);
@@ -13,75 +13,43 @@
  */
 package org.netbeans.modules.android.grammars;
 
-import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
-import java.util.Collection;
-import java.util.Map;
+import com.google.common.collect.Lists;
+import java.util.List;
 
 /**
+ * Lookups of widget classes. All of them use the hash indexes of {@link WidgetData}.
  *
  * @author radim
  */
 class UIClassDescriptors {
-  private static Predicate<UIClassDescriptor> simpleName(final String simpleName) {
-    return new Predicate<UIClassDescriptor>() {
-
-      @Override
-      public boolean apply(UIClassDescriptor input) {
-        return input.getSimpleName().equals(simpleName);
-      }
-    };
-  }
-  private static Predicate<UIClassDescriptor> fqName(final String fqName) {
-    return new Predicate<UIClassDescriptor>() {
-
-      @Override
-      public boolean apply(UIClassDescriptor input) {
-        return input.getFQClassName().equals(fqName);
-      }
-    };
-  }
-  private static Predicate<UIClassDescriptor> outerClassName(final String outerName) {
-    return new Predicate<UIClassDescriptor>() {
-
-      @Override
-      public boolean apply(UIClassDescriptor input) {
-        if (outerName == null) {
-          return false;
-        }
-        return input.getFQClassName().equals(outerName + ".LayoutParams");
-      }
-    };
-  }
 
   static Iterable<UIClassDescriptor> findBySimpleName(
       WidgetData classData, String simpleClassName) {
-    return findByName(Iterables.concat(classData.data.values()), simpleName(simpleClassName));
+    List<Iterable<UIClassDescriptor>> found = Lists.newArrayListWithCapacity(LayoutElementType.values().length);
+    for (LayoutElementType type : LayoutElementType.values()) {
+      found.add(classData.getBySimpleName(type, simpleClassName));
+    }
+    return Iterables.concat(found);
   }
 
   static Iterable<UIClassDescriptor> findBySimpleName(
       WidgetData classData, LayoutElementType type, String simpleClassName) {
-    return findByName(classData.data.get(type), simpleName(simpleClassName));
+    return classData.getBySimpleName(type, simpleClassName);
   }
 
   static UIClassDescriptor findByFQName(
       WidgetData classData, String fqClassName) {
-    return Iterables.getOnlyElement(findByName(classData.classes, fqName(fqClassName)), null);
+    return classData.getByFQName(fqClassName);
   }
 
   static UIClassDescriptor findByFQName(
       WidgetData classData, LayoutElementType type, String fqClassName) {
-    return Iterables.getOnlyElement(findByName(classData.data.get(type), fqName(fqClassName)), null);
+    return classData.getByFQName(type, fqClassName);
   }
 
   static UIClassDescriptor findParamsForName(
       WidgetData classData, String viewGroupName) {
-    return Iterables.getOnlyElement(
-        findByName(classData.data.get(LayoutElementType.LAYOUT_PARAM), outerClassName(viewGroupName)), null);
-  }
-
-  private static Iterable<UIClassDescriptor> findByName(
-      Iterable<UIClassDescriptor> classes, Predicate<UIClassDescriptor> predicate) {
-    return Iterables.filter(classes, predicate);
+    return classData.getLayoutParams(viewGroupName);
   }
 }
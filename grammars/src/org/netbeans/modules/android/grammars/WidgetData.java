@@ -13,21 +13,73 @@
  */
 package org.netbeans.modules.android.grammars;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 
 /**
+ * Widget classes of a platform with hash indexes used by {@link UIClassDescriptors}.
  *
  * @author radim
  */
 class WidgetData {
 
+  /** Suffix of a nested class with layout parameters of a view group. */
+  static final String LAYOUT_PARAMS_SUFFIX = ".LayoutParams";
+
   public final Map<LayoutElementType, Collection<UIClassDescriptor>> data;
   public final Collection<UIClassDescriptor> classes;
 
+  private final Map<String, UIClassDescriptor> byFQName = Maps.newHashMap();
+  private final Map<LayoutElementType, ListMultimap<String, UIClassDescriptor>> bySimpleName =
+      new EnumMap<LayoutElementType, ListMultimap<String, UIClassDescriptor>>(LayoutElementType.class);
+  private final Map<LayoutElementType, Map<String, UIClassDescriptor>> byTypeAndFQName =
+      new EnumMap<LayoutElementType, Map<String, UIClassDescriptor>>(LayoutElementType.class);
+
   public WidgetData(Map<LayoutElementType, Collection<UIClassDescriptor>> data, Collection<UIClassDescriptor> classes) {
     this.data = Collections.unmodifiableMap(data);
     this.classes = Collections.unmodifiableCollection(classes);
+
+    for (UIClassDescriptor clz : classes) {
+      byFQName.put(clz.getFQClassName(), clz);
+    }
+    for (Map.Entry<LayoutElementType, Collection<UIClassDescriptor>> entry : data.entrySet()) {
+      ListMultimap<String, UIClassDescriptor> simpleNames = ArrayListMultimap.create();
+      Map<String, UIClassDescriptor> fqNames = Maps.newHashMap();
+      for (UIClassDescriptor clz : entry.getValue()) {
+        simpleNames.put(clz.getSimpleName(), clz);
+        fqNames.put(clz.getFQClassName(), clz);
+      }
+      bySimpleName.put(entry.getKey(), simpleNames);
+      byTypeAndFQName.put(entry.getKey(), fqNames);
+    }
+  }
+
+  /** Classes of given type with given simple name. */
+  Collection<UIClassDescriptor> getBySimpleName(LayoutElementType type, String simpleName) {
+    ListMultimap<String, UIClassDescriptor> index = bySimpleName.get(type);
+    return index != null ? index.get(simpleName) : Collections.<UIClassDescriptor>emptyList();
+  }
+
+  /** Any class with given fully qualified name, or {@code null}. */
+  UIClassDescriptor getByFQName(String fqName) {
+    return byFQName.get(fqName);
+  }
+
+  /** Class of given type with given fully qualified name, or {@code null}. */
+  UIClassDescriptor getByFQName(LayoutElementType type, String fqName) {
+    Map<String, UIClassDescriptor> index = byTypeAndFQName.get(type);
+    return index != null ? index.get(fqName) : null;
+  }
+
+  /** Layout parameters declared by given view group, or {@code null}. */
+  UIClassDescriptor getLayoutParams(String viewGroupName) {
+    return viewGroupName != null
+        ? getByFQName(LayoutElementType.LAYOUT_PARAM, viewGroupName + LAYOUT_PARAMS_SUFFIX)
+        : null;
   }
 }
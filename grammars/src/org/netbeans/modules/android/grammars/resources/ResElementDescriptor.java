@@ -13,10 +13,11 @@
  */
 package org.netbeans.modules.android.grammars.resources;
 
-import java.util.Collections;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Description of an element used in XML files under {@code res/values}.
+ * Descriptors are immutable and can be shared.
  * @author radim
  */
 public class ResElementDescriptor {
@@ -30,8 +31,9 @@ public class ResElementDescriptor {
       Iterable<ResAttrDescriptor> attrs, Iterable<ResElementDescriptor> children) {
     this.name = name;
     this.description = description;
-    this.children = children != null ? children : Collections.<ResElementDescriptor>emptyList();
-    this.attrs = attrs != null ? attrs : Collections.<ResAttrDescriptor>emptyList();
+    this.children = children != null ?
+        ImmutableList.copyOf(children) : ImmutableList.<ResElementDescriptor>of();
+    this.attrs = attrs != null ? ImmutableList.copyOf(attrs) : ImmutableList.<ResAttrDescriptor>of();
   }
 
   public String getName() {
@@ -30,6 +30,7 @@ import org.netbeans.modules.xml.api.model.GrammarQuery;
 import org.netbeans.modules.xml.api.model.GrammarResult;
 import org.netbeans.modules.xml.api.model.HintContext;
 import org.openide.util.Enumerations;
+import org.openide.util.NbBundle;
 import org.w3c.dom.Attr;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Element;
@@ -45,10 +46,26 @@ public class ResourcesGrammar implements GrammarQuery {
 
   private static final Logger LOG = Logger.getLogger(ResourcesGrammar.class.getName());
 
+  private static final String STYLE = "style";
+  private static final String ITEM = "item";
+  private static final String PARENT_ATTR = "parent";
+
   private final ResourcesModel model;
+  /*Nullable*/
+  private final StyleSupport styles;
 
   public ResourcesGrammar() {
-    model = new ResourcesModel();
+    this(null);
+  }
+
+  /**
+   * Creates a grammar that can complete items of styles.
+   *
+   * @param styles styles of the project or null if they are not known
+   */
+  public ResourcesGrammar(StyleSupport styles) {
+    model = ResourcesModel.getDefault();
+    this.styles = styles;
   }
 
   /**
@@ -181,23 +198,32 @@ public class ResourcesGrammar implements GrammarQuery {
   @Override
   public Enumeration<GrammarResult> queryValues(HintContext ctx) {
     LOG.log(Level.FINE, "queryValues({0})", ctx.getCurrentPrefix());
-//    Attr ownerAttr;
-//    if (ctx.getNodeType() == Node.ATTRIBUTE_NODE) {
-//        ownerAttr = (Attr)ctx;
-//    } else {
-//        LOG.fine("...unknown node type");
-//        return Enumerations.empty();
-//    }
-//    String attrName = ownerAttr.getName();
-//    if (attrName.startsWith("android:")) {
-//      attrName = attrName.substring("android:".length());
-//    }
+    if (styles == null || ctx.getNodeType() != Node.ATTRIBUTE_NODE) {
+      return Enumerations.empty();
+    }
+    Attr ownerAttr = (Attr) ctx;
+    Element item = ownerAttr.getOwnerElement();
+    Node style = item != null ? item.getParentNode() : null;
+    if (!ResourcesModel.NAME_ATTR.equals(ownerAttr.getName()) || !ITEM.equals(item.getTagName())
+        || style == null || !STYLE.equals(style.getNodeName())) {
+      return Enumerations.empty();
+    }
+    // names of items in a style
+    Element styleElement = (Element) style;
+    String styleName = styleElement.getAttribute(ResourcesModel.NAME_ATTR);
+    String parent = styleElement.hasAttribute(PARENT_ATTR) ? styleElement.getAttribute(PARENT_ATTR) : null;
+    String prefix = ctx.getCurrentPrefix();
     List<GrammarResult> choices = new ArrayList<GrammarResult>();
-//    for (String value : model.getAttributeValues(attrName)) {
-//      if (value.startsWith(ctx.getCurrentPrefix())) {
-//        choices.add(new MyText(value));
-//      }
-//    }
+    for (String itemName : styles.getItemNames()) {
+      if (itemName.startsWith(prefix)) {
+        String inherited = styles.getInheritedValue(styleName, parent, itemName);
+        choices.add(new MyText(itemName, inherited != null ?
+            NbBundle.getMessage(ResourcesGrammar.class, "MSG_InheritedValue",
+                inherited.replace("&", "&amp;").replace("<", "&lt;")) :
+            null));
+      }
+    }
+    LOG.log(Level.FINE, "queryValues({0}) -> {1}", new Object[] {prefix, choices.size()});
     return Collections.enumeration(choices);
   }
 
@@ -241,7 +267,8 @@ public class ResourcesGrammar implements GrammarQuery {
 
     private String data;
 
-    MyText(String data) {
+    MyText(String data, String description) {
+      super(description);
       this.data = data;
     }
 
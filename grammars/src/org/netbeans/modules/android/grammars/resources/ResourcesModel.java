@@ -13,10 +13,11 @@
  */
 package org.netbeans.modules.android.grammars.resources;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Description of an element used in XML files under {@code res/values}.
+ * The model is immutable, it is built once and shared by all grammars.
  * @author radim
  */
 public class ResourcesModel {
@@ -24,11 +25,18 @@ public class ResourcesModel {
   public static final String ROOT_ELEMENT = "resources";
   public static final String NAME_ATTR = "name";
   public static final String TYPE_ATTR = "type";
+  public static final String FORMAT_ATTR = "format";
 
-  private ResElementDescriptor resourcesElement;
+  private static final ResourcesModel DEFAULT = new ResourcesModel();
 
-  public ResourcesModel() {
-//    ResAttrDescriptor nameAttrInfo = new ResAttrDescriptor(NAME_ATTR, null); //, new Format[]{Format.STRING});
+  private final ResElementDescriptor resourcesElement;
+
+  /** Returns the shared model. */
+  public static ResourcesModel getDefault() {
+    return DEFAULT;
+  }
+
+  private ResourcesModel() {
     ResElementDescriptor color_element = new ResElementDescriptor(
         "color",
         "A @color@ value specifies an RGB value with an alpha channel, "
@@ -36,15 +44,7 @@ public class ResourcesModel {
         + "for a Drawable or the color to use for text.  "
         + "It always begins with a # character and then is followed by the alpha-red-green-blue information "
         + "in one of the following formats: #RGB, #ARGB, #RRGGBB or #AARRGGBB.",
-  //      "http://code.google.com/android/reference/available-resources.html#colorvals",
-        Lists.newArrayList(
-            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this color.")), // Text attribute
-  //        null /* nsUri */,
-  //        nameAttrInfo),
-  //        new ColorValueDescriptor(
-  //        "Value*",
-  //        "A mandatory color value.")
-  //      },
+        ImmutableList.of(nameAttr("color")),
         null); // no child nodes
     ResElementDescriptor string_element = new ResElementDescriptor(
         "string",
@@ -52,45 +52,15 @@ public class ResourcesModel {
         + "You can add formatting to your string by using three standard HTML tags: b, i, and u. "
         + "If you use an apostrophe or a quote in your string, you must either escape it "
         + "or enclose the whole string in the other kind of enclosing quotes.",
-  //      "http://code.google.com/android/reference/available-resources.html#stringresources",
-        Lists.newArrayList(
-            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this string.")), // Text attribute
-//              null /* nsUri */,
-//              nameAttrInfo),
-//              new TextValueDescriptor(
-//              "Value*",
-//              "A mandatory string value.")),
+        ImmutableList.of(nameAttr("string")),
         null); // no child nodes
     ResElementDescriptor item_element = new ResElementDescriptor(
         "item",
         null, // TODO find javadoc
-  //      null, // TODO find link to javadoc
-        Lists.newArrayList(
-            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this resource."), // Text attribute
-  //        null /* nsUri */,
-  //        nameAttrInfo),
-            new ResAttrDescriptor("type", "The mandatory type of this resource."), // List attribute
-  //        null /* nsUri */,
-  //        new AttributeInfo(TYPE_ATTR,
-  //        new Format[]{Format.STRING, Format.ENUM}).setEnumValues(ResourceType.getNames())),
-            new ResAttrDescriptor("format", "The optional format of this resource.")), // flag (bitmask value)
-  //        null /* nsUri */,
-  //        new AttributeInfo("format",
-  //        new Format[]{Format.STRING, Format.FLAG}).setFlagValues(
-  //        new String[]{
-  //          "boolean",
-  //          "color",
-  //          "dimension",
-  //          "float",
-  //          "fraction",
-  //          "integer",
-  //          "reference",
-  //          "string"
-  //        })),
-  //        new TextValueDescriptor(
-  //        "Value",
-  //        "A standard string, hex color value, or reference to any other resource type.")
-  //      },
+        ImmutableList.of(
+            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this resource."),
+            new ResAttrDescriptor(TYPE_ATTR, "The mandatory type of this resource."),
+            new ResAttrDescriptor(FORMAT_ATTR, "The optional format of this resource.")),
         null); // no child nodes
     ResElementDescriptor drawable_element = new ResElementDescriptor(
         "drawable",
@@ -98,15 +68,7 @@ public class ResourcesModel {
         + "Android accepts color values written in various web-style formats -- "
         + "a hexadecimal constant in any of the following forms: #RGB, #ARGB, #RRGGBB, #AARRGGBB. "
         + "Zero in the alpha channel means transparent. The default value is opaque.",
-  //      "http://code.google.com/android/reference/available-resources.html#colordrawableresources",
-        Lists.newArrayList(
-            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this drawable.")), // Text attribute
-  //        null /* nsUri */,
-  //        nameAttrInfo),
-  //        new TextValueDescriptor(
-  //        "Value*",
-  //        "A mandatory color value in the form #RGB, #ARGB, #RRGGBB or #AARRGGBB.")
-  //      },
+        ImmutableList.of(nameAttr("drawable")),
         null); // no child nodes
     ResElementDescriptor dimen_element = new ResElementDescriptor(
         "dimen",
@@ -114,118 +76,151 @@ public class ResourcesModel {
         + "A dimension resource is a number followed by a unit of measurement. "
         + "Supported units are px (pixels), in (inches), mm (millimeters), pt (points at 72 DPI), "
         + "dp (density-independent pixels) and sp (scale-independent pixels)",
-  //      "http://code.google.com/android/reference/available-resources.html#dimension",
-        Lists.newArrayList(
-            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this dimension.")), // Text attribute
-  //        null /* nsUri */,
-  //        nameAttrInfo),
-  //        new TextValueDescriptor(
-  //        "Value*",
-  //        "A mandatory dimension value is a number followed by a unit of measurement. For example: 10px, 2in, 5sp.")
-  //      },
+        ImmutableList.of(nameAttr("dimension")),
+        null); // no child nodes
+    ResElementDescriptor bool_element = new ResElementDescriptor(
+        "bool",
+        "A @boolean@ value, true or false.",
+        ImmutableList.of(nameAttr("boolean")),
+        null); // no child nodes
+    ResElementDescriptor integer_element = new ResElementDescriptor(
+        "integer",
+        "An @integer@ value in decimal or hexadecimal (0x) notation.",
+        ImmutableList.of(nameAttr("integer")),
+        null); // no child nodes
+    ResElementDescriptor fraction_element = new ResElementDescriptor(
+        "fraction",
+        "A @fraction@ value, a floating point number followed by % (fraction of the base size) "
+        + "or %p (fraction of the parent size).",
+        ImmutableList.of(nameAttr("fraction")),
+        null); // no child nodes
+    ResElementDescriptor id_element = new ResElementDescriptor(
+        "id",
+        "A unique resource @ID@ that can be used for views or other application components. "
+        + "The element has no value.",
+        ImmutableList.of(nameAttr("ID")),
         null); // no child nodes
     ResElementDescriptor style_element = new ResElementDescriptor(
         "style",
         "Both @styles and themes@ are defined in a style block containing one or more string or numerical values "
         + "(typically color values), or references to other resources (drawables and so on).",
-  //      "http://code.google.com/android/reference/available-resources.html#stylesandthemes",
-        Lists.newArrayList(
-            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this theme."), // Text attribute
-  //        null /* nsUri */,
-  //        nameAttrInfo),
+        ImmutableList.of(
+            nameAttr("theme"),
             new ResAttrDescriptor("parent",
                     "An optional parent theme. "
                     + "All values from the specified theme will be inherited into this theme. "
                     + "Any values with identical names that you specify will override inherited values.")),
-  //        null /* nsUri */,
-  //        new AttributeInfo("parent",
-  //        new Format[]{Format.STRING})),},
-        Lists.newArrayList(
+        ImmutableList.of(
           new ResElementDescriptor(
               "item",
               "A value to use in this @theme@. It can be a standard string, a hex color value, or a reference to any other resource type.",
-//              "http://code.google.com/android/reference/available-resources.html#stylesandthemes",
-              Lists.newArrayList(
-                  new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this item.")), // text attr
-//                null /* nsUri */,
-//                nameAttrInfo),
-//                new TextValueDescriptor(
-//                "Value*",
-//                "A mandatory standard string, hex color value, or reference to any other resource type.")
-//              },
+              ImmutableList.of(nameAttr("item")),
               null))
         );
     ResElementDescriptor string_array_element = new ResElementDescriptor(
         "string-array",
         "An array of strings. Strings are added as underlying item elements to the array.",
-//        null, // tooltips
-        Lists.newArrayList(
-            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this string array.")), // Text attribute
-  //        null /* nsUri */,
-  //        nameAttrInfo),},
-        Lists.newArrayList(
+        ImmutableList.of(nameAttr("string array")),
+        ImmutableList.of(
             new ResElementDescriptor(
-            "item",
-            "A string value to use in this string array.",
-            null, // tooltip
-//            new ResAttrDescriptor[]{
-//              new TextValueDescriptor(
-//              "Value*",
-//              "A mandatory string.")
-//            },
-            null // no child nodes
-            )
+                "item",
+                "A string value to use in this string array.",
+                null,
+                null) // no child nodes
         ));
     ResElementDescriptor integer_array_element = new ResElementDescriptor(
         "integer-array",
         "An array of integers. Integers are added as underlying item elements to the array.",
-        Lists.newArrayList(
-            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this integer array.")), // Text attribute
-  //        null /* nsUri */,
-  //        nameAttrInfo),},
-        Lists.newArrayList(
+        ImmutableList.of(nameAttr("integer array")),
+        ImmutableList.of(
             new ResElementDescriptor(
                 "item",
                 "An integer value to use in this integer array.",
                 null,
-//                      null, // tooltip
-//                new ResAttrDescriptor[]{
-//                  new TextValueDescriptor(
-//                  "Value*",
-//                  "A mandatory integer.")
-//                },
                 null)
         ));
     // surprisingly eclipse is missing this
     ResElementDescriptor typed_array_element = new ResElementDescriptor(
         "array",
         "A type array. Referenced using the value provided in the name attribute.",
-        Lists.newArrayList(
-            new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this typed array.")), // Text attribute
-  //        null /* nsUri */,
-  //        nameAttrInfo),},
-        Lists.newArrayList(
+        ImmutableList.of(nameAttr("typed array")),
+        ImmutableList.of(
             new ResElementDescriptor(
                 "item",
                 "A generic resource. The value can be a reference to a resource or a simple data type.",
                 null,
                 null)
         ));
+    ResElementDescriptor plurals_element = new ResElementDescriptor(
+        "plurals",
+        "A collection of @quantity strings@. The string used depends on the number of items.",
+        ImmutableList.of(nameAttr("plurals")),
+        ImmutableList.of(
+            new ResElementDescriptor(
+                "item",
+                "A plural or singular string for one quantity.",
+                ImmutableList.of(
+                    new ResAttrDescriptor("quantity",
+                        "The mandatory quantity: zero, one, two, few, many or other.")),
+                null)
+        ));
+    ResElementDescriptor attr_element = attrElement(
+        "Declares an @attribute@ that can be used in styles and themes or in declare-styleable groups.");
+    ResElementDescriptor declare_styleable_element = new ResElementDescriptor(
+        "declare-styleable",
+        "A group of @attributes@ accepted by a custom view. "
+        + "Attributes declared elsewhere are referenced by name without a format.",
+        ImmutableList.of(nameAttr("styleable")),
+        ImmutableList.of(attrElement("An @attribute@ of this styleable.")));
     resourcesElement  = new ResElementDescriptor(
         ROOT_ELEMENT,
         null,
-//        "http://code.google.com/android/reference/available-resources.html",
         null, // no attributes
-        Lists.newArrayList(
+        ImmutableList.of(
           string_element,
           color_element,
           dimen_element,
           drawable_element,
+          bool_element,
+          integer_element,
+          fraction_element,
+          id_element,
           style_element,
           item_element,
           string_array_element,
           integer_array_element,
-          typed_array_element));
+          typed_array_element,
+          plurals_element,
+          attr_element,
+          declare_styleable_element));
+  }
+
+  private static ResAttrDescriptor nameAttr(String what) {
+    return new ResAttrDescriptor(NAME_ATTR, "The mandatory name used in referring to this " + what + ".");
+  }
+
+  private static ResElementDescriptor attrElement(String description) {
+    ResAttrDescriptor valueName = new ResAttrDescriptor(NAME_ATTR, "The mandatory name of this value.");
+    ResAttrDescriptor value = new ResAttrDescriptor("value", "The mandatory integer value.");
+    return new ResElementDescriptor(
+        "attr",
+        description,
+        ImmutableList.of(
+            nameAttr("attribute"),
+            new ResAttrDescriptor(FORMAT_ATTR,
+                "The optional format of values of the attribute, e.g. reference, string, color, dimension, "
+                + "boolean, integer, float, fraction, enum or flag. Formats can be combined using |.")),
+        ImmutableList.of(
+            new ResElementDescriptor(
+                "enum",
+                "A named value of an attribute that accepts one of the values.",
+                ImmutableList.of(valueName, value),
+                null),
+            new ResElementDescriptor(
+                "flag",
+                "A named bit of an attribute whose values can be combined using |.",
+                ImmutableList.of(valueName, value),
+                null)));
   }
 
   public ResElementDescriptor getRootElement() {
@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars.resources;
+
+import java.util.List;
+
+/**
+ * Knowledge about styles and themes of a project used by {@link ResourcesGrammar}
+ * to complete items of a {@code <style>}.
+ */
+public interface StyleSupport {
+
+  /** Names of attributes that can be set by items of a style, e.g. {@code android:textColor}, sorted. */
+  List<String> getItemNames();
+
+  /**
+   * Value of an item that a style inherits from its parents.
+   *
+   * @param styleName name of the style, its parent can be implied by the name like {@code Big.Red}
+   * @param parent value of {@code parent} attribute of the style or null
+   * @param itemName name of the item
+   * @return the inherited value or null if no parent sets the item
+   */
+  String getInheritedValue(String styleName, String parent, String itemName);
+}
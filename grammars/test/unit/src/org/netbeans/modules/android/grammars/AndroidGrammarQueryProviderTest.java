@@ -100,4 +100,54 @@ public class AndroidGrammarQueryProviderTest {
     assertTrue(query instanceof ResourcesGrammar);
   }
 
+  @Test
+  public void qualifiedResourceFolders() throws Exception {
+    final AndroidProject proj = (AndroidProject) ProjectManager.getDefault().findProject(projdir);
+    AndroidGeneralData data = AndroidGeneralData.fromProject(proj);
+    data.setPlatform(DalvikPlatformManager.getDefault().findPlatformForTarget("android-8"));
+    proj.update(data);
+    FileObject res = projdir.getFileObject("res");
+    FileObject strings = FileUtil.copyFile(
+        projdir.getFileObject("res/values/strings.xml"), res.createFolder("values-de-v11"), "strings");
+    FileObject layout = FileUtil.copyFile(
+        projdir.getFileObject("res/layout/snake_layout.xml"), res.createFolder("layout-land"), "snake_layout");
+    FileObject notResource = FileUtil.copyFile(
+        projdir.getFileObject("res/layout/snake_layout.xml"), res.createFolder("layout-foo"), "snake_layout");
+
+    AndroidGrammarQueryProvider grammarQueryProvider = new AndroidGrammarQueryProvider();
+    assertTrue(grammarQueryProvider.getGrammar(
+        new GrammarEnvironment(Enumerations.empty(), new InputSource(), strings)) instanceof ResourcesGrammar);
+    assertTrue(grammarQueryProvider.getGrammar(
+        new GrammarEnvironment(Enumerations.empty(), new InputSource(), layout)) instanceof AndroidLayoutGrammar);
+    assertFalse(grammarQueryProvider.getGrammar(
+        new GrammarEnvironment(Enumerations.empty(), new InputSource(), notResource)) instanceof AndroidLayoutGrammar);
+  }
+
+  @Test
+  public void noGrammarForOtherResourceFolders() throws Exception {
+    FileObject res = projdir.getFileObject("res");
+    FileObject menu = res.createFolder("menu").createData("options.xml");
+    FileObject drawable = res.createFolder("drawable-hdpi").createData("button.xml");
+
+    AndroidGrammarQueryProvider grammarQueryProvider = new AndroidGrammarQueryProvider();
+    assertNull(grammarQueryProvider.enabled(new GrammarEnvironment(Enumerations.empty(), new InputSource(), menu)));
+    assertNull(grammarQueryProvider.enabled(new GrammarEnvironment(Enumerations.empty(), new InputSource(), drawable)));
+    assertFalse(AndroidGrammarQueryProvider.isLayoutFile(drawable));
+  }
+
+  @Test
+  public void resourceRootOwners() throws Exception {
+    FileObject res = projdir.getFileObject("res");
+    assertSame(pp, ResourceRoots.findOwner(res));
+    assertSame(pp, ResourceRoots.findOwner(res));
+    assertNull(ResourceRoots.findOwner(projdir.getFileObject("src")));
+
+    FileObject otherRes = FileUtil.toFileObject(tempFolder).createFolder("NotAProject").createFolder("res");
+    assertNull(ResourceRoots.findOwner(otherRes));
+    assertNull(ResourceRoots.findOwner(otherRes));
+
+    // new file in project folder drops cached owner, it is resolved again
+    projdir.createData("notes.txt").delete();
+    assertSame(pp, ResourceRoots.findOwner(res));
+  }
 }
@@ -16,13 +16,17 @@ package org.netbeans.modules.android.grammars;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.io.Resources;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.netbeans.modules.android.core.sdk.DalvikPlatform;
 import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
 import org.netbeans.modules.android.core.sdk.Utils;
+import org.netbeans.modules.xml.api.model.GrammarResult;
 import static org.junit.Assert.*;
 
 /**
@@ -52,7 +56,13 @@ public class AndroidLayoutGrammarTest {
             new ResourceRef(true, "com.example.android.snake", "id", "text"),
             new ResourceRef(true, "com.example.android.snake", "string", "mode_lose_prefix"),
             new ResourceRef(true, "com.example.android.snake", "string", "mode_lose_suffix"),
-            new ResourceRef(true, "com.example.android.snake", "string", "mode_pause"));
+            new ResourceRef(true, "com.example.android.snake", "string", "mode_pause"),
+            new ResourceRef(true, "com.example.android.snake", "dimen", "margin"));
+      }
+
+      @Override
+      public String getValue(ResourceRef ref) {
+        return "dimen".equals(ref.resourceType) && "margin".equals(ref.resourceName) ? "16dp" : null;
       }
     };
 
@@ -215,4 +225,40 @@ public class AndroidLayoutGrammarTest {
       assertEquals(1, l.size());
     }
   }
+
+  @Test
+  public void dimensionReferencesWithValues() throws Exception {
+    String p = PRELUDE + "  <LinearLayout " + XMLNS + LAYOUT_ATTRS
+        + "<TextView android:layout_width=\"@dimen/HERE\"/>\n" + "  </LinearLayout>\n";
+    for (AndroidLayoutGrammar g : grammars) {
+      List<GrammarResult> results = Collections.list(g.queryValues(TestUtil.createCompletion(p)));
+      assertEquals(g.toString() + " " + results, 1, results.size());
+      assertEquals("@dimen/margin", results.get(0).getDisplayName());
+      assertTrue(results.get(0).getDescription(), results.get(0).getDescription().contains("16dp"));
+    }
+  }
+
+  @Test
+  public void testFlattenedAttributes() throws Exception {
+    for (AndroidLayoutGrammar g : grammars) {
+      LayoutAttributes attributes = StyleableModels.getLayoutAttributes(
+          g.platform, g.getStyleableModel(), StyleableModels.getWidgetData(g.platform));
+      List<AttributeInfo> attrs = attributes.forWidget("AutoCompleteTextView");
+      assertSame(attrs, attributes.forWidget("AutoCompleteTextView"));
+      Set<String> names = Sets.newHashSet();
+      for (AttributeInfo attr : attrs) {
+        assertTrue(g.toString() + " " + attr, names.add(attr.getName()));
+      }
+      assertTrue(g.toString(), names.contains("android:completionHint"));
+      assertTrue(g.toString(), names.contains("android:text"));
+      assertTrue(g.toString(), names.contains("android:id"));
+
+      names.clear();
+      for (AttributeInfo attr : attributes.forLayoutParams("RelativeLayout")) {
+        names.add(attr.getName());
+      }
+      assertTrue(g.toString(), names.contains("android:layout_below"));
+      assertTrue(g.toString(), names.contains("android:layout_width"));
+    }
+  }
 }
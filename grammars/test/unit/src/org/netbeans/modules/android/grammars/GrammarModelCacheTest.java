@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.collect.Sets;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
+import org.netbeans.modules.android.core.sdk.Tool;
+import org.netbeans.modules.android.core.sdk.Utils;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.filesystems.URLMapper;
+import static org.junit.Assert.*;
+
+/**
+ * Test persistent cache of grammar models.
+ */
+public class GrammarModelCacheTest {
+
+  private static final String SDK_DIR = System.getProperty("test.all.android.sdks.home");
+
+  @BeforeClass
+  public static void classSetup() {
+    DalvikPlatformManager.getDefault().setSdkLocation(SDK_DIR);
+  }
+
+  private static File createCacheDir() throws Exception {
+    File dir = File.createTempFile("grammars", "cache");
+    assertTrue(dir.delete());
+    assertTrue(dir.mkdirs());
+    return dir;
+  }
+
+  @Test
+  public void testModelRoundTrip() throws Exception {
+    GrammarModelCache cache = new GrammarModelCache(createCacheDir());
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      assertNotNull(platform);
+      FileObject attrsManifestFO = platform.findTool(Tool.ATTRS_MANIFEST.getSystemName());
+      assertNull(cache.loadModel(attrsManifestFO, true));
+
+      StyleableModel model = StyleableModels.getAndroidManifestModel(platform);
+      cache.storeModel(attrsManifestFO, true, model);
+      StyleableModel cached = cache.loadModel(attrsManifestFO, true);
+      assertNotNull("model of " + p + " is cached", cached);
+      assertEquals(model.getStyleables().keySet(), cached.getStyleables().keySet());
+      assertEquals(model.getStyleables().get("application").getDescription(),
+          cached.getStyleables().get("application").getDescription());
+      assertEquals(model.getStyleables().get("activity").getAttributeNames().size(),
+          cached.getStyleables().get("activity").getAttributeNames().size());
+      // manifest and layouts model are cached independently
+      assertNull(cache.loadModel(attrsManifestFO, false));
+    }
+  }
+
+  @Test
+  public void testWidgetsRoundTrip() throws Exception {
+    GrammarModelCache cache = new GrammarModelCache(createCacheDir());
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      assertNotNull(platform);
+      FileObject widgetsFO = platform.findTool(Tool.WIDGETS.getSystemName());
+      WidgetData data = new LayoutClassesParser(URLMapper.findURL(widgetsFO, URLMapper.INTERNAL)).load();
+
+      cache.storeWidgets(widgetsFO, data);
+      WidgetData cached = cache.loadWidgets(widgetsFO);
+      assertNotNull("widgets of " + p + " are cached", cached);
+      assertEquals(Sets.newHashSet(data.classes), Sets.newHashSet(cached.classes));
+      for (LayoutElementType type : LayoutElementType.values()) {
+        assertEquals(Sets.newHashSet(data.data.get(type)), Sets.newHashSet(cached.data.get(type)));
+      }
+      assertEquals("android.view.ViewGroup",
+          UIClassDescriptors.findByFQName(cached, "android.widget.LinearLayout").getSuperclass());
+    }
+  }
+
+  @Test
+  public void testFrameworkResourcesRoundTrip() throws Exception {
+    GrammarModelCache cache = new GrammarModelCache(createCacheDir());
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      assertNotNull(platform);
+      FileObject androidJar = platform.getPlatformFolder().getFileObject(DalvikPlatform.PLATFORM_JAR);
+      assertNull(cache.loadFrameworkResources(androidJar));
+
+      FrameworkResources resources = StyleableModels.getFrameworkResources(platform);
+      cache.storeFrameworkResources(androidJar, resources);
+      FrameworkResources cached = cache.loadFrameworkResources(androidJar);
+      assertNotNull("framework resources of " + p + " are cached", cached);
+      assertEquals(resources.getResources(), cached.getResources());
+      assertEquals(resources.getReferences(), cached.getReferences());
+    }
+  }
+
+  @Test
+  public void testCorruptModelIndex() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0); // no attributes
+    out.writeInt(1); // one lookup entry pointing to a missing attribute
+    out.writeUTF("orientation");
+    out.writeInt(5);
+    out.close();
+    try {
+      GrammarModelCache.readModel(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+      fail("corrupt index is reported");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testCorruptWidgetType() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0); // no classes
+    out.writeInt(1); // one element type with an unknown ordinal
+    out.writeByte(LayoutElementType.values().length);
+    out.writeInt(0);
+    out.close();
+    try {
+      GrammarModelCache.readWidgets(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+      fail("corrupt type is reported");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testTruncatedEntryIsDropped() throws Exception {
+    File dir = createCacheDir();
+    GrammarModelCache cache = new GrammarModelCache(dir);
+    FileObject attrs = FileUtil.createMemoryFileSystem().getRoot().createData("attrs.xml");
+    StyleableModel model = new StyleableModel();
+    model.addAttribute("orientation",
+        model.createAttribute("orientation", null, 0, Collections.<String>emptyList(), Collections.<String>emptyList()));
+    model.freeze();
+    cache.storeModel(attrs, false, model);
+    assertNotNull(cache.loadModel(attrs, false));
+
+    File[] entries = dir.listFiles();
+    assertEquals(1, entries.length);
+    RandomAccessFile raf = new RandomAccessFile(entries[0], "rw");
+    raf.setLength(raf.length() - 2);
+    raf.close();
+    assertNull(cache.loadModel(attrs, false));
+    assertFalse("unreadable entry is deleted", entries[0].exists());
+  }
+}
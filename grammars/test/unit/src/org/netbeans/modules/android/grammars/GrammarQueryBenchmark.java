@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
+import org.netbeans.modules.android.core.sdk.Utils;
+import org.netbeans.modules.xml.api.model.GrammarResult;
+import org.netbeans.modules.xml.api.model.HintContext;
+import static org.junit.Assert.*;
+
+/**
+ * Measures latency of completion queries of layout grammars built from metadata of real SDK platforms.
+ * It is not part of the regular unit tests, run it using {@code ant benchmark}.
+ */
+public class GrammarQueryBenchmark {
+
+  private static final String SDK_DIR = System.getProperty("test.all.android.sdks.home");
+
+  private static final String PRELUDE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n"
+      + "    android:orientation=\"vertical\""
+      + "    android:layout_width=\"fill_parent\""
+      + "    android:layout_height=\"fill_parent\">\n"
+      + "  <TextView android:id=\"@+id/title\" android:layout_width=\"wrap_content\""
+      + "      android:layout_height=\"wrap_content\"/>\n";
+  private static final String CODA = "</LinearLayout>\n";
+
+  /** Completions typed in a layout: element names, attribute names and attribute values. */
+  private static final String[] ELEMENTS = {"<HERE/>", "<LHERE/>", "<LinearLHERE/>", "<TextHERE/>"};
+  private static final String[] ATTRIBUTES = {
+    "<TextView android:HERE=\"\"/>",
+    "<TextView android:layout_HERE=\"\"/>",
+    "<Button android:tHERE=\"\"/>",
+    "<RelativeLayout android:layout_aHERE=\"\"/>"};
+  private static final String[] VALUES = {
+    "<TextView android:layout_width=\"HERE\"/>",
+    "<TextView android:textSize=\"15pHERE\"/>",
+    "<TextView android:visibility=\"HERE\"/>",
+    "<TextView android:gravity=\"center|HERE\"/>",
+    "<Spinner android:prompt=\"@string/HERE\"/>"};
+
+  private static final int WARMUP_ROUNDS = 200;
+  private static final int ROUNDS = 2000;
+
+  private static final ReferenceResolver RESOLVER = new ReferenceResolver() {
+
+    @Override
+    public List<ResourceRef> getReferences() {
+      return Collections.singletonList(new ResourceRef(true, "com.example", "string", "app_name"));
+    }
+
+    @Override
+    public String getValue(ResourceRef ref) {
+      return null;
+    }
+  };
+
+  private interface Query {
+    Enumeration<GrammarResult> run(AndroidLayoutGrammar grammar, HintContext ctx);
+  }
+
+  @BeforeClass
+  public static void classSetup() {
+    DalvikPlatformManager.getDefault().setSdkLocation(SDK_DIR);
+  }
+
+  @Test
+  public void benchmarkQueries() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      StyleableModels.clearCache();
+      long start = System.nanoTime();
+      AndroidLayoutGrammar grammar = AndroidLayoutGrammar.create(platform, RESOLVER);
+      long created = System.nanoTime() - start;
+      start = System.nanoTime();
+      AndroidLayoutGrammar.create(platform, RESOLVER);
+      System.out.println(p + ": grammar created in " + created / 1000000 + " ms, with loaded models in "
+          + (System.nanoTime() - start) / 1000 + " us");
+
+      measure(p, "queryElements", grammar, ELEMENTS, new Query() {
+
+        @Override
+        public Enumeration<GrammarResult> run(AndroidLayoutGrammar grammar, HintContext ctx) {
+          return grammar.queryElements(ctx);
+        }
+      });
+      measure(p, "queryAttributes", grammar, ATTRIBUTES, new Query() {
+
+        @Override
+        public Enumeration<GrammarResult> run(AndroidLayoutGrammar grammar, HintContext ctx) {
+          return grammar.queryAttributes(ctx);
+        }
+      });
+      measure(p, "queryValues", grammar, VALUES, new Query() {
+
+        @Override
+        public Enumeration<GrammarResult> run(AndroidLayoutGrammar grammar, HintContext ctx) {
+          return grammar.queryValues(ctx);
+        }
+      });
+    }
+  }
+
+  private static void measure(Utils.TestPlatform p, String name, AndroidLayoutGrammar grammar,
+      String[] completions, Query query) throws Exception {
+    for (String completion : completions) {
+      HintContext ctx = TestUtil.createCompletion(PRELUDE + "  " + completion + "\n" + CODA);
+      assertFalse(p + ": " + name + " " + completion,
+          TestUtil.grammarResultValues(query.run(grammar, ctx)).isEmpty());
+      for (int i = 0; i < WARMUP_ROUNDS; i++) {
+        consume(query.run(grammar, ctx));
+      }
+      long start = System.nanoTime();
+      int results = 0;
+      for (int i = 0; i < ROUNDS; i++) {
+        results += consume(query.run(grammar, ctx));
+      }
+      long elapsed = System.nanoTime() - start;
+      System.out.println(p + ": " + name + " " + completion + " " + results / ROUNDS + " results, "
+          + elapsed / ROUNDS / 1000 + " us/query");
+    }
+  }
+
+  private static int consume(Enumeration<GrammarResult> e) {
+    int count = 0;
+    while (e.hasMoreElements()) {
+      e.nextElement();
+      count++;
+    }
+    return count;
+  }
+}
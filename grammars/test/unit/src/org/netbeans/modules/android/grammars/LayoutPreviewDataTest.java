@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.base.Joiner;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
+import org.netbeans.modules.android.core.sdk.Utils;
+import org.xml.sax.InputSource;
+import static org.junit.Assert.*;
+
+/**
+ * Test extraction of layout preview data.
+ */
+public class LayoutPreviewDataTest {
+
+  private static final String SDK_DIR = System.getProperty("test.all.android.sdks.home");
+
+  private static final String LAYOUT = Joiner.on('\n').join(
+      "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"",
+      "    android:layout_width=\"fill_parent\" android:layout_height=\"fill_parent\"",
+      "    android:orientation=\"vertical\">",
+      "  <TextView android:layout_width=\"@dimen/margin\" android:layout_height=\"wrap_content\"",
+      "      android:text=\"@string/title\"/>",
+      "  <TextView android:layout_width=\"2in\" android:layout_height=\"wrap_content\"/>",
+      "  <com.example.MyView android:layout_width=\"10px\"/>",
+      "</LinearLayout>");
+
+  private static final ReferenceResolver RESOLVER = new ReferenceResolver() {
+
+    @Override
+    public List<ResourceRef> getReferences() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public String getValue(ResourceRef ref) {
+      return "margin".equals(ref.resourceName) ? "16dp" : null;
+    }
+  };
+
+  @BeforeClass
+  public static void classSetup() {
+    DalvikPlatformManager.getDefault().setSdkLocation(SDK_DIR);
+  }
+
+  @Test
+  public void testViewTree() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      LayoutPreviewData preview = new LayoutPreviewData(
+          AndroidLayoutGrammar.create(platform, RESOLVER), StyleableModels.getWidgetData(platform));
+      LayoutPreviewData.ViewNode root = preview.build(new InputSource(new StringReader(LAYOUT)));
+      assertEquals("LinearLayout", root.tag);
+      assertEquals("android.widget.LinearLayout", root.widget.getFQClassName());
+      assertEquals(3, root.children.size());
+
+      LayoutPreviewData.ViewNode text = root.children.get(0);
+      assertEquals(4, text.line);
+      assertEquals("@dimen/margin", text.attributes.get("android:layout_width"));
+      assertEquals("16dp", text.values.get("android:layout_width"));
+      assertEquals("@string/title", text.values.get("android:text"));
+      assertEquals(16f, text.getDimension("android:layout_width", LayoutPreviewData.Density.MDPI), 0.01f);
+      assertEquals(24f, text.getDimension("android:layout_width", LayoutPreviewData.Density.HDPI), 0.01f);
+      assertNull(text.getDimension("android:layout_height", LayoutPreviewData.Density.HDPI));
+      assertEquals(Collections.singletonMap("android:layout_width", 480f),
+          root.children.get(1).getDimensions(LayoutPreviewData.Density.HDPI));
+      assertNull("custom view", root.children.get(2).widget);
+    }
+  }
+
+  @Test
+  public void testOnlyChangedElementsAreAnalyzed() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      LayoutPreviewData preview = new LayoutPreviewData(
+          AndroidLayoutGrammar.create(platform, RESOLVER), StyleableModels.getWidgetData(platform));
+      preview.build(new InputSource(new StringReader(LAYOUT)));
+      assertEquals(4, preview.lastAnalyzedCount);
+      preview.build(new InputSource(new StringReader(LAYOUT)));
+      assertEquals(0, preview.lastAnalyzedCount);
+      LayoutPreviewData.ViewNode root = preview.build(new InputSource(new StringReader(LAYOUT.replace("2in", "1in"))));
+      assertEquals(1, preview.lastAnalyzedCount);
+      assertEquals(240f, root.children.get(1).getDimension("android:layout_width", LayoutPreviewData.Density.HDPI), 0.01f);
+      assertNull("broken document", preview.build(new InputSource(new StringReader("<LinearLayout>"))));
+    }
+  }
+}
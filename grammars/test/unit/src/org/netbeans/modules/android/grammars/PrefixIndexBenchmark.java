@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
+import org.netbeans.modules.android.core.sdk.Utils;
+import static org.junit.Assert.*;
+
+/**
+ * Compares prefix lookups in the styleables of layout models with linear scans.
+ * It is not part of the regular unit tests, run it using {@code ant benchmark}.
+ */
+public class PrefixIndexBenchmark {
+
+  private static final String SDK_DIR = System.getProperty("test.all.android.sdks.home");
+
+  private static final int ROUNDS = 2000;
+
+  @BeforeClass
+  public static void classSetup() {
+    DalvikPlatformManager.getDefault().setSdkLocation(SDK_DIR);
+  }
+
+  @Test
+  public void benchmarkLookups() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      StyleableModel model = AndroidLayoutGrammar.create(platform, new NullRefResolver()).getStyleableModel();
+      // warm up both variants
+      int found = 0;
+      for (int i = 0; i < ROUNDS / 10; i++) {
+        for (String prefix : PrefixIndexTest.PREFIXES) {
+          found += PrefixIndexTest.linearScan(model, prefix).size() - model.getStyleablesWithPrefix(prefix).size();
+        }
+      }
+      assertEquals(0, found);
+
+      long start = System.nanoTime();
+      for (int i = 0; i < ROUNDS; i++) {
+        for (String prefix : PrefixIndexTest.PREFIXES) {
+          found += PrefixIndexTest.linearScan(model, prefix).size();
+        }
+      }
+      long linear = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < ROUNDS; i++) {
+        for (String prefix : PrefixIndexTest.PREFIXES) {
+          found -= model.getStyleablesWithPrefix(prefix).size();
+        }
+      }
+      long indexed = System.nanoTime() - start;
+      assertEquals(0, found);
+
+      int lookups = ROUNDS * PrefixIndexTest.PREFIXES.length;
+      System.out.println(p + ": " + model.getStyleables().size() + " styleables, "
+          + "linear " + linear / lookups + " ns/lookup, indexed " + indexed / lookups + " ns/lookup");
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.base.Functions;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
+import org.netbeans.modules.android.core.sdk.Utils;
+import static org.junit.Assert.*;
+
+/**
+ * Test prefix lookups and compare them with linear scans.
+ */
+public class PrefixIndexTest {
+
+  private static final String SDK_DIR = System.getProperty("test.all.android.sdks.home");
+
+  /** Prefixes typed while completing tags and attributes. */
+  static final String[] PREFIXES = {"", "a", "and", "android:", "android:layout_", "android:layout_w",
+      "L", "Li", "Linear", "T", "Text", "TextView", "View", "Z", "zzz"};
+
+  @BeforeClass
+  public static void classSetup() {
+    DalvikPlatformManager.getDefault().setSdkLocation(SDK_DIR);
+  }
+
+  @Test
+  public void testWithPrefix() throws Exception {
+    PrefixIndex<String> index = PrefixIndex.create(
+        Lists.newArrayList("b", "ab", "abc", "a", "abd", "ac", "b"), Functions.<String>identity());
+    assertEquals(Lists.newArrayList("a", "ab", "abc", "abd", "ac", "b", "b"), index.all());
+    assertEquals(index.all(), index.withPrefix(""));
+    assertEquals(Lists.newArrayList("a", "ab", "abc", "abd", "ac"), index.withPrefix("a"));
+    assertEquals(Lists.newArrayList("ab", "abc", "abd"), index.withPrefix("ab"));
+    assertEquals(Lists.newArrayList("abc"), index.withPrefix("abc"));
+    assertEquals(Lists.newArrayList("b", "b"), index.withPrefix("b"));
+    assertEquals(Collections.emptyList(), index.withPrefix("abcd"));
+    assertEquals(Collections.emptyList(), index.withPrefix("0"));
+    assertEquals(Collections.emptyList(), index.withPrefix("c"));
+    assertEquals(Collections.emptyList(),
+        PrefixIndex.create(Collections.<String>emptyList(), Functions.<String>identity()).withPrefix("a"));
+  }
+
+  @Test
+  public void testStyleablesMatchLinearScan() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      StyleableModel model = AndroidLayoutGrammar.create(platform, new NullRefResolver()).getStyleableModel();
+      for (String prefix : PREFIXES) {
+        assertEquals(p + " " + prefix, linearScan(model, prefix), model.getStyleablesWithPrefix(prefix));
+      }
+    }
+  }
+
+  static List<StyleableInfo> linearScan(StyleableModel model, String prefix) {
+    List<StyleableInfo> result = Lists.newArrayList();
+    for (StyleableInfo s : model.getStyleables().values()) {
+      if (s.getName().startsWith(prefix)) {
+        result.add(s);
+      }
+    }
+    return result;
+  }
+}
@@ -14,13 +14,14 @@
 
 package org.netbeans.modules.android.grammars;
 
-import com.google.common.base.Splitter;
 import org.netbeans.modules.android.project.AndroidGeneralData;
 import org.netbeans.modules.android.project.AndroidProject;
 import org.netbeans.modules.android.project.FileUtilities;
 import java.io.File;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.List;
+import java.util.Map;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -31,16 +32,7 @@ import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import static org.junit.Assert.*;
-import org.netbeans.api.editor.mimelookup.MimePath;
-import org.netbeans.modules.java.source.indexing.JavaCustomIndexer;
-import org.netbeans.modules.java.source.parsing.JavacParser;
-import org.netbeans.modules.java.source.parsing.JavacParserFactory;
 import org.netbeans.modules.parsing.impl.indexing.CacheFolder;
-import org.netbeans.spi.editor.mimelookup.MimeDataProvider;
-import org.openide.filesystems.MIMEResolver;
-import org.openide.util.Lookup;
-import org.openide.util.lookup.Lookups;
-import org.openide.util.lookup.ServiceProvider;
 
 /**
  * Tests for AndroidActionProvider
@@ -52,6 +44,7 @@ public class ProjectRefResolverTest {
   private static File tempFolder;
   private static FileObject projdir;
 
+  private static FileObject scratch;
   private static Project pp;
 
   @BeforeClass
@@ -62,7 +55,7 @@ public class ProjectRefResolverTest {
     tempFolder.delete();
     tempFolder.mkdir();
 
-    FileObject scratch = FileUtil.toFileObject(tempFolder);
+    scratch = FileUtil.toFileObject(tempFolder);
     FileObject cacheDir = scratch.createFolder("cache");
     CacheFolder.setCacheFolder(cacheDir);
     FileObject sdkDirFo = FileUtil.toFileObject(new File(SDK_DIR));
@@ -70,15 +63,6 @@ public class ProjectRefResolverTest {
     projdir = scratch.createFolder("Snake");
     FileUtilities.recursiveCopy(sdkDirFo.getFileObject("samples/android-8/Snake"), projdir);
 
-    FileObject dir = projdir;
-    for (String dirName : Splitter.on('/').split("gen/com/example/android/snake")) {
-      dir = dir.createFolder(dirName);
-    }
-    OutputStream os = dir.createData("R.java").getOutputStream();
-    FileUtil.copy(
-        ProjectRefResolverTest.class.getResourceAsStream("Snake_R_java.txt"), os);
-    os.close();
-
     pp = ProjectManager.getDefault().findProject(projdir);
   }
 
@@ -99,38 +83,161 @@ public class ProjectRefResolverTest {
     List<ResourceRef> refs = rr.getReferences();
     assertTrue(!refs.isEmpty());
     assertTrue(refs.contains(new ResourceRef(true, "com.example.android.snake", "id", "snake")));
-    assertEquals(14, refs.size());
+    assertTrue(refs.contains(new ResourceRef(true, "com.example.android.snake", "attr", "tileSize")));
+    assertTrue(refs.contains(new ResourceRef(true, "com.example.android.snake", "layout", "snake_layout")));
+    assertTrue(refs.contains(new ResourceRef(true, "com.example.android.snake", "drawable", "redstar")));
+    assertTrue(refs.contains(new ResourceRef(true, "com.example.android.snake", "string", "mode_pause")));
+    assertEquals(12, refs.size());
+    assertSame("unchanged resources are not indexed again", refs, rr.getReferences());
   }
 
-  @ServiceProvider(service = MimeDataProvider.class)
-  public static final class JavacParserProvider implements MimeDataProvider {
+  @Test
+  public void refsFollowChanges() throws Exception {
+    ReferenceResolver rr = new ProjectRefResolver(pp);
+    int count = rr.getReferences().size();
+
+    FileObject values = projdir.getFileObject("res/values");
+    FileObject colors = values.createData("colors.xml");
+    OutputStream os = colors.getOutputStream();
+    PrintStream ps = new PrintStream(os, false, "UTF-8");
+    ps.println("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+    ps.println("<resources>");
+    ps.println("  <color name=\"snake_green\">#00ff00</color>");
+    ps.println("  <item type=\"id\" name=\"apple\"/>");
+    ps.println("</resources>");
+    ps.close();
 
-    private Lookup javaLookup = Lookups.fixed(new JavacParserFactory(), new JavaCustomIndexer.Factory());
+    List<ResourceRef> refs = rr.getReferences();
+    assertTrue(refs.contains(new ResourceRef(true, "com.example.android.snake", "color", "snake_green")));
+    assertTrue(refs.contains(new ResourceRef(true, "com.example.android.snake", "id", "apple")));
+    assertEquals(count + 2, refs.size());
 
-    @Override
-    public Lookup getLookup(MimePath mimePath) {
-      if (mimePath.getPath().endsWith(JavacParser.MIME_TYPE)) {
-        return javaLookup;
-      }
+    colors.delete();
+    assertEquals(count, rr.getReferences().size());
+  }
 
-      return Lookup.EMPTY;
-    }
+  @Test
+  public void resolvedValues() throws Exception {
+    ReferenceResolver rr = new ProjectRefResolver(pp);
+    FileObject dims = projdir.getFileObject("res/values").createData("dims.xml");
+    writeFile(dims,
+        "<resources>",
+        "  <dimen name=\"margin\">16dp</dimen>",
+        "  <dimen name=\"gap\">@dimen/margin</dimen>",
+        "  <color name=\"loop\">@color/loop</color>",
+        "  <style name=\"Big.Red\"><item name=\"android:textColor\">#f00</item></style>",
+        "</resources>");
+    FileObject german = projdir.getFileObject("res").createFolder("values-de");
+    writeFile(german.createData("dims.xml"),
+        "<resources>",
+        "  <dimen name=\"margin\">20dp</dimen>",
+        "</resources>");
+
+    rr.getReferences();
+    assertEquals("16dp", rr.getValue(new ResourceRef(true, "com.example.android.snake", "dimen", "margin")));
+    assertEquals("16dp", rr.getValue(new ResourceRef(true, "com.example.android.snake", "dimen", "gap")));
+    assertEquals("@color/loop", rr.getValue(new ResourceRef(true, "com.example.android.snake", "color", "loop")));
+    assertEquals("@style/Big", rr.getValue(new ResourceRef(true, "com.example.android.snake", "style", "Big.Red")));
+    assertNull(rr.getValue(new ResourceRef(true, "com.example.android.snake", "dimen", "missing")));
+
+    dims.delete();
+    german.delete();
+    rr.getReferences();
+    assertNull(rr.getValue(new ResourceRef(true, "com.example.android.snake", "dimen", "margin")));
+  }
+
+  @Test
+  public void styleInheritance() throws Exception {
+    FileObject styles = projdir.getFileObject("res/values").createData("styles.xml");
+    writeFile(styles,
+        "<resources>",
+        "  <style name=\"Base\" parent=\"@android:style/TextAppearance\">",
+        "    <item name=\"android:textColor\">#000</item>",
+        "    <item name=\"android:textSize\">12sp</item>",
+        "  </style>",
+        "  <style name=\"Big\" parent=\"Base\"><item name=\"android:textSize\">24sp</item></style>",
+        "  <style name=\"Big.Red\"><item name=\"android:textColor\">#f00</item></style>",
+        "  <style name=\"Loop\" parent=\"@style/Loop.Inner\"><item name=\"a\">1</item></style>",
+        "  <style name=\"Loop.Inner\" parent=\"@style/Loop\"><item name=\"b\">2</item></style>",
+        "</resources>");
+
+    StyleResolver resolver = StyleResolver.forProject(pp, DalvikPlatformManager.getDefault().findPlatformForTarget("android-8"));
+    Map<String, String> items = resolver.getEffectiveItems("@style/Big.Red");
+    assertEquals("#f00", items.get("android:textColor"));
+    assertEquals("24sp", items.get("android:textSize"));
+    assertSame("resolved styles are remembered", items, resolver.getEffectiveItems("@style/Big.Red"));
+    assertEquals("24sp", resolver.getInheritedValue("Big.Red", null, "android:textSize"));
+    assertEquals("#000", resolver.getInheritedValue("Big", "Base", "android:textColor"));
+    assertNotNull("framework parents are followed",
+        resolver.getInheritedValue("Base", "@android:style/TextAppearance", "android:textSize"));
+    assertEquals(2, resolver.getEffectiveItems("@style/Loop").size());
+    assertTrue(resolver.getItemNames().contains("android:textColor"));
+
+    styles.delete();
+    assertTrue(resolver.getEffectiveItems("@style/Big.Red").isEmpty());
   }
 
-  @ServiceProvider(service = MIMEResolver.class)
-  public static final class JavaMimeResolver extends MIMEResolver {
+  @Test
+  public void themeInheritance() throws Exception {
+    FileObject themes = projdir.getFileObject("res/values").createData("themes.xml");
+    writeFile(themes,
+        "<resources>",
+        "  <style name=\"AppTheme\" parent=\"android:Theme\">",
+        "    <item name=\"android:windowNoTitle\">true</item>",
+        "  </style>",
+        "</resources>");
+
+    StyleResolver resolver = StyleResolver.forProject(pp, DalvikPlatformManager.getDefault().findPlatformForTarget("android-8"));
+    // framework themes name their items without the android: prefix
+    assertNotNull(resolver.getInheritedValue("AppTheme", "android:Theme", "android:windowBackground"));
+    assertNull(resolver.getInheritedValue("AppTheme", "android:Theme", "windowBackground"));
+    Map<String, String> items = resolver.getEffectiveItems("@style/AppTheme");
+    assertEquals("true", items.get("android:windowNoTitle"));
+    assertNotNull(items.get("android:colorForeground"));
+    assertNotNull(resolver.getEffectiveItems("@android:style/Theme.Light").get("android:windowBackground"));
+    themes.delete();
+  }
 
-    public JavaMimeResolver() {
-      super(JavacParser.MIME_TYPE);
-    }
+  @Test
+  public void refsFromLibraries() throws Exception {
+    FileObject sdkDirFo = FileUtil.toFileObject(new File(SDK_DIR));
+    FileObject libdir = scratch.createFolder("SnakeLib");
+    FileUtilities.recursiveCopy(sdkDirFo.getFileObject("samples/android-8/Snake"), libdir);
+    writeFile(libdir.getFileObject("res/values").createData("lib.xml"),
+        "<resources>",
+        "  <string name=\"lib_title\">Snake library</string>",
+        "</resources>");
+    FileObject appdir = scratch.createFolder("SnakeApp");
+    FileUtilities.recursiveCopy(sdkDirFo.getFileObject("samples/android-8/Snake"), appdir);
+    writeFile(appdir.createData("ant.properties"), "android.library.reference.1=../SnakeLib");
+
+    Project app = ProjectManager.getDefault().findProject(appdir);
+    Project lib = ProjectManager.getDefault().findProject(libdir);
+    List<ResourceRef> refs = new ProjectRefResolver(app).getReferences();
+    assertTrue(refs.contains(new ResourceRef(true, "com.example.android.snake", "string", "lib_title")));
+    // resources declared in both projects are offered once
+    assertEquals(13, refs.size());
+
+    List<ProjectResourceIndex> indexes = ProjectResourceIndex.forProjectAndLibraries(app);
+    assertEquals(2, indexes.size());
+    assertSame("library index is shared", ProjectResourceIndex.forProject(lib), indexes.get(1));
+  }
 
-    @Override
-    public String findMIMEType(FileObject fo) {
-      if ("java".equals(fo.getExt())) {
-        return JavacParser.MIME_TYPE;
-      }
+  @Test
+  public void platformIndexSkipsConfigurations() throws Exception {
+    assertTrue(ProjectResourceIndex.isDefaultValuesFolder("values"));
+    assertTrue(ProjectResourceIndex.isDefaultValuesFolder("values-v11"));
+    assertFalse(ProjectResourceIndex.isDefaultValuesFolder("values-de"));
+    assertFalse(ProjectResourceIndex.isDefaultValuesFolder("values-de-rAT-v11"));
+    assertFalse(ProjectResourceIndex.isDefaultValuesFolder("values-land"));
+    assertFalse(ProjectResourceIndex.isDefaultValuesFolder("layout"));
+  }
 
-      return null;
+  private static void writeFile(FileObject fo, String... lines) throws Exception {
+    PrintStream ps = new PrintStream(fo.getOutputStream(), false, "UTF-8");
+    for (String line : lines) {
+      ps.println(line);
     }
+    ps.close();
   }
 }
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test parsing of resource folder names.
+ */
+public class ResourceFolderTest {
+
+  @Test
+  public void testTypes() throws Exception {
+    assertEquals(ResourceFolder.Type.LAYOUT, ResourceFolder.forName("layout").getType());
+    assertEquals(ResourceFolder.Type.VALUES, ResourceFolder.forName("values").getType());
+    assertEquals(ResourceFolder.Type.DRAWABLE, ResourceFolder.forName("drawable-hdpi").getType());
+    assertEquals("menu", ResourceFolder.forName("menu").getType().getName());
+    assertTrue(ResourceFolder.forName("layout").getQualifiers().isEmpty());
+    assertNull(ResourceFolder.forName("src"));
+    assertNull(ResourceFolder.forName("layouts"));
+  }
+
+  @Test
+  public void testQualifiers() throws Exception {
+    ResourceFolder folder = ResourceFolder.forName("values-de-rAT-v11");
+    assertEquals("de", folder.getQualifiers().get(ResourceFolder.Qualifier.LANGUAGE));
+    assertEquals("rAT", folder.getQualifiers().get(ResourceFolder.Qualifier.REGION));
+    assertEquals("v11", folder.getQualifiers().get(ResourceFolder.Qualifier.VERSION));
+    assertEquals("land",
+        ResourceFolder.forName("layout-sw600dp-land").getQualifiers().get(ResourceFolder.Qualifier.ORIENTATION));
+    assertEquals(3, ResourceFolder.forName("drawable-large-port-hdpi").getQualifiers().size());
+    // qualifiers in wrong order or unknown ones
+    assertNull(ResourceFolder.forName("values-v11-de"));
+    assertNull(ResourceFolder.forName("layout-hdpi-land"));
+    assertNull(ResourceFolder.forName("layout-fooo"));
+    assertNull(ResourceFolder.forName("layout-"));
+  }
+
+  @Test
+  public void testNewerQualifiers() throws Exception {
+    assertEquals("round",
+        ResourceFolder.forName("layout-long-round-port").getQualifiers().get(ResourceFolder.Qualifier.ROUND));
+    assertEquals("notround",
+        ResourceFolder.forName("values-notround").getQualifiers().get(ResourceFolder.Qualifier.ROUND));
+    assertNull(ResourceFolder.forName("layout-port-round"));
+    assertEquals("b+sr+Latn",
+        ResourceFolder.forName("layout-b+sr+Latn").getQualifiers().get(ResourceFolder.Qualifier.LANGUAGE));
+    assertEquals("b+es+419",
+        ResourceFolder.forName("values-b+es+419-v21").getQualifiers().get(ResourceFolder.Qualifier.LANGUAGE));
+    assertEquals("fil",
+        ResourceFolder.forName("values-fil-rPH").getQualifiers().get(ResourceFolder.Qualifier.LANGUAGE));
+    assertEquals("car",
+        ResourceFolder.forName("layout-car").getQualifiers().get(ResourceFolder.Qualifier.UI_MODE));
+    assertEquals("560dpi",
+        ResourceFolder.forName("drawable-560dpi").getQualifiers().get(ResourceFolder.Qualifier.DENSITY));
+    assertEquals("xxhdpi",
+        ResourceFolder.forName("mipmap-xxhdpi-v4").getQualifiers().get(ResourceFolder.Qualifier.DENSITY));
+    assertNull(ResourceFolder.forName("drawable-hdpii"));
+  }
+
+  @Test
+  public void testCached() throws Exception {
+    assertSame(ResourceFolder.forName("layout-land"), ResourceFolder.forName("layout-land"));
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.grammars;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.netbeans.modules.android.core.sdk.DalvikPlatform;
+import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
+import org.netbeans.modules.android.core.sdk.Utils;
+import org.xml.sax.InputSource;
+import static org.junit.Assert.*;
+
+/**
+ * Test validation of layout files.
+ */
+public class ResourceValidatorTest {
+
+  private static final String SDK_DIR = System.getProperty("test.all.android.sdks.home");
+
+  private static final String LAYOUT = Joiner.on('\n').join(
+      "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"",
+      "    android:layout_width=\"fill_parent\" android:layout_height=\"fill_parent\"",
+      "    android:orientation=\"vertical\">",
+      "  <TextView android:id=\"@+id/title\"",
+      "      android:layout_width=\"10dpx\" android:layout_height=\"wrap_content\"",
+      "      android:visibility=\"hidden\" android:unknown=\"1\"/>",
+      "  <TextView android:layout_width=\"20dp\" android:layout_height=\"wrap_content\"",
+      "      android:text=\"@string/missing\" android:nextFocusDown=\"@id/title\"/>",
+      "  <com.example.MyView android:custom=\"1\"/>",
+      "</LinearLayout>");
+
+  @BeforeClass
+  public static void classSetup() {
+    DalvikPlatformManager.getDefault().setSdkLocation(SDK_DIR);
+  }
+
+  @Test
+  public void testLayoutProblems() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      ResourceValidator validator = new ResourceValidator(AndroidLayoutGrammar.create(platform, new NullRefResolver()));
+      List<ResourceValidator.Problem> problems = validator.validate(new InputSource(new StringReader(LAYOUT)));
+      assertEquals(p + ": " + problems, 3, problems.size());
+      assertTrue(problems.get(0).message, problems.get(0).message.contains("dpx"));
+      assertTrue(problems.get(1).message, problems.get(1).message.contains("hidden"));
+      assertTrue(problems.get(2).message, problems.get(2).message.contains("android:unknown"));
+      assertEquals(6, problems.get(0).line);
+    }
+  }
+
+  @Test
+  public void testReferences() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      ReferenceResolver rr = new ReferenceResolver() {
+
+        @Override
+        public List<ResourceRef> getReferences() {
+          return Collections.singletonList(new ResourceRef(true, "com.example", "string", "app_name"));
+        }
+
+        @Override
+        public String getValue(ResourceRef ref) {
+          return null;
+        }
+      };
+      ResourceValidator validator = new ResourceValidator(AndroidLayoutGrammar.create(platform, rr));
+      List<ResourceValidator.Problem> problems = validator.validate(new InputSource(new StringReader(LAYOUT)));
+      assertEquals(p + ": " + problems, 4, problems.size());
+      // declared in the same file, not yet in the index
+      assertEquals(8, problems.get(3).line);
+      assertTrue(problems.get(3).message, problems.get(3).message.contains("@string/missing"));
+
+      problems = validator.validate(new InputSource(new StringReader(
+          LAYOUT.replace("@string/missing", "@string/app_name"))));
+      assertEquals(p + ": " + problems, 3, problems.size());
+    }
+  }
+
+  @Test
+  public void testOnlyChangedElementsAreChecked() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      ResourceValidator validator = new ResourceValidator(AndroidLayoutGrammar.create(platform, new NullRefResolver()));
+      validator.validate(new InputSource(new StringReader(LAYOUT)));
+      assertEquals(4, validator.lastCheckedCount);
+      validator.validate(new InputSource(new StringReader(LAYOUT)));
+      assertEquals(0, validator.lastCheckedCount);
+      List<ResourceValidator.Problem> problems =
+          validator.validate(new InputSource(new StringReader(LAYOUT.replace("10dpx", "10dp"))));
+      assertEquals(1, validator.lastCheckedCount);
+      assertEquals(p + ": " + problems, 2, problems.size());
+    }
+  }
+
+  @Test
+  public void testValueFormats() {
+    AttributeInfo gravity = new AttributeInfo("android:gravity", null, AttributeInfo.Format.FLAG.mask(),
+        ImmutableList.<String>of(), ImmutableList.of("top", "bottom", "center_vertical"));
+    assertNull(ResourceValidator.checkValue(gravity, "top"));
+    assertNull(ResourceValidator.checkValue(gravity, "top|center_vertical"));
+    assertNotNull(ResourceValidator.checkValue(gravity, "top|middle"));
+
+    AttributeInfo color = new AttributeInfo("android:textColor", null, AttributeInfo.parseFormats("reference|color"),
+        ImmutableList.<String>of(), ImmutableList.<String>of());
+    assertNull(ResourceValidator.checkValue(color, "#ff0000"));
+    assertNull(ResourceValidator.checkValue(color, "#8f00"));
+    assertNotNull(ResourceValidator.checkValue(color, "#ff000"));
+    assertNotNull(ResourceValidator.checkValue(color, "red"));
+
+    AttributeInfo lines = new AttributeInfo("android:lines", null, AttributeInfo.parseFormats("integer"),
+        ImmutableList.<String>of(), ImmutableList.<String>of());
+    assertNull(ResourceValidator.checkValue(lines, "3"));
+    assertNotNull(ResourceValidator.checkValue(lines, "3dp"));
+  }
+}
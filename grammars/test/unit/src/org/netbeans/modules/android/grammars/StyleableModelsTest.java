@@ -13,8 +13,14 @@
  */
 package org.netbeans.modules.android.grammars;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.netbeans.modules.android.core.sdk.DalvikPlatform;
@@ -67,6 +73,66 @@ public class StyleableModelsTest {
     }
   }
 
+  @Test
+  public void testModelsAreCached() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      assertNotNull(platform);
+      StyleableModel manifestModel = StyleableModels.getAndroidManifestModel(platform);
+      assertSame(manifestModel, StyleableModels.getAndroidManifestModel(platform));
+
+      StyleableModel layoutsModel = AndroidLayoutGrammar.create(platform, new NullRefResolver()).getStyleableModel();
+      assertSame(layoutsModel, AndroidLayoutGrammar.create(platform, new NullRefResolver()).getStyleableModel());
+      assertSame(StyleableModels.getWidgetData(platform), StyleableModels.getWidgetData(platform));
+
+      StyleableModels.clearCache();
+      assertNotSame(manifestModel, StyleableModels.getAndroidManifestModel(platform));
+    }
+  }
+
+  @Test
+  public void testConcurrentRequestsShareOneModel() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (Utils.TestPlatform p : Utils.allPlatforms()) {
+        final DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+        StyleableModels.clearCache();
+        List<Future<StyleableModel>> models = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+          models.add(executor.submit(new Callable<StyleableModel>() {
+
+            @Override
+            public StyleableModel call() {
+              return StyleableModels.getAndroidManifestModel(platform);
+            }
+          }));
+        }
+        StyleableModel manifestModel = models.get(0).get();
+        assertNotNull(manifestModel);
+        for (Future<StyleableModel> model : models) {
+          assertSame(p.toString(), manifestModel, model.get());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testFrameworkResources() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      assertNotNull(platform);
+      FrameworkResources resources = StyleableModels.getFrameworkResources(platform);
+      assertSame(resources, StyleableModels.getFrameworkResources(platform));
+      assertTrue(p + " has string/ok", resources.getResources().containsEntry("string", "ok"));
+      assertTrue(resources.getResources().containsEntry("id", "text1"));
+      assertTrue(resources.getResources().containsEntry("layout", "simple_list_item_1"));
+      assertFalse(resources.getResources().containsKey("styleable"));
+      assertTrue(resources.getReferences().contains(new ResourceRef(false, "android", "color", "white")));
+    }
+  }
+
   @Test
   public void testAndroidLayoutsModel() throws Exception {
     for (Utils.TestPlatform p : Utils.allPlatforms()) {
@@ -88,4 +154,70 @@ public class StyleableModelsTest {
           manifestModel.getStyleables().get("Window").getDescription());
     }
   }
+
+  @Test
+  public void testAttributeFormats() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      assertNotNull(platform);
+      StyleableModel layoutsModel = AndroidLayoutGrammar.create(platform, new NullRefResolver()).getStyleableModel();
+
+      AttributeInfo gravity = layoutsModel.getAttributeValue("gravity");
+      assertTrue(p + ": " + gravity, gravity.hasFormat(AttributeInfo.Format.FLAG));
+      assertTrue(gravity.getFlagValues().contains("center_vertical"));
+      AttributeInfo textColor = layoutsModel.getAttributeValue("textColor");
+      assertTrue(p + ": " + textColor, textColor.hasFormat(AttributeInfo.Format.COLOR));
+      assertTrue(textColor.hasFormat(AttributeInfo.Format.REFERENCE));
+      assertFalse(textColor.hasFormat(AttributeInfo.Format.DIMENSION));
+
+      // same values are shared
+      AttributeInfo textViewGravity = null;
+      for (AttributeInfo attr : layoutsModel.getStyleables().get("TextView").getAttributeNames()) {
+        if ("android:gravity".equals(attr.getName())) {
+          textViewGravity = attr;
+        }
+      }
+      assertNotNull(textViewGravity);
+      assertSame(gravity.getFlagValues(), textViewGravity.getFlagValues());
+    }
+  }
+
+  @Test
+  public void testParseFormats() {
+    assertEquals(0, AttributeInfo.parseFormats(null));
+    assertEquals(AttributeInfo.Format.REFERENCE.mask() | AttributeInfo.Format.COLOR.mask(),
+        AttributeInfo.parseFormats("reference|color"));
+    assertEquals(AttributeInfo.Format.DIMENSION.mask(), AttributeInfo.parseFormats("dimension|unknown"));
+  }
+
+  @Test
+  public void testModelIsFrozenAndShared() throws Exception {
+    for (Utils.TestPlatform p : Utils.allPlatforms()) {
+      DalvikPlatform platform = DalvikPlatformManager.getDefault().findPlatformForTarget(p.getTarget());
+      assertNotNull(platform);
+      StyleableModels.clearCache();
+      StyleableModel layoutsModel = AndroidLayoutGrammar.create(platform, new NullRefResolver()).getStyleableModel();
+      assertNotNull(layoutsModel);
+
+      List<AttributeInfo> attrs = layoutsModel.getStyleables().get("TextView").getAttributeNames();
+      try {
+        attrs.add(attrs.get(0));
+        fail("attributes of frozen styleable cannot change");
+      } catch (UnsupportedOperationException ex) {
+        // expected
+      }
+      // equal descriptions are the same instance
+      Set<String> descriptions = Sets.newHashSet();
+      Set<String> instances = Sets.newIdentityHashSet();
+      for (StyleableInfo styleable : layoutsModel.getStyleables().values()) {
+        for (AttributeInfo attr : styleable.getAttributeNames()) {
+          if (attr.getDescription() != null) {
+            descriptions.add(attr.getDescription());
+            instances.add(attr.getDescription());
+          }
+        }
+      }
+      assertEquals(descriptions.size(), instances.size());
+    }
+  }
 }
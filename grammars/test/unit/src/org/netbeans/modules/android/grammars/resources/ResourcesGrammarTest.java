@@ -77,4 +77,21 @@ public class ResourcesGrammarTest {
     assertEquals(1, l.size());
   }
 
+  @Test
+  public void testValueTags() throws Exception {
+    String p = PRELUDE + "  <HERE/>\n" + CODA;
+    List<String> l = TestUtil.grammarResultValues(grammar.queryElements(TestUtil.createCompletion(p)));
+    for (String tag : new String[] {"bool", "integer", "fraction", "id", "plurals", "attr", "declare-styleable"}) {
+      assertTrue(tag + " in " + l, l.contains(tag));
+    }
+
+    p = PRELUDE + "  <declare-styleable name=\"Snake\"><attr name=\"mode\"><HERE/></attr></declare-styleable>\n" + CODA;
+    l = TestUtil.grammarResultValues(grammar.queryElements(TestUtil.createCompletion(p)));
+    assertTrue(l.toString(), l.contains("enum"));
+    assertTrue(l.toString(), l.contains("flag"));
+
+    p = PRELUDE + "  <plurals name=\"apples\"><item quHERE=\"\"/></plurals>\n" + CODA;
+    l = TestUtil.grammarResultValues(grammar.queryAttributes(TestUtil.createCompletion(p)));
+    assertTrue(l.toString(), l.contains("quantity"));
+  }
 }
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import com.android.ddmlib.Client;
+import com.android.ddmlib.ClientData;
+import com.android.ddmlib.IDevice;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of process names of all logged devices, as known to ddmlib.
+ * The cache is kept by serial number, so it survives reconnects of a device.
+ */
+public class DeviceProcessNames {
+
+    private final Map<String,Map<Integer, String[]>> processNameCache
+            = new HashMap<String, Map<Integer, String[]>>();
+
+    /**
+     * Get a reference to the name of the process with the given ID.
+     * The reference may contain a null-object, couldn't be retrieved,
+     * but may be available later.
+     * @param device Device, where the process runs.
+     * @param pid    ID of the process.
+     * @return       A reference to a string containing the process name
+     *               or {@code null}, if the process couldn't be retrieved yet.
+     */
+    public synchronized String[] getProcessName(IDevice device, int pid) {
+        Map<Integer, String[]> cache = processNameCache.get(device.getSerialNumber());
+        if (cache == null) {
+            cache = new HashMap<Integer,String[]>();
+            processNameCache.put(device.getSerialNumber(), cache);
+        }
+
+        String[] nameref = cache.get(pid);
+        if (nameref == null) {
+            nameref = new String[1];
+            cache.put(pid, nameref);
+        }
+
+        if (nameref[0] == null) {
+            for(Client client : device.getClients()) {
+                ClientData data = client.getClientData();
+
+                if (data != null && data.getPid() == pid) {
+                    nameref[0] = data.getClientDescription();
+                }
+            }
+        }
+
+        return nameref;
+    }
+
+    /**
+     * Create a process name resolver for the parser of the given device.
+     */
+    public LogLineParser.ProcessNames forDevice(final IDevice device) {
+        return new LogLineParser.ProcessNames() {
+
+            @Override
+            public String[] getProcessNameRef(int pid) {
+                return getProcessName(device, pid);
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+
+/**
+ * Selects log events by tag, process and minimal level.
+ * <p>
+ * This class doesn't depend on the IDE, it's shared by the filtered tabs
+ * of the log window and the headless collector.
+ */
+public class LogEventFilter {
+
+    private final String tag;
+    private final String process;
+    private final int pid;
+    private final LogLevel level;
+
+    /**
+     * @param tag     the tag of accepted events, or {@code null} for any tag
+     * @param process the name or ID of the process of accepted events, or {@code null} for any process
+     * @param level   the minimal level of accepted events, or {@code null} for any level
+     */
+    public LogEventFilter(String tag, String process, LogLevel level) {
+        this.tag = tag;
+        this.process = process;
+        this.level = level;
+
+        int processId = -1;
+        if (process != null) {
+            try {
+                processId = Integer.parseInt(process);
+            }
+            catch(NumberFormatException e) {
+            }
+        }
+        this.pid = processId;
+    }
+
+    public boolean satisfy(LogEvent event) {
+        boolean ok = true;
+
+        if (tag != null) {
+            ok &= tag.equalsIgnoreCase(event.getTag());
+        }
+
+        if (process != null) {
+            ok &= process.equalsIgnoreCase(event.getProcessName());
+        }
+
+        if (pid != -1) {
+            ok &= (pid == event.getPid());
+        }
+
+        if (level != null) {
+            ok &= (event.getLevel().getPriority() >= level.getPriority());
+        }
+
+        return ok;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getProcess() {
+        return process;
+    }
+
+    /**
+     * @return the process ID or -1, if the process isn't given by its ID.
+     */
+    public int getPid() {
+        return pid;
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return "[LogEventFilter tag=" + tag + " process=" + process + " pid=" + pid + " level=" + level + "]";
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stores the log events of all logged devices and the incidents found in them.
+ * <p>
+ * This class doesn't depend on the IDE, it's shared by the {@link LogReader}
+ * and the headless collector.
+ */
+public class LogEventStore {
+
+    /**
+     * Listener notified about changes of the store.
+     */
+    public static interface Listener {
+
+        /** The first event of a device was stored. */
+        void deviceAdded(String device);
+
+        /** A new event was stored. */
+        void eventAdded(String device, LogEvent event);
+
+        /** A crash, ANR or native crash was found. */
+        void incidentFound(LogIncident incident);
+    }
+
+    /**
+     * Number of recent events of a device, which are checked for duplicates.
+     * Covers the overlap of a reconnect, without scanning the whole history.
+     */
+    public static final int DEDUP_WINDOW = 4096;
+
+    /**
+     * The last events of a device, for a constant time duplicate check.
+     */
+    private static final class RecentEvents {
+
+        private final Set<LogEvent> set = new HashSet<LogEvent>();
+        private final Deque<LogEvent> order = new ArrayDeque<LogEvent>();
+
+        boolean add(LogEvent event) {
+            if (!set.add(event)) {
+                return false;
+            }
+
+            order.addLast(event);
+            if (order.size() > DEDUP_WINDOW) {
+                set.remove(order.removeFirst());
+            }
+            return true;
+        }
+    }
+
+    private final Map<String, Collection<LogEvent>> logEventCache
+            = new HashMap<String, Collection<LogEvent>>();
+
+    private final Map<String, RecentEvents> recentEvents
+            = new HashMap<String, RecentEvents>();
+
+    private final Map<String, LogIncidentDetector> incidentDetectors
+            = new HashMap<String, LogIncidentDetector>();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Store an event of a device.
+     * Duplicates are detected among the last {@link #DEDUP_WINDOW} events of the device.
+     * @return {@code true} if the event was stored, {@code false} if it was already known.
+     */
+    public boolean add(String device, LogEvent event) {
+        Collection<LogEvent> loggedEvents = logEventCache.get(device);
+        if (loggedEvents == null) {
+            loggedEvents = new ArrayList<LogEvent>();
+            logEventCache.put(device, loggedEvents);
+            recentEvents.put(device, new RecentEvents());
+            incidentDetectors.put(device, new LogIncidentDetector(device));
+
+            for (Listener listener : listeners) {
+                listener.deviceAdded(device);
+            }
+        }
+
+        if (!recentEvents.get(device).add(event)) {
+            return false;
+        }
+
+        loggedEvents.add(event);
+        for (Listener listener : listeners) {
+            listener.eventAdded(device, event);
+        }
+
+        LogIncident incident = incidentDetectors.get(device).process(event);
+        if (incident != null) {
+            for (Listener listener : listeners) {
+                listener.incidentFound(incident);
+            }
+        }
+
+        return true;
+    }
+
+    public Set<String> getDevices() {
+        return logEventCache.keySet();
+    }
+
+    public Collection<LogEvent> getEvents(String device) {
+        return logEventCache.get(device);
+    }
+
+    /**
+     * Get all crashes, ANRs and native crashes found in the log of a device.
+     * @param device serial number of the device
+     * @return a copy of the incident index, the oldest incident first
+     */
+    public List<LogIncident> getIncidents(String device) {
+        LogIncidentDetector detector = incidentDetectors.get(device);
+        if (detector == null) {
+            return Collections.emptyList();
+        }
+
+        return detector.getIncidents();
+    }
+}
@@ -85,6 +85,8 @@ public class LogFilterDialog extends javax.swing.JDialog {
         txtLogTag = new javax.swing.JTextField();
         txtLogPid = new javax.swing.JTextField();
         cmbLogLevel = new javax.swing.JComboBox();
+        jLabel5 = new javax.swing.JLabel();
+        spnRateLimit = new javax.swing.JSpinner();
         jSeparator2 = new javax.swing.JSeparator();
         butOk = new javax.swing.JButton();
         butCancel = new javax.swing.JButton();
@@ -107,6 +109,11 @@ public class LogFilterDialog extends javax.swing.JDialog {
 
         txtLogPid.setText(org.openide.util.NbBundle.getMessage(LogFilterDialog.class, "LogFilterDialog.txtLogPid.text")); // NOI18N
 
+        jLabel5.setText(org.openide.util.NbBundle.getMessage(LogFilterDialog.class, "LogFilterDialog.jLabel5.text")); // NOI18N
+
+        spnRateLimit.setModel(new javax.swing.SpinnerNumberModel(Integer.valueOf(0), Integer.valueOf(0), null, Integer.valueOf(10)));
+        spnRateLimit.setToolTipText(org.openide.util.NbBundle.getMessage(LogFilterDialog.class, "LogFilterDialog.spnRateLimit.toolTipText")); // NOI18N
+
         butOk.setText(org.openide.util.NbBundle.getMessage(LogFilterDialog.class, "LogFilterDialog.butOk.text")); // NOI18N
         butOk.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -140,12 +147,14 @@ public class LogFilterDialog extends javax.swing.JDialog {
                                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING, false)
                                     .addComponent(jLabel3, javax.swing.GroupLayout.Alignment.LEADING, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                                     .addComponent(jLabel2, javax.swing.GroupLayout.Alignment.LEADING, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
-                                    .addComponent(jLabel4, javax.swing.GroupLayout.Alignment.LEADING, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+                                    .addComponent(jLabel4, javax.swing.GroupLayout.Alignment.LEADING, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                                    .addComponent(jLabel5, javax.swing.GroupLayout.Alignment.LEADING, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                                     .addComponent(txtLogPid, javax.swing.GroupLayout.DEFAULT_SIZE, 344, Short.MAX_VALUE)
                                     .addComponent(txtLogTag, javax.swing.GroupLayout.DEFAULT_SIZE, 344, Short.MAX_VALUE)
-                                    .addComponent(cmbLogLevel, 0, 344, Short.MAX_VALUE)))))
+                                    .addComponent(cmbLogLevel, 0, 344, Short.MAX_VALUE)
+                                    .addComponent(spnRateLimit, javax.swing.GroupLayout.DEFAULT_SIZE, 344, Short.MAX_VALUE)))))
                     .addGroup(layout.createSequentialGroup()
                         .addGap(138, 138, 138)
                         .addComponent(butOk, javax.swing.GroupLayout.PREFERRED_SIZE, 67, javax.swing.GroupLayout.PREFERRED_SIZE)
@@ -174,6 +183,10 @@ public class LogFilterDialog extends javax.swing.JDialog {
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jLabel4)
                     .addComponent(cmbLogLevel, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(jLabel5)
+                    .addComponent(spnRateLimit, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addComponent(jSeparator2, javax.swing.GroupLayout.PREFERRED_SIZE, 10, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -184,7 +197,7 @@ public class LogFilterDialog extends javax.swing.JDialog {
         );
 
         java.awt.Dimension screenSize = java.awt.Toolkit.getDefaultToolkit().getScreenSize();
-        setBounds((screenSize.width-445)/2, (screenSize.height-256)/2, 445, 256);
+        setBounds((screenSize.width-445)/2, (screenSize.height-282)/2, 445, 282);
     }// </editor-fold>//GEN-END:initComponents
 
     private void butCancelActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_butCancelActionPerformed
@@ -197,6 +210,7 @@ public class LogFilterDialog extends javax.swing.JDialog {
         String name    = "".equals(txtFilterName.getText()) ? null : txtFilterName.getText();
         String tag     = "".equals(txtLogTag.getText()) ? null : txtLogTag.getText();
         String pid     = "".equals(txtLogPid.getText()) ? null : txtLogPid.getText();
+        int rateLimit  = ((Number) spnRateLimit.getValue()).intValue();
         LogLevel level = null;
         if(cmbLogLevel.getSelectedItem() instanceof LogLevel) {
 
@@ -215,8 +229,8 @@ public class LogFilterDialog extends javax.swing.JDialog {
             return;
         }
 
-        // Check at least one filter is filled
-        if(tag == null && pid == null && level == null) {
+        // Check at least one filter is filled, a rate limit alone shows a throttled log
+        if(tag == null && pid == null && level == null && rateLimit == 0) {
             JOptionPane.showMessageDialog(
                                     this,
                                     NbBundle.getMessage(this.getClass(), "LogFilterDialog.MissingFilterConditions.message"),
@@ -227,7 +241,7 @@ public class LogFilterDialog extends javax.swing.JDialog {
             return;
         }
 
-        filter = new LogFilter(name, tag, pid, level);
+        filter = new LogFilter(name, tag, pid, level, rateLimit);
         dispose();
     }//GEN-LAST:event_butOkActionPerformed
 
@@ -239,8 +253,10 @@ public class LogFilterDialog extends javax.swing.JDialog {
     private javax.swing.JLabel jLabel2;
     private javax.swing.JLabel jLabel3;
     private javax.swing.JLabel jLabel4;
+    private javax.swing.JLabel jLabel5;
     private javax.swing.JSeparator jSeparator1;
     private javax.swing.JSeparator jSeparator2;
+    private javax.swing.JSpinner spnRateLimit;
     private javax.swing.JTextField txtFilterName;
     private javax.swing.JTextField txtLogPid;
     private javax.swing.JTextField txtLogTag;
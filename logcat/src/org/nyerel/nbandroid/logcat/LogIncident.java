@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A crash, ANR or native crash found in the log of a device.
+ * The incident keeps all log lines belonging to the block, so it can be
+ * shown without searching the whole log for it.
+ */
+public class LogIncident {
+
+    public static enum Type {
+        /** Uncaught Java exception reported by {@code AndroidRuntime}. */
+        CRASH,
+        /** Application not responding reported by {@code ActivityManager}. */
+        ANR,
+        /** Tombstone of a native crash reported by {@code DEBUG}. */
+        NATIVE_CRASH,
+    }
+
+    private final Type type;
+    private final String device;
+    private final LogEvent firstEvent;
+    private final List<LogEvent> events = new ArrayList<LogEvent>();
+    private StackTraceElement firstStackTraceElement;
+
+    LogIncident(Type type, String device, LogEvent firstEvent) {
+        this.type = type;
+        this.device = device;
+        this.firstEvent = firstEvent;
+        addEvent(firstEvent);
+    }
+
+    synchronized void addEvent(LogEvent event) {
+        events.add(event);
+        if (firstStackTraceElement == null) {
+            firstStackTraceElement = event.getStackTraceElement();
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** Serial number of the device where this incident happened. */
+    public String getDevice() {
+        return device;
+    }
+
+    public String getTime() {
+        return firstEvent.getTime();
+    }
+
+    public int getPid() {
+        return firstEvent.getPid();
+    }
+
+    public String getProcessName() {
+        return firstEvent.getProcessName();
+    }
+
+    /** The line which started this incident, e.g. {@code FATAL EXCEPTION: main}. */
+    public LogEvent getFirstEvent() {
+        return firstEvent;
+    }
+
+    /**
+     * Top-most stack frame of this incident, if there is any.
+     * @return the stack frame or {@code null}
+     */
+    public synchronized StackTraceElement getStackTraceElement() {
+        return firstStackTraceElement;
+    }
+
+    /** A copy of all log lines collected for this incident so far. */
+    public synchronized List<LogEvent> getEvents() {
+        return new ArrayList<LogEvent>(events);
+    }
+
+    synchronized int getEventCount() {
+        return events.size();
+    }
+
+    @Override
+    public String toString() {
+        return "[LogIncident type=" + type + " device=" + device + " time=" + getTime()
+                + " pid=" + getPid() + ": " + firstEvent.getMessage() + "]";
+    }
+}
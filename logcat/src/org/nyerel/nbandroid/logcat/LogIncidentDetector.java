@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Streaming stage recognizing crashes, ANRs and native crashes in the log of one device.
+ * Each event is fed exactly once; the multi-line blocks following the start of an incident
+ * (stack traces, CPU usage, tombstone dumps) are collected into that incident.
+ * <p>
+ * Lines which are not part of an incident only cost a tag comparison.
+ */
+class LogIncidentDetector {
+
+    /** Maximum number of incidents kept per device, older ones are dropped. */
+    static final int MAX_INCIDENTS = 200;
+
+    /** Maximum number of lines kept for a single incident. */
+    static final int MAX_INCIDENT_EVENTS = 500;
+
+    private static final String TAG_ANDROID_RUNTIME   = "AndroidRuntime";
+    private static final String TAG_ACTIVITY_MANAGER  = "ActivityManager";
+    private static final String TAG_DEBUG             = "DEBUG";
+
+    private static final String MSG_FATAL_EXCEPTION   = "FATAL EXCEPTION";
+    private static final String MSG_ANR               = "ANR in ";
+    private static final String MSG_TOMBSTONE         = "*** *** ***";
+
+    private final String device;
+    private final LinkedList<LogIncident> incidents = new LinkedList<LogIncident>();
+    private LogIncident openIncident;
+
+    LogIncidentDetector(String device) {
+        this.device = device;
+    }
+
+    /**
+     * Process the next event of the device.
+     * @return a newly started incident or {@code null}, if the event doesn't start one.
+     */
+    LogIncident process(LogEvent event) {
+        String tag = event.getTag();
+        LogIncident.Type type = incidentType(tag, event.getMessage());
+
+        if (type == null) {
+            if (openIncident != null) {
+                if (belongsTo(openIncident, event, tag)) {
+                    if (openIncident.getEventCount() < MAX_INCIDENT_EVENTS) {
+                        openIncident.addEvent(event);
+                    }
+                    return null;
+                }
+
+                openIncident = null;
+            }
+
+            return null;
+        }
+
+        openIncident = new LogIncident(type, device, event);
+
+        synchronized (incidents) {
+            incidents.addLast(openIncident);
+            if (incidents.size() > MAX_INCIDENTS) {
+                incidents.removeFirst();
+            }
+        }
+
+        return openIncident;
+    }
+
+    /** A copy of all incidents found so far, the oldest first. */
+    List<LogIncident> getIncidents() {
+        synchronized (incidents) {
+            return new ArrayList<LogIncident>(incidents);
+        }
+    }
+
+    void clear() {
+        synchronized (incidents) {
+            incidents.clear();
+        }
+        openIncident = null;
+    }
+
+    private static LogIncident.Type incidentType(String tag, String message) {
+        if (TAG_ANDROID_RUNTIME.equals(tag)) {
+            return message.startsWith(MSG_FATAL_EXCEPTION) ? LogIncident.Type.CRASH : null;
+        }
+
+        if (TAG_ACTIVITY_MANAGER.equals(tag)) {
+            return message.startsWith(MSG_ANR) ? LogIncident.Type.ANR : null;
+        }
+
+        if (TAG_DEBUG.equals(tag)) {
+            return message.startsWith(MSG_TOMBSTONE) ? LogIncident.Type.NATIVE_CRASH : null;
+        }
+
+        return null;
+    }
+
+    /**
+     * Continuation lines of an incident are logged by the same process using the same tag,
+     * either as part of the same {@code logcat -v long} entry or as separate entries.
+     */
+    private static boolean belongsTo(LogIncident incident, LogEvent event, String tag) {
+        LogEvent first = incident.getFirstEvent();
+        return first.getPid() == event.getPid() && first.getTag().equals(tag);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parser of the output of {@code logcat -v long} of a single device.
+ * Header lines are remembered and attached to all following message lines.
+ * <p>
+ * This class doesn't depend on the IDE, so it can be used by the headless collector as well.
+ */
+public class LogLineParser {
+
+    /**
+     * Resolves process names of the logged device.
+     */
+    public static interface ProcessNames {
+
+        /**
+         * Get a reference to the name of the process with the given ID.
+         * The referenced name may be {@code null} and filled in later.
+         */
+        String[] getProcessNameRef(int pid);
+    }
+
+    private static final Set<String> ignoredLines;
+
+    private static final Pattern sLogPattern = Pattern.compile(
+            "^\\[\\s(\\d\\d-\\d\\d)\\s(\\d\\d:\\d\\d:\\d\\d\\.\\d+)" +
+            "\\s+(\\d*):\\s*(0x[0-9a-fA-F]+|\\d+)\\s([VDIWEAF])/(.*)\\]$");
+
+    static {
+
+       // These messages will not be added to log as events
+        ignoredLines = new HashSet<String>();
+        ignoredLines.add("--------- beginning of /dev/log/main");
+        ignoredLines.add("--------- beginning of /dev/log/system");
+    }
+
+    private final ProcessNames processNames;
+    private LogEventInfo lastLogEventInfo;
+    private String lastTimestamp;
+
+    public LogLineParser(ProcessNames processNames) {
+        this.processNames = processNames;
+    }
+
+    /**
+     * Parse a header line and keep it around for the following message lines.
+     * @return the parsed header or {@code null}, if the line is not a header.
+     */
+    public LogEventInfo parseHeader(String line) {
+        Matcher matcher = sLogPattern.matcher(line);
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        // this is a header line, parse the header and keep it around.
+        String time = matcher.group(2);
+        int pid = Integer.valueOf(matcher.group(3));
+        String[] process = processNames.getProcessNameRef(pid);
+        LogLevel level = parseLevel(matcher.group(5));
+        String tag = matcher.group(6).trim();
+        lastTimestamp = matcher.group(1) + " " + time;
+        lastLogEventInfo = new LogEventInfo(pid, process, time, tag, level);
+        return lastLogEventInfo;
+    }
+
+    /**
+     * Create an event for a message line using the last parsed header.
+     * @return the event or {@code null}, if the line should be ignored.
+     */
+    public LogEvent parseMessage(String line) {
+        if (lastLogEventInfo == null) {
+            // The first line of output wasn't preceded
+            // by a header line; make something up so
+            // that users of mc.data don't NPE.
+            lastLogEventInfo = new LogEventInfo(
+                    0, new String[]{""}, "??-?? ??:??:??.???", "<unknown>", LogLevel.INFO); //$NON-NLS1$
+        }
+        // tabs seem to display as only 1 tab so we replace the leading tabs
+        // by 4 spaces.
+        String message = line.replaceAll("\t", "    "); //$NON-NLS-1$ //$NON-NLS-2$
+        if (ignoredLines.contains(message)) {
+            return null;
+        }
+
+        return new LogEvent(lastLogEventInfo, message);
+    }
+
+    /**
+     * Date and time of the last parsed header, as {@code MM-DD hh:mm:ss.mmm}.
+     * This is the format accepted by {@code logcat -T}, use {@link #compareTimestamps}
+     * to compare them.
+     * @return the timestamp or {@code null}, if no header was parsed yet.
+     */
+    public String getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Compare two timestamps returned by {@link #getLastTimestamp}.
+     * The timestamps carry no year, so when their months are more than half a year
+     * apart, the earlier month is taken as the next year, e.g. {@code 01-01} follows {@code 12-31}.
+     * @return a negative number, zero or a positive number, if the first timestamp
+     *         is earlier, equal or later than the second one.
+     */
+    public static int compareTimestamps(String t1, String t2) {
+        int month1 = Integer.parseInt(t1.substring(0, 2));
+        int month2 = Integer.parseInt(t2.substring(0, 2));
+        if (Math.abs(month1 - month2) > 6) {
+            return month1 < month2 ? 1 : -1;
+        }
+
+        return t1.compareTo(t2);
+    }
+
+    /**
+     * Older devices log assertions as {@code A}, newer ones log fatal entries as {@code F}.
+     */
+    private static LogLevel parseLevel(String letter) {
+        if ("F".equals(letter)) {
+            return LogLevel.ASSERT;
+        }
+
+        return LogLevel.getByLetterString(letter);
+    }
+
+    /**
+     * Parse any line of the output.
+     * @return the event for a message line, {@code null} for header, empty and ignored lines.
+     */
+    public LogEvent parseLine(String line) {
+        if (line.length() == 0 || parseHeader(line) != null) {
+            return null;
+        }
+
+        return parseMessage(line);
+    }
+}
@@ -15,8 +15,6 @@ package org.nyerel.nbandroid.logcat;
 
 import com.android.ddmlib.AdbCommandRejectedException;
 import com.android.ddmlib.AndroidDebugBridge;
-import com.android.ddmlib.Client;
-import com.android.ddmlib.ClientData;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.Log.LogLevel;
 import com.android.ddmlib.MultiLineReceiver;
@@ -25,19 +23,16 @@ import com.android.ddmlib.TimeoutException;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.netbeans.modules.android.core.ddm.AndroidDebugBridgeFactory;
+import org.openide.util.NbBundle;
 import org.openide.util.RequestProcessor;
 
 /**
@@ -49,9 +44,17 @@ public class LogReader {
     public final static String PROPERTY_DEVICE_LIST                 = "DECIVE_LIST";
     public final static String PROPERTY_CURRENT_DEVICE              = "CURRENT_DEVICE";
     public final static String PROPERTY_CURRENT_DEVICE_STATE        = "CURRENT_DEVICE_STATE";
+    public final static String PROPERTY_INCIDENT                    = "INCIDENT";
     
     private static final Logger LOG = Logger.getLogger(LogReader.class.getName());
-    private static final Set<String> ignoredLines;
+
+    private static final RequestProcessor RP = new RequestProcessor(LogReader.class.getName());
+
+    /** Delay of the first reconnect attempt after logcat stopped unexpectedly, in milliseconds. */
+    private static final int RECONNECT_DELAY_MIN = 500;
+
+    /** Maximum delay between reconnect attempts, in milliseconds. */
+    private static final int RECONNECT_DELAY_MAX = 30000;
 
     public static enum CurrentDeviceState {
         ATTACHED_AND_LOGGING,
@@ -60,34 +63,27 @@ public class LogReader {
         UNKNOWN,
     }
     
-    static {
-
-       // These messages will not be added to log as events
-        ignoredLines = new HashSet<String>();
-        ignoredLines.add("--------- beginning of /dev/log/main");
-        ignoredLines.add("--------- beginning of /dev/log/system");
-    }
-
     private Set<LogListener> listeners;
     private PropertyChangeSupport changeSupport;
     private IDevice currentDevice;
     private String requestedDeviceSerial;
     private LogCatOutputReceiver receiver;
-    private LogEventInfo lastLogEventInfo;
-    private static Pattern sLogPattern = Pattern.compile(
-            "^\\[\\s\\d\\d-\\d\\d\\s(\\d\\d:\\d\\d:\\d\\d\\.\\d+)" +
-            "\\s+(\\d*):(0x[0-9a-fA-F]+)\\s([VDIWE])/(.*)\\]$");
     private final AndroidDebugBridge adb;
     private boolean shouldBeReading = false;
     private volatile boolean reading = true;
-    private Timer checkReadingStatusTimer;
-    private int checkingPeriod = 10000;
+    private final RequestProcessor.Task reconnectTask;
+    private volatile int reconnectDelay = RECONNECT_DELAY_MIN;
 
-    private Map<String,Map<Integer, String[]>> processNameCache
-            = new HashMap<String, Map<Integer, String[]>>();
-    
-    private Map<String, Collection<LogEvent>> logEventCache
-            = new HashMap<String, Collection<LogEvent>>();
+    private final DeviceProcessNames processNames = new DeviceProcessNames();
+    private final LogEventStore store = new LogEventStore();
+
+    /** Position of the last entry read from each device, to resume from there on reconnect. */
+    private final LogcatResume resume = new LogcatResume();
+
+    private volatile TagRateLimiter rateLimiter;
+
+    private final DeviceListener deviceListener = new DeviceListener();
+    private boolean listeningOnDevices = false;
 
 
     public LogReader() {
@@ -95,18 +91,32 @@ public class LogReader {
         changeSupport = new PropertyChangeSupport(this);
         listeners     = new HashSet<LogListener>();
 
+        store.addListener(new LogEventStore.Listener() {
+
+            @Override
+            public void deviceAdded(String device) {
+                // notify listeners for the new device
+                firePropertyChange(PROPERTY_DEVICE_LIST, null, getLoggedDevices());
+            }
+
+            @Override
+            public void eventAdded(String device, LogEvent event) {
+                sendNewLogEvent(event);
+            }
+
+            @Override
+            public void incidentFound(LogIncident incident) {
+                firePropertyChange(PROPERTY_INCIDENT, null, incident);
+            }
+        });
+
         adb = AndroidDebugBridgeFactory.getDefault();
-        checkReadingStatusTimer = new Timer();
-        checkReadingStatusTimer.schedule(new TimerTask() {
+        reconnectTask = RP.create(new Runnable() {
 
             @Override
             public void run() {
                 try {
-                    if (!shouldBeReading) {
-                        return;
-                    }
-                    if (!deviceReallyConnected()) {
-                        infoMessage("Trying to reconnect to the device in " + checkingPeriod / 1000 + " seconds.");
+                    if (shouldBeReading && receiver == null) {
                         startReading();
                     }
                 }
@@ -114,17 +124,63 @@ public class LogReader {
                     LOG.log(Level.SEVERE, "Unexpected exception on reconnecting the device.", e);
                 }
             }
-        }, checkingPeriod, checkingPeriod);
+        });
     }
     
     
     public Set<String> getLoggedDevices() {
-        return logEventCache.keySet();
+        return store.getDevices();
     }
     
     
     public Collection<LogEvent> getLogEventsForDevice(String device) {
-        return logEventCache.get(device);
+        return store.getEvents(device);
+    }
+
+
+    /**
+     * The store of all events read by this reader.
+     */
+    public LogEventStore getStore() {
+        return store;
+    }
+
+
+    /**
+     * Get all crashes, ANRs and native crashes found in the log of a device.
+     * @param device serial number of the device
+     * @return a copy of the incident index, the oldest incident first
+     */
+    public List<LogIncident> getIncidentsForDevice(String device) {
+        return store.getIncidents(device);
+    }
+    
+    
+    /**
+     * Limit the number of entries each tag may log, before they are stored.
+     * Errors and assertions are never suppressed.
+     * @param limiter the rate limiter to use, {@code null} to accept everything.
+     */
+    public void setRateLimiter(TagRateLimiter limiter) {
+        this.rateLimiter = limiter;
+    }
+
+
+    public TagRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+
+    /**
+     * Number of entries suppressed by the rate limiter for each tag.
+     */
+    public Map<String, Long> getSuppressedEntryCounts() {
+        TagRateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            return Collections.emptyMap();
+        }
+
+        return limiter.getSuppressedCounts();
     }
     
     
@@ -190,19 +246,85 @@ public class LogReader {
             currentDevice.isOffline() || !currentDevice.isOnline()) {
             return false;
         }
-        boolean gotIt = false;
-        LOG.info("searching for device with sn: " + currentDevice.getSerialNumber());
         for (IDevice d: adb.getDevices()) {
-            LOG.info("device: " + d.getSerialNumber());
             if (d.getSerialNumber().equals(currentDevice.getSerialNumber())) {
-                gotIt = true;
+                return true;
             }
         }
-        if (!gotIt) {
-            LOG.info("wasnt found in adb.getDevices");
-            return false;
+        LOG.log(Level.FINE, "device {0} not found in adb.getDevices", currentDevice.getSerialNumber());
+        return false;
+    }
+
+    /**
+     * Try to start reading again after logcat stopped, waiting twice as long
+     * after each failed attempt. Device (re)connections restart reading immediately.
+     */
+    private void scheduleReconnect() {
+        int delay = reconnectDelay;
+        reconnectDelay = Math.min(delay * 2, RECONNECT_DELAY_MAX);
+        LOG.log(Level.FINE, "Reconnecting to {0} in {1} ms", new Object[] {requestedDeviceSerial, delay});
+        reconnectTask.schedule(delay);
+    }
+
+    /**
+     * Listen on device changes only while reading is requested,
+     * the bridge keeps its listeners forever.
+     */
+    private synchronized void listenOnDevices(boolean listen) {
+        if (listen == listeningOnDevices) {
+            return;
+        }
+
+        listeningOnDevices = listen;
+        if (listen) {
+            AndroidDebugBridge.addDeviceChangeListener(deviceListener);
+        }
+        else {
+            AndroidDebugBridge.removeDeviceChangeListener(deviceListener);
+        }
+    }
+
+    private boolean isRequestedDevice(IDevice device) {
+        return requestedDeviceSerial == null || requestedDeviceSerial.equals(device.getSerialNumber());
+    }
+
+    /**
+     * Reacts on devices coming and going, instead of polling their state.
+     */
+    private final class DeviceListener implements AndroidDebugBridge.IDeviceChangeListener {
+
+        @Override
+        public void deviceConnected(IDevice device) {
+            deviceStateChanged(device);
+        }
+
+        @Override
+        public void deviceDisconnected(IDevice device) {
+            if (currentDevice != null && currentDevice.getSerialNumber().equals(device.getSerialNumber())) {
+                changeSupport.firePropertyChange(PROPERTY_CURRENT_DEVICE_STATE, null, getCurrentDeviceState());
+            }
+        }
+
+        @Override
+        public void deviceChanged(IDevice device, int changeMask) {
+            if ((changeMask & IDevice.CHANGE_STATE) != 0) {
+                deviceStateChanged(device);
+            }
+        }
+
+        private void deviceStateChanged(IDevice device) {
+            if (!shouldBeReading || !isRequestedDevice(device)) {
+                return;
+            }
+
+            if (device.isOnline() && receiver == null) {
+                reconnectDelay = RECONNECT_DELAY_MIN;
+                reconnectTask.schedule(0);
+            }
+            else {
+                changeSupport.firePropertyChange(PROPERTY_CURRENT_DEVICE_STATE, null, getCurrentDeviceState());
+            }
         }
-        return true;
     }
     
     
@@ -255,18 +377,71 @@ public class LogReader {
     private final class LogCatOutputReceiver extends MultiLineReceiver {
 
         private final IDevice loggedDevice;
+        private final LogLineParser parser;
+        private final LogcatResume.Session session;
+        private boolean lastEntrySuppressed = false;
         public boolean isCancelled = false;
         
-        public LogCatOutputReceiver(IDevice device) {
+        /**
+         * @param device  the logged device
+         * @param session skips the entries read before a reconnect
+         */
+        public LogCatOutputReceiver(IDevice device, LogcatResume.Session session) {
             super();
             setTrimLine(false);
             loggedDevice = device;
+            parser = new LogLineParser(processNames.forDevice(device));
+            this.session = session;
         }
 
         @Override
         public void processNewLines(String[] lines) {
             if (isCancelled == false) {
-                processLogLines(loggedDevice, lines);
+                // the device delivers again, next failure starts with a short delay
+                reconnectDelay = RECONNECT_DELAY_MIN;
+                processLogLines(lines);
+            }
+        }
+
+        private void processLogLines(String[] lines) {
+            TagRateLimiter limiter = rateLimiter;
+            long now = System.currentTimeMillis();
+
+            for (String line : lines) {
+                // ignore empty lines.
+                if (line.length() == 0) {
+                    continue;
+                }
+
+                LogEventInfo header = parser.parseHeader(line);
+                if (header != null) {
+                    if (session.isReplayed(parser.getLastTimestamp())) {
+                        // replayed history, already stored before the reconnect
+                        lastEntrySuppressed = true;
+                        continue;
+                    }
+
+                    // decide once per entry, so multi-line messages are kept or dropped as a whole
+                    lastEntrySuppressed = false;
+                    if (limiter != null && header.getLevel().getPriority() < LogLevel.ERROR.getPriority()) {
+                        long recovered = limiter.accept(header.getTag(), now);
+                        lastEntrySuppressed = recovered == TagRateLimiter.REJECTED;
+                        if (recovered > 0) {
+                            infoMessage(NbBundle.getMessage(LogReader.class, "LogReader.suppressed",
+                                    recovered, header.getTag(), limiter.getEntriesPerSecond()));
+                        }
+                    }
+                    continue;
+                }
+
+                if (lastEntrySuppressed) {
+                    continue;
+                }
+
+                LogEvent event = parser.parseMessage(line);
+                if (event != null) {
+                    store.add(loggedDevice.getSerialNumber(), event);
+                }
             }
         }
 
@@ -277,6 +452,7 @@ public class LogReader {
 
     public void startReading() {
         shouldBeReading = true;
+        listenOnDevices(true);
         if (adb == null) {
             return;
         }
@@ -341,7 +517,10 @@ public class LogReader {
         }
 
         if (currentDevice != null && !currentDevice.isOffline()) {
-            receiver = new LogCatOutputReceiver(currentDevice);
+            // on reconnect, continue at the last read entry
+            LogcatResume.Session session = resume.start(currentDevice);
+            final String command = session.getCommand();
+            receiver = new LogCatOutputReceiver(currentDevice, session);
             RequestProcessor.getDefault().post(new Runnable() {
 
                 @Override public void run() {
@@ -355,7 +534,7 @@ public class LogReader {
                         return;
                     }
                     try {
-                        currDevice.executeShellCommand("logcat -v long", receiver, 0);
+                        currDevice.executeShellCommand(command, receiver, 0);
                     } catch (TimeoutException e) {
                       LOG.log(Level.FINE, null, e);
                       reading = false;
@@ -379,6 +558,9 @@ public class LogReader {
                         if (!serial.equals(requestedDeviceSerial)) {
                             startReading();
                         }
+                        else if (shouldBeReading) {
+                            scheduleReconnect();
+                        }
                     }
                 }
             });
@@ -391,6 +573,8 @@ public class LogReader {
         }
         
         shouldBeReading = false;
+        reconnectTask.cancel();
+        listenOnDevices(false);
     }
 
     public boolean isReading() {
@@ -399,97 +583,4 @@ public class LogReader {
         }
         return false;
     }
-
-    private void processLogLines(IDevice device, String[] lines) {
-        for (String line : lines) {
-            // ignore empty lines.
-            if (line.length() > 0) {
-                String time;
-                int pid;
-                String[] process;
-                LogLevel level;
-                String tag;
-                Matcher matcher = sLogPattern.matcher(line);
-                if (matcher.matches()) {
-                    // this is a header line, parse the header and keep it around.
-                    time = matcher.group(1);
-                    pid = Integer.valueOf(matcher.group(2));
-                    process = getProcessName(device, pid);
-                    level = LogLevel.getByLetterString(matcher.group(4));
-                    tag = matcher.group(5).trim();
-                    lastLogEventInfo = new LogEventInfo(pid, process, time, tag, level);
-                } else {
-                    if (lastLogEventInfo == null) {
-                        // The first line of output wasn't preceded
-                        // by a header line; make something up so
-                        // that users of mc.data don't NPE.
-                        time = "??-?? ??:??:??.???"; //$NON-NLS1$
-                        pid = 0;
-                        process = new String[]{""};
-                        level = LogLevel.INFO;
-                        tag = "<unknown>"; //$NON-NLS1$
-                        lastLogEventInfo = new LogEventInfo(pid, process, time, tag, level);
-                    }
-                    // tabs seem to display as only 1 tab so we replace the leading tabs
-                    // by 4 spaces.
-                    String message = line.replaceAll("\t", "    "); //$NON-NLS-1$ //$NON-NLS-2$
-                    if(ignoredLines.contains(message)) {
-                        continue;
-                    }
-
-                    LogEvent event = new LogEvent(lastLogEventInfo, message);
-                    
-                    Collection<LogEvent> loggedEvents = logEventCache.get(device.getSerialNumber());
-                    if (loggedEvents == null) {
-                        loggedEvents = new ArrayList<LogEvent>();
-                        logEventCache.put(device.getSerialNumber(), loggedEvents);
-                        
-                        // notify listeners for the new device
-                        firePropertyChange(PROPERTY_DEVICE_LIST, null, getLoggedDevices());
-                    }
-                    
-                    if(!loggedEvents.contains(event)) {
-                        loggedEvents.add(event);
-                        sendNewLogEvent(event);
-                    }
-                }
-            }
-        }
-    }
-
-
-    /**
-     * Get a reference to the name of the process with the given ID.
-     * The reference may contain a null-object, couldn't be retrieved,
-     * but may be available later.
-     * @param device Device, where the process runs.
-     * @param pid    ID of the process.
-     * @return       A reference to a string containing the process name
-     *               or {@code null}, if the process couldn't be retrieved yet.
-     */
-    private String[] getProcessName(IDevice device, int pid) {
-        Map<Integer, String[]> cache = processNameCache.get(device.getSerialNumber());
-        if (cache == null) {
-            cache = new HashMap<Integer,String[]>();
-            processNameCache.put(device.getSerialNumber(), cache);
-        }
-
-        String[] nameref = cache.get(pid);
-        if (nameref == null) {
-            nameref = new String[1];
-            cache.put(pid, nameref);
-        }
-        
-        if (nameref[0] == null) {
-            for(Client client : device.getClients()) {
-                ClientData data = client.getClientData();
-
-                if (data != null && data.getPid() == pid) {
-                    nameref[0] = data.getClientDescription();
-                }
-            }
-        }
-
-        return nameref;
-    }
 }
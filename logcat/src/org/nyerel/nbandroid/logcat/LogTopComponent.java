@@ -15,6 +15,8 @@ package org.nyerel.nbandroid.logcat;
 
 import com.android.ddmlib.Log.LogLevel;
 import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
@@ -22,22 +24,32 @@ import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import org.nyerel.nbandroid.logcat.logtable.LogTableModel;
 import org.nyerel.nbandroid.logcat.logtable.LogTableManager;
 import org.nyerel.nbandroid.logcat.logtable.LogTableCellRenderer;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.AbstractButton;
 import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTable;
+import javax.swing.JTextArea;
 import javax.swing.JViewport;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeListener;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableRowSorter;
@@ -79,6 +91,13 @@ public final class LogTopComponent extends TopComponent {
   private static final String SERIALIZE_FILTER_LEVEL        = "filter.level";
   private static final String SERIALIZE_TAB_COUNT           = "tab.count";
   private static final String SERIALIZE_TAB                 = "tab";
+  private static final String SERIALIZE_RATE_LIMIT          = "ratelimit";
+
+  /** Number of tags listed with their suppressed entries in the rate limit dialog. */
+  private static final int RATE_LIMIT_MAX_TAGS = 20;
+
+  /** Number of the most recent incidents offered by the incidents button. */
+  private static final int INCIDENTS_MENU_SIZE = 25;
 
   private static LogTopComponent instance;
 
@@ -88,6 +107,7 @@ public final class LogTopComponent extends TopComponent {
     private TimerTask taskUpdateFilterText;
     private boolean starting = false;
     private String lastKnownPID = "";
+    private int rateLimit = 0;
     private JTable selectedTable;
 
     private List<LogTableManager> tabManagers;
@@ -117,6 +137,18 @@ public final class LogTopComponent extends TopComponent {
                     }
                 }
             }
+
+            if (LogReader.PROPERTY_CURRENT_DEVICE.equals(evt.getPropertyName())
+                    || LogReader.PROPERTY_INCIDENT.equals(evt.getPropertyName())) {
+                // incidents are found on the reading thread
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        updateIncidentsButton();
+                    }
+                });
+            }
             
             if (LogReader.PROPERTY_CURRENT_DEVICE_STATE.equals(evt.getPropertyName())) {
                 String tooltip = NbBundle.getMessage(this.getClass(), "DeviceStatus." + evt.getNewValue());
@@ -231,6 +263,7 @@ public final class LogTopComponent extends TopComponent {
             // write current filter settings
             p.setProperty(SERIALIZE_FILTER_STRING, txtFilterText.getText());
             p.setProperty(SERIALIZE_FILTER_LEVEL,  rowFilter.getLogLevel().toString());
+            p.setProperty(SERIALIZE_RATE_LIMIT,    Integer.toString(rateLimit));
 
             // export tab filter count
             p.setProperty(SERIALIZE_TAB_COUNT,     Integer.toString(tabManagers.size()));
@@ -271,6 +304,14 @@ public final class LogTopComponent extends TopComponent {
         if (SERIALIZE_VERSION_CURRENT.equals(version)) {
             String filterString = p.getProperty(SERIALIZE_FILTER_STRING, "");
             String filterLevel  = p.getProperty(SERIALIZE_FILTER_LEVEL,  LogLevel.VERBOSE.toString());
+            String limit        = p.getProperty(SERIALIZE_RATE_LIMIT,    "0");
+            
+            // global rate limit per tag, applied when the reader is created
+            try {
+                rateLimit = Integer.parseInt(limit);
+            }
+            catch(NumberFormatException e) {
+            }
             
             // apply filter string
             if (filterString != null) {
@@ -335,6 +376,9 @@ public final class LogTopComponent extends TopComponent {
 
             if (reader == null) {
                 reader = new LogReader();
+                if (rateLimit > 0) {
+                    reader.setRateLimiter(new TagRateLimiter(rateLimit));
+                }
                 for (LogTableManager manager : tabManagers) {
                     reader.addLogListener(manager);
                 }
@@ -366,6 +410,10 @@ public final class LogTopComponent extends TopComponent {
             reader.stopReading();
             reader.removeAllLogListeners();
         }
+        else {
+            // the reader may wait for the device to reconnect
+            reader.stopReading();
+        }
 
         timer.cancel();
     }
@@ -387,6 +435,8 @@ public final class LogTopComponent extends TopComponent {
         removeTabButton = new javax.swing.JButton();
         autoScrollToggleButton = new javax.swing.JToggleButton();
         clearButton = new javax.swing.JButton();
+        rateLimitButton = new javax.swing.JButton();
+        incidentsButton = new javax.swing.JButton();
         panFilterTools = new javax.swing.JPanel();
         lDeviceStatusIcon = new javax.swing.JLabel();
         cmbLogDevices = new javax.swing.JComboBox();
@@ -477,6 +527,33 @@ public final class LogTopComponent extends TopComponent {
         });
         tbLeft.add(clearButton);
 
+        rateLimitButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/org/nyerel/nbandroid/logcat/resources/bt_rate_limit.png"))); // NOI18N
+        org.openide.awt.Mnemonics.setLocalizedText(rateLimitButton, org.openide.util.NbBundle.getMessage(LogTopComponent.class, "LogTopComponent.rateLimitButton.text")); // NOI18N
+        rateLimitButton.setToolTipText(org.openide.util.NbBundle.getMessage(LogTopComponent.class, "LogTopComponent.rateLimitButton.toolTipText")); // NOI18N
+        rateLimitButton.setFocusable(false);
+        rateLimitButton.setHorizontalTextPosition(javax.swing.SwingConstants.CENTER);
+        rateLimitButton.setVerticalTextPosition(javax.swing.SwingConstants.BOTTOM);
+        rateLimitButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                rateLimitButtonActionPerformed(evt);
+            }
+        });
+        tbLeft.add(rateLimitButton);
+
+        incidentsButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/org/nyerel/nbandroid/logcat/resources/bt_incidents.png"))); // NOI18N
+        org.openide.awt.Mnemonics.setLocalizedText(incidentsButton, org.openide.util.NbBundle.getMessage(LogTopComponent.class, "LogTopComponent.incidentsButton.text")); // NOI18N
+        incidentsButton.setToolTipText(org.openide.util.NbBundle.getMessage(LogTopComponent.class, "LogTopComponent.incidentsButton.toolTipText")); // NOI18N
+        incidentsButton.setEnabled(false);
+        incidentsButton.setFocusable(false);
+        incidentsButton.setHorizontalTextPosition(javax.swing.SwingConstants.CENTER);
+        incidentsButton.setVerticalTextPosition(javax.swing.SwingConstants.BOTTOM);
+        incidentsButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                incidentsButtonActionPerformed(evt);
+            }
+        });
+        tbLeft.add(incidentsButton);
+
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
         gridBagConstraints.gridy = 0;
@@ -616,6 +693,66 @@ public final class LogTopComponent extends TopComponent {
         }
     }//GEN-LAST:event_clearButtonActionPerformed
 
+    private void rateLimitButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_rateLimitButtonActionPerformed
+        JSpinner spinner = new JSpinner(new SpinnerNumberModel(rateLimit, 0, Integer.MAX_VALUE, 10));
+        JPanel limitPanel = new JPanel(new BorderLayout(6, 0));
+        limitPanel.add(new JLabel(NbBundle.getMessage(LogTopComponent.class, "RateLimit.limit")), BorderLayout.CENTER);
+        limitPanel.add(spinner, BorderLayout.EAST);
+
+        StringBuilder suppressed = new StringBuilder("<html>");
+        if (reader != null) {
+            appendSuppressed(suppressed, NbBundle.getMessage(LogTopComponent.class, "RateLimit.suppressed"),
+                    reader.getSuppressedEntryCounts());
+        }
+        LogTableManager manager = tabPane.getSelectedIndex() >= 0 ? tabManagers.get(tabPane.getSelectedIndex()) : null;
+        if (manager != null && manager.getModel().getFilter().getRateLimit() > 0) {
+            appendSuppressed(suppressed, NbBundle.getMessage(LogTopComponent.class, "RateLimit.suppressedFilter",
+                    HtmlUtil.htmlEscape(manager.getModel().getFilter().getName())),
+                    manager.getModel().getSuppressedEntryCounts());
+        }
+
+        int result = JOptionPane.showConfirmDialog(
+                                    this,
+                                    new Object[] {limitPanel, new JLabel(suppressed.toString())},
+                                    NbBundle.getMessage(LogTopComponent.class, "RateLimit.title"),
+                                    JOptionPane.OK_CANCEL_OPTION,
+                                    JOptionPane.PLAIN_MESSAGE
+        );
+
+        if (result == JOptionPane.OK_OPTION) {
+            setRateLimit(((Number) spinner.getValue()).intValue());
+        }
+    }//GEN-LAST:event_rateLimitButtonActionPerformed
+
+    private void incidentsButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_incidentsButtonActionPerformed
+        List<LogIncident> incidents = getIncidents();
+        if (incidents.isEmpty()) {
+            return;
+        }
+
+        // the most recent incident first
+        JPopupMenu menu = new JPopupMenu();
+        for (int i = incidents.size(); --i >= Math.max(incidents.size() - INCIDENTS_MENU_SIZE, 0);) {
+            final LogIncident incident = incidents.get(i);
+            JMenuItem item = new JMenuItem(NbBundle.getMessage(LogTopComponent.class, "Incidents.item",
+                    new Object[] {
+                        incident.getTime(),
+                        NbBundle.getMessage(LogTopComponent.class, "LogIncident." + incident.getType()),
+                        incident.getProcessName(),
+                        incident.getFirstEvent().getMessage()}));
+            item.addActionListener(new ActionListener() {
+
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    showIncident(incident);
+                }
+            });
+            menu.add(item);
+        }
+
+        menu.show(incidentsButton, incidentsButton.getWidth(), 0);
+    }//GEN-LAST:event_incidentsButtonActionPerformed
+
     private void tabPaneStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_tabPaneStateChanged
 
         JScrollPane sPane = (JScrollPane) tabPane.getSelectedComponent();
@@ -737,9 +874,11 @@ public final class LogTopComponent extends TopComponent {
     private javax.swing.JToggleButton btLogLevelWarn;
     private javax.swing.JButton clearButton;
     private javax.swing.JComboBox cmbLogDevices;
+    private javax.swing.JButton incidentsButton;
     private javax.swing.JLabel lDeviceStatusIcon;
     private javax.swing.JPanel panCenter;
     private javax.swing.JPanel panFilterTools;
+    private javax.swing.JButton rateLimitButton;
     private javax.swing.JButton removeTabButton;
     private javax.swing.JTabbedPane tabPane;
     private javax.swing.JToolBar tbLeft;
@@ -764,6 +903,100 @@ public final class LogTopComponent extends TopComponent {
     }
 
 
+    /**
+     * Set the maximum number of entries per second read from a single tag.
+     * @param limit the limit or 0 to read all entries
+     */
+    private void setRateLimit(int limit) {
+        rateLimit = Math.max(limit, 0);
+
+        if (reader != null) {
+            reader.setRateLimiter(rateLimit > 0 ? new TagRateLimiter(rateLimit) : null);
+        }
+    }
+
+
+    /**
+     * Crashes, ANRs and native crashes found in the log of the current device.
+     */
+    private List<LogIncident> getIncidents() {
+        if (reader == null || reader.getCurrentDevice() == null) {
+            return Collections.emptyList();
+        }
+
+        return reader.getIncidentsForDevice(reader.getCurrentDevice());
+    }
+
+
+    private void updateIncidentsButton() {
+        int count = getIncidents().size();
+        incidentsButton.setEnabled(count > 0);
+        incidentsButton.setToolTipText(count > 0
+                ? NbBundle.getMessage(LogTopComponent.class, "Incidents.count", count)
+                : NbBundle.getMessage(LogTopComponent.class, "LogTopComponent.incidentsButton.toolTipText"));
+    }
+
+
+    /**
+     * Select the first line of the incident in the current tab. When the tab
+     * doesn't show it, all lines of the incident are shown in a dialog.
+     */
+    private void showIncident(LogIncident incident) {
+        int index = tabPane.getSelectedIndex();
+        if (index >= 0) {
+            // stop following new entries, they would scroll the incident away
+            autoScrollToggleButton.setSelected(false);
+
+            if (tabManagers.get(index).showEvent(incident.getFirstEvent())) {
+                return;
+            }
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (LogEvent event : incident.getEvents()) {
+            text.append(event.getMessage()).append('\n');
+        }
+
+        JTextArea area = new JTextArea(text.toString(), 20, 80);
+        area.setEditable(false);
+        area.setCaretPosition(0);
+        JOptionPane.showMessageDialog(
+                                this,
+                                new JScrollPane(area),
+                                NbBundle.getMessage(LogTopComponent.class, "Incidents.title",
+                                        NbBundle.getMessage(LogTopComponent.class, "LogIncident." + incident.getType()),
+                                        incident.getProcessName()),
+                                JOptionPane.PLAIN_MESSAGE
+        );
+    }
+
+
+    /**
+     * Add a list of the tags with the most suppressed entries to the given HTML text.
+     */
+    private static void appendSuppressed(StringBuilder html, String title, Map<String, Long> counts) {
+        html.append("<b>").append(title).append("</b><br/>");
+
+        if (counts.isEmpty()) {
+            html.append(NbBundle.getMessage(LogTopComponent.class, "RateLimit.noneSuppressed")).append("<br/>");
+            return;
+        }
+
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+
+            @Override
+            public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
+                return e2.getValue().compareTo(e1.getValue());
+            }
+        });
+
+        for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(entries.size(), RATE_LIMIT_MAX_TAGS))) {
+            html.append(HtmlUtil.htmlEscape(entry.getKey())).append(": ").append(entry.getValue()).append("<br/>");
+        }
+    }
+
+
     private void addTable(LogFilter filter) {
         LogTableModel model = new LogTableModel(filter);
         JTable table = new JTable(model);
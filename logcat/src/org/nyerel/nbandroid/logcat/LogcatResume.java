@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import com.android.ddmlib.IDevice;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers how far the logcat output of each device was read, so a reconnect
+ * continues there instead of reading the whole log buffer of the device again.
+ * The position is kept by serial number, so it survives reconnects of a device.
+ * <p>
+ * Devices with API level 21 or newer start logcat at the last position using {@code -T},
+ * the replayed history of older devices is skipped while reading.
+ */
+public class LogcatResume {
+
+    /** First API level whose logcat supports {@code -T <time>}. */
+    private static final int LOGCAT_SINCE_API_LEVEL = 21;
+
+    private static final String LOGCAT_COMMAND = "logcat -v long";
+
+    /** Timestamp of the last read entry and the number of read entries with that timestamp. */
+    private static final class Position {
+        final String timestamp;
+        final int count;
+
+        Position(String timestamp, int count) {
+            this.timestamp = timestamp;
+            this.count = count;
+        }
+    }
+
+    private final Map<String, Position> positions = new ConcurrentHashMap<String, Position>();
+
+    /**
+     * Start reading the log of a device.
+     * @param device the logged device
+     * @return the session deciding about the entries of this connection
+     */
+    public Session start(IDevice device) {
+        return start(device.getSerialNumber(), supportsLogcatSince(device));
+    }
+
+    /**
+     * Start reading the log of a device.
+     * @param serial          serial number of the device
+     * @param supportsSince   whether the logcat of the device accepts {@code -T}
+     * @return the session deciding about the entries of this connection
+     */
+    public Session start(String serial, boolean supportsSince) {
+        return new Session(serial, positions.get(serial), supportsSince);
+    }
+
+    static boolean supportsLogcatSince(IDevice device) {
+        String apiLevel = device.getProperty(IDevice.PROP_BUILD_API_LEVEL);
+        if (apiLevel == null) {
+            return false;
+        }
+
+        try {
+            return Integer.parseInt(apiLevel.trim()) >= LOGCAT_SINCE_API_LEVEL;
+        }
+        catch(NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * One connection to the logcat of a device.
+     * Not thread safe, it is used by the receiver of the connection only.
+     */
+    public final class Session {
+
+        private final String serial;
+        private final String command;
+        /** Position to skip to, {@code null} once the replayed history was passed. */
+        private Position skipTo;
+        /** Number of skipped entries with the timestamp of {@link #skipTo}. */
+        private int skippedAtPosition = 0;
+
+        private Session(String serial, Position resumeAt, boolean supportsSince) {
+            this.serial = serial;
+            this.skipTo = resumeAt;
+            if (resumeAt != null && supportsSince) {
+                // -T includes the entries of the given time, they are skipped below
+                command = LOGCAT_COMMAND + " -T '" + resumeAt.timestamp + "'";
+            } else {
+                command = LOGCAT_COMMAND;
+            }
+        }
+
+        /**
+         * The shell command to run for this connection.
+         */
+        public String getCommand() {
+            return command;
+        }
+
+        /**
+         * Decide about the entry with the given header timestamp and remember it as read.
+         * @param timestamp the timestamp returned by {@link LogLineParser#getLastTimestamp}
+         * @return {@code true}, if the entry was already read before the reconnect
+         *         and should be skipped.
+         */
+        public boolean isReplayed(String timestamp) {
+            if (skipTo != null) {
+                int cmp = LogLineParser.compareTimestamps(timestamp, skipTo.timestamp);
+                if (cmp < 0) {
+                    return true;
+                }
+                if (cmp == 0 && skippedAtPosition < skipTo.count) {
+                    skippedAtPosition++;
+                    return true;
+                }
+                skipTo = null;
+            }
+
+            // entries of the buffers are not strictly ordered, the position only moves forward
+            Position last = positions.get(serial);
+            int cmp = last != null ? LogLineParser.compareTimestamps(timestamp, last.timestamp) : 1;
+            if (cmp == 0) {
+                positions.put(serial, new Position(timestamp, last.count + 1));
+            } else if (cmp > 0) {
+                positions.put(serial, new Position(timestamp, 1));
+            }
+            return false;
+        }
+    }
+}
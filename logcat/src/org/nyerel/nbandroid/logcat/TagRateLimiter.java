@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-tag token bucket limiting the number of log entries a single tag may produce.
+ * Every tag may log {@code entriesPerSecond} entries per second on average and up to
+ * {@code burst} entries at once. Entries over the limit are dropped, except every
+ * {@code sampleEvery}-th one, so the user still sees a sample of a log storm.
+ * <p>
+ * The limiter is thread safe.
+ */
+public class TagRateLimiter {
+
+    /** Default for {@code sampleEvery}, every n-th entry over the limit is still accepted. */
+    public static final int DEFAULT_SAMPLE_EVERY = 100;
+
+    /** Result of {@link #accept}, when the entry should be dropped. */
+    public static final long REJECTED = -1;
+
+    private static final class Bucket {
+        double tokens;
+        long lastRefill;
+        long overLimit;
+        long pending;
+        long total;
+    }
+
+    private final int entriesPerSecond;
+    private final int burst;
+    private final int sampleEvery;
+    private final Map<String, Bucket> buckets = new HashMap<String, Bucket>();
+
+    /**
+     * Limiter allowing bursts of {@code entriesPerSecond} entries and sampling
+     * every {@link #DEFAULT_SAMPLE_EVERY}-th entry over the limit.
+     */
+    public TagRateLimiter(int entriesPerSecond) {
+        this(entriesPerSecond, entriesPerSecond, DEFAULT_SAMPLE_EVERY);
+    }
+
+    /**
+     * @param entriesPerSecond average number of entries accepted per tag and second
+     * @param burst            number of entries a tag may log at once
+     * @param sampleEvery      accept every n-th entry over the limit, 0 to drop all of them
+     */
+    public TagRateLimiter(int entriesPerSecond, int burst, int sampleEvery) {
+        if (entriesPerSecond <= 0) {
+            throw new IllegalArgumentException("entriesPerSecond must be positive: " + entriesPerSecond);
+        }
+        this.entriesPerSecond = entriesPerSecond;
+        this.burst = Math.max(burst, 1);
+        this.sampleEvery = Math.max(sampleEvery, 0);
+    }
+
+    public int getEntriesPerSecond() {
+        return entriesPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    /**
+     * Decide whether the next entry of the given tag should be kept.
+     * @param tag  tag of the entry
+     * @param now  current time in milliseconds
+     * @return {@link #REJECTED} when the entry should be dropped, otherwise the number
+     *         of entries of the tag suppressed since its previous kept entry. This is used
+     *         to tell the user about a log storm once it is over.
+     */
+    public long accept(String tag, long now) {
+        synchronized (buckets) {
+            Bucket b = buckets.get(tag);
+            if (b == null) {
+                b = new Bucket();
+                b.tokens = burst;
+                b.lastRefill = now;
+                buckets.put(tag, b);
+            }
+
+            if (now > b.lastRefill) {
+                b.tokens = Math.min(burst, b.tokens + (now - b.lastRefill) * entriesPerSecond / 1000.0);
+                b.lastRefill = now;
+            }
+
+            if (b.tokens >= 1) {
+                b.tokens -= 1;
+                long recovered = b.pending;
+                b.pending = 0;
+                return recovered;
+            }
+
+            b.overLimit++;
+            if (sampleEvery > 0 && b.overLimit % sampleEvery == 0) {
+                return 0;
+            }
+
+            b.pending++;
+            b.total++;
+            return REJECTED;
+        }
+    }
+
+    /** Number of entries suppressed for each tag since the last {@link #reset}. */
+    public Map<String, Long> getSuppressedCounts() {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        synchronized (buckets) {
+            for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+                if (entry.getValue().total > 0) {
+                    counts.put(entry.getKey(), entry.getValue().total);
+                }
+            }
+        }
+        return counts;
+    }
+
+    public void reset() {
+        synchronized (buckets) {
+            buckets.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[TagRateLimiter entriesPerSecond=" + entriesPerSecond + " burst=" + burst + " sampleEvery=" + sampleEvery + "]";
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat.collector;
+
+import com.android.ddmlib.AndroidDebugBridge;
+import com.android.ddmlib.AndroidDebugBridge.IDeviceChangeListener;
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.MultiLineReceiver;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.nyerel.nbandroid.logcat.DeviceProcessNames;
+import org.nyerel.nbandroid.logcat.LogEvent;
+import org.nyerel.nbandroid.logcat.LogEventFilter;
+import org.nyerel.nbandroid.logcat.LogEventInfo;
+import org.nyerel.nbandroid.logcat.LogLineParser;
+import org.nyerel.nbandroid.logcat.LogcatResume;
+import org.nyerel.nbandroid.logcat.TagRateLimiter;
+
+/**
+ * Command line collector writing the logcat output of attached devices into
+ * segment files, without running the IDE. Useful on build machines and device farms.
+ * <p>
+ * Usage:
+ * <pre>
+ * java -cp logcat.jar:ddmlib.jar org.nyerel.nbandroid.logcat.collector.LogCollector
+ *      -o &lt;dir&gt; [-adb &lt;path&gt;] [-s &lt;serial&gt;] [-t &lt;tag&gt;]
+ *      [-l &lt;level&gt;] [-n &lt;events per segment&gt;] [-r &lt;entries per second and tag&gt;]
+ * </pre>
+ * Invalid arguments exit with status {@value #EXIT_USAGE}.
+ * There is no process filter, the bridge runs without client support and does not know
+ * the process names. A reconnected device continues after the last entry already written.
+ * The events are not kept in memory, each line goes straight through
+ * the parser, rate limiter and filter into the {@link LogSegmentWriter} of its device.
+ * The written segments can be loaded by {@link LogSegmentReader}.
+ */
+public class LogCollector {
+
+    private static final Logger LOG = Logger.getLogger(LogCollector.class.getName());
+
+    private static final int DEFAULT_EVENTS_PER_SEGMENT = 100000;
+
+    /** Exit status of an invalid invocation. */
+    static final int EXIT_USAGE = 2;
+
+    private final File outputDir;
+    private final String serial;
+    private final LogEventFilter filter;
+    private final int eventsPerSegment;
+    private final int rateLimit;
+
+    private final DeviceProcessNames processNames = new DeviceProcessNames();
+    private final LogcatResume resume = new LogcatResume();
+    private final Map<String, LogSegmentWriter> writers = new HashMap<String, LogSegmentWriter>();
+    private volatile boolean stopped = false;
+
+    private final IDeviceChangeListener deviceListener = new IDeviceChangeListener() {
+
+        @Override
+        public void deviceConnected(IDevice device) {
+            startTail(device);
+        }
+
+        @Override
+        public void deviceDisconnected(IDevice device) {
+        }
+
+        @Override
+        public void deviceChanged(IDevice device, int changeMask) {
+            if ((changeMask & IDevice.CHANGE_STATE) != 0) {
+                startTail(device);
+            }
+        }
+    };
+
+    public LogCollector(File outputDir, String serial, LogEventFilter filter, int eventsPerSegment, int rateLimit) {
+        this.outputDir = outputDir;
+        this.serial = serial;
+        this.filter = filter;
+        this.eventsPerSegment = eventsPerSegment;
+        this.rateLimit = rateLimit;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File out = null;
+        String adbLocation = "adb";
+        String serial = null;
+        String tag = null;
+        LogLevel level = null;
+        int eventsPerSegment = DEFAULT_EVENTS_PER_SEGMENT;
+        int rate = 0;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if ("-o".equals(arg)) {
+                    out = new File(args[++i]);
+                } else if ("-adb".equals(arg)) {
+                    adbLocation = args[++i];
+                } else if ("-s".equals(arg)) {
+                    serial = args[++i];
+                } else if ("-t".equals(arg)) {
+                    tag = args[++i];
+                } else if ("-l".equals(arg)) {
+                    level = parseLevel(args[++i]);
+                } else if ("-n".equals(arg)) {
+                    eventsPerSegment = Integer.parseInt(args[++i]);
+                } else if ("-r".equals(arg)) {
+                    rate = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+        } catch (RuntimeException e) {
+            usage(e.getMessage());
+            System.exit(EXIT_USAGE);
+        }
+
+        if (out == null) {
+            usage("Missing output directory");
+            System.exit(EXIT_USAGE);
+        }
+        if (!out.isDirectory() && !out.mkdirs()) {
+            usage("Cannot create output directory " + out);
+            System.exit(EXIT_USAGE);
+        }
+
+        LogEventFilter filter = null;
+        if (tag != null || level != null) {
+            filter = new LogEventFilter(tag, null, level);
+        }
+
+        final LogCollector collector = new LogCollector(out, serial, filter, eventsPerSegment, rate);
+
+        AndroidDebugBridge.init(false);
+        AndroidDebugBridge bridge = AndroidDebugBridge.createBridge(adbLocation, false);
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+
+            @Override
+            public void run() {
+                collector.stop();
+                AndroidDebugBridge.terminate();
+            }
+        });
+
+        collector.start(bridge);
+        // the tail threads do the work, the shutdown hook stops them
+        synchronized (collector) {
+            while (!collector.stopped) {
+                collector.wait();
+            }
+        }
+    }
+
+    /**
+     * Start collecting the logs of all devices attached to the given bridge, now and later.
+     */
+    public void start(AndroidDebugBridge bridge) {
+        AndroidDebugBridge.addDeviceChangeListener(deviceListener);
+
+        for (IDevice device : bridge.getDevices()) {
+            startTail(device);
+        }
+    }
+
+    /**
+     * Stop all tails and close the segments.
+     * The receivers are cancelled first, lines they are still processing are dropped
+     * by the closed writers instead of starting new segments.
+     */
+    public void stop() {
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+        }
+
+        AndroidDebugBridge.removeDeviceChangeListener(deviceListener);
+
+        synchronized (writers) {
+            for (LogSegmentWriter writer : writers.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Cannot close log segment", e);
+                }
+            }
+            writers.clear();
+        }
+    }
+
+    private void startTail(final IDevice device) {
+        if (stopped || !device.isOnline()) {
+            return;
+        }
+        if (serial != null && !serial.equals(device.getSerialNumber())) {
+            return;
+        }
+
+        final LogSegmentWriter writer;
+        synchronized (writers) {
+            if (writers.containsKey(device.getSerialNumber())) {
+                // already tailing this device
+                return;
+            }
+            writer = new LogSegmentWriter(outputDir, device.getSerialNumber(), eventsPerSegment);
+            writers.put(device.getSerialNumber(), writer);
+        }
+
+        // a reconnected device continues after the last written entry
+        final LogcatResume.Session session = resume.start(device);
+
+        Thread tail = new Thread("logcat " + device.getSerialNumber()) {
+
+            @Override
+            public void run() {
+                try {
+                    device.executeShellCommand(session.getCommand(),
+                            new CollectorReceiver(device, writer, session), 0);
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Logging of " + device.getSerialNumber() + " stopped", e);
+                } finally {
+                    synchronized (writers) {
+                        if (writers.remove(device.getSerialNumber()) != null) {
+                            try {
+                                writer.close();
+                            } catch (IOException e) {
+                                LOG.log(Level.WARNING, "Cannot close log segment", e);
+                            }
+                        }
+                    }
+                }
+            }
+        };
+        tail.setDaemon(true);
+        tail.start();
+    }
+
+    private static LogLevel parseLevel(String value) {
+        LogLevel level = LogLevel.getByString(value.toLowerCase());
+        if (level == null) {
+            level = LogLevel.getByLetterString(value.toUpperCase());
+        }
+        if (level == null) {
+            throw new IllegalArgumentException("Unknown level " + value);
+        }
+        return level;
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: LogCollector -o <dir> [-adb <path>] [-s <serial>] [-t <tag>]"
+                + " [-l <level>] [-n <events per segment>] [-r <entries per second and tag>]");
+    }
+
+    private final class CollectorReceiver extends MultiLineReceiver {
+
+        private final LogSegmentWriter writer;
+        private final LogLineParser parser;
+        private final TagRateLimiter limiter;
+        private final LogcatResume.Session session;
+        private boolean lastEntrySuppressed = false;
+
+        CollectorReceiver(IDevice device, LogSegmentWriter writer, LogcatResume.Session session) {
+            setTrimLine(false);
+            this.writer = writer;
+            this.session = session;
+            this.parser = new LogLineParser(processNames.forDevice(device));
+            this.limiter = rateLimit > 0 ? new TagRateLimiter(rateLimit, rateLimit, 0) : null;
+        }
+
+        @Override
+        public void processNewLines(String[] lines) {
+            if (stopped) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+
+            try {
+                for (String line : lines) {
+                    if (line.length() == 0) {
+                        continue;
+                    }
+
+                    LogEventInfo header = parser.parseHeader(line);
+                    if (header != null) {
+                        if (session.isReplayed(parser.getLastTimestamp())) {
+                            // written before the reconnect
+                            lastEntrySuppressed = true;
+                            continue;
+                        }
+                        lastEntrySuppressed = limiter != null
+                                && header.getLevel().getPriority() < LogLevel.ERROR.getPriority()
+                                && limiter.accept(header.getTag(), now) == TagRateLimiter.REJECTED;
+                        continue;
+                    }
+
+                    if (lastEntrySuppressed) {
+                        continue;
+                    }
+
+                    LogEvent event = parser.parseMessage(line);
+                    if (event != null && (filter == null || filter.satisfy(event))) {
+                        writer.write(event);
+                    }
+                }
+                writer.flush();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Cannot write log segment", e);
+                stop();
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return stopped;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat.collector;
+
+import com.android.ddmlib.Log.LogLevel;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.nyerel.nbandroid.logcat.LogEvent;
+import org.nyerel.nbandroid.logcat.LogEventInfo;
+import org.nyerel.nbandroid.logcat.LogEventStore;
+
+/**
+ * Loads segments written by {@link LogSegmentWriter} back into a {@link LogEventStore},
+ * e.g. to show a log collected on a build machine in the IDE.
+ */
+public class LogSegmentReader {
+
+    private LogSegmentReader() {
+    }
+
+    /**
+     * Read all events of a segment into the store.
+     * A segment truncated by a killed collector is read up to the last complete record.
+     * @return the serial number of the device the segment belongs to
+     */
+    public static String read(File segment, LogEventStore store) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(segment))));
+        try {
+            if (in.readInt() != LogSegmentWriter.MAGIC) {
+                throw new IOException("Not a logcat segment: " + segment);
+            }
+
+            int version = in.readByte();
+            if (version != LogSegmentWriter.VERSION) {
+                throw new IOException("Unsupported segment version " + version + ": " + segment);
+            }
+
+            String device = in.readUTF();
+            List<String> strings = new ArrayList<String>();
+            LogEventInfo info = null;
+
+            try {
+                int record;
+                while ((record = in.read()) != -1) {
+                    switch (record) {
+                        case LogSegmentWriter.RECORD_STRING:
+                            strings.add(in.readUTF());
+                            break;
+
+                        case LogSegmentWriter.RECORD_EVENT:
+                            int pid = readVarInt(in);
+                            LogLevel level = LogLevel.getByLetter((char) in.readByte());
+                            String tag = strings.get(readVarInt(in));
+                            int processId = readVarInt(in);
+                            String process = processId > 0 ? strings.get(processId - 1) : null;
+                            String time = in.readUTF();
+                            info = new LogEventInfo(pid, new String[]{process}, time, tag, level);
+                            store.add(device, new LogEvent(info, in.readUTF()));
+                            break;
+
+                        case LogSegmentWriter.RECORD_CONTINUATION:
+                            if (info == null) {
+                                throw new IOException("Continuation without event in " + segment);
+                            }
+                            store.add(device, new LogEvent(info, in.readUTF()));
+                            break;
+
+                        default:
+                            throw new IOException("Unknown record " + record + " in " + segment);
+                    }
+                }
+            } catch (EOFException e) {
+                // truncated segment, keep what was read so far
+            }
+
+            return device;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
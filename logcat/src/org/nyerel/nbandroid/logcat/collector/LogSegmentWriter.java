@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat.collector;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.nyerel.nbandroid.logcat.LogEvent;
+
+/**
+ * Writes the log events of one device into a sequence of compact segment files.
+ * <p>
+ * A segment is a gzip compressed stream starting with {@link #MAGIC}, {@link #VERSION}
+ * and the serial number of the device, followed by records:
+ * <ul>
+ * <li>{@link #RECORD_STRING} defines the next entry of the string table used for tags and process names,</li>
+ * <li>{@link #RECORD_EVENT} is an event with its own header: pid, level letter, tag id, process id, time, message,</li>
+ * <li>{@link #RECORD_CONTINUATION} is another message line of the previous entry.</li>
+ * </ul>
+ * Numbers are written as variable length integers, strings in modified UTF-8.
+ *
+ * @see LogSegmentReader
+ */
+public class LogSegmentWriter implements Closeable {
+
+    static final int MAGIC              = 0x4E424C53; // NBLS
+    static final int VERSION            = 1;
+
+    static final int RECORD_STRING      = 1;
+    static final int RECORD_EVENT       = 2;
+    static final int RECORD_CONTINUATION = 3;
+
+    static final String SEGMENT_SUFFIX  = ".seg";
+
+    private final File directory;
+    private final String device;
+    private final int maxEventsPerSegment;
+
+    private DataOutputStream out;
+    private int segmentNumber = 0;
+    private int eventsInSegment;
+    private Map<String, Integer> strings;
+    private LogEvent lastEvent;
+    private boolean closed = false;
+
+    /**
+     * @param directory           where to create the segments
+     * @param device              serial number of the logged device
+     * @param maxEventsPerSegment number of events after which a new segment is started
+     */
+    public LogSegmentWriter(File directory, String device, int maxEventsPerSegment) {
+        this.directory = directory;
+        this.device = device;
+        this.maxEventsPerSegment = maxEventsPerSegment;
+    }
+
+    /**
+     * Write an event, starting a new segment when needed.
+     * Events written after {@link #close} are ignored.
+     */
+    public synchronized void write(LogEvent event) throws IOException {
+        if (closed) {
+            return;
+        }
+
+        if (out == null || eventsInSegment >= maxEventsPerSegment) {
+            startSegment();
+        }
+
+        if (lastEvent != null && sameEntry(lastEvent, event)) {
+            out.writeByte(RECORD_CONTINUATION);
+            out.writeUTF(event.getMessage());
+        } else {
+            int tagId = stringId(event.getTag());
+            String process = event.getProcessNameRef()[0];
+            int processId = process != null ? stringId(process) + 1 : 0;
+
+            out.writeByte(RECORD_EVENT);
+            writeVarInt(event.getPid());
+            out.writeByte(event.getLevel().getPriorityLetter());
+            writeVarInt(tagId);
+            writeVarInt(processId);
+            out.writeUTF(event.getTime());
+            out.writeUTF(event.getMessage());
+        }
+
+        lastEvent = event;
+        eventsInSegment++;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Close the current segment, no further segments are started.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        closeSegment();
+    }
+
+    /** Name of the n-th segment of a device. */
+    static String segmentName(String device, int number) {
+        return "logcat-" + device.replaceAll("[^\\w.-]", "_") + "-" + String.format("%05d", number) + SEGMENT_SUFFIX;
+    }
+
+    private void closeSegment() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void startSegment() throws IOException {
+        closeSegment();
+
+        File segment;
+        do {
+            segment = new File(directory, segmentName(device, segmentNumber++));
+        } while (segment.exists());
+
+        out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(segment))));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(device);
+
+        strings = new HashMap<String, Integer>();
+        eventsInSegment = 0;
+        lastEvent = null;
+    }
+
+    private int stringId(String value) throws IOException {
+        Integer id = strings.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.put(value, id);
+            out.writeByte(RECORD_STRING);
+            out.writeUTF(value);
+        }
+        return id;
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static boolean sameEntry(LogEvent a, LogEvent b) {
+        return a.getPid() == b.getPid()
+                && a.getLevel() == b.getLevel()
+                && a.getTime().equals(b.getTime())
+                && a.getTag().equals(b.getTag());
+    }
+}
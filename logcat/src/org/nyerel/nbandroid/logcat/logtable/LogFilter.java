@@ -16,6 +16,7 @@ package org.nyerel.nbandroid.logcat.logtable;
 import com.android.ddmlib.Log.LogLevel;
 import java.util.Properties;
 import org.nyerel.nbandroid.logcat.LogEvent;
+import org.nyerel.nbandroid.logcat.LogEventFilter;
 import org.openide.util.NbBundle;
 /**
  *
@@ -27,12 +28,15 @@ public class LogFilter {
     private final static String SERIALIZE_TAG       = "tag";
     private final static String SERIALIZE_PROCESS   = "process";
     private final static String SERIALIZE_LEVEL     = "level";
+    private final static String SERIALIZE_RATE_LIMIT = "ratelimit";
 
     private final String name;
     private final String filterTag;
     private final String filterProcess;
     private final int filterPid;
     private final LogLevel filterLevel;
+    private final int rateLimit;
+    private final LogEventFilter criteria;
 
 
     public static LogFilter createDefaultTab() {
@@ -46,24 +50,22 @@ public class LogFilter {
 
 
     public LogFilter(String name, String filterTag, String filterProcess, LogLevel filterLevel) {
+        this(name, filterTag, filterProcess, filterLevel, 0);
+    }
+
+
+    /**
+     * @param rateLimit maximum number of entries per second accepted from a single tag,
+     *                  or 0 to accept all entries.
+     */
+    public LogFilter(String name, String filterTag, String filterProcess, LogLevel filterLevel, int rateLimit) {
         this.name = name;
+        this.rateLimit = Math.max(rateLimit, 0);
         this.filterTag = filterTag;
         this.filterLevel = filterLevel;
         this.filterProcess = filterProcess;
-
-        if(filterProcess == null) {
-            this.filterPid = -1;
-        } else {
-            int pid = -1;
-            
-            try {
-                pid = Integer.parseInt(filterProcess);
-            }
-            catch(NumberFormatException e) {
-            }
-            
-            this.filterPid = pid;
-        }
+        this.criteria = new LogEventFilter(filterTag, filterProcess, filterLevel);
+        this.filterPid = criteria.getPid();
     }
     
     
@@ -85,6 +87,10 @@ public class LogFilter {
             p.put(prefix + "." + SERIALIZE_LEVEL, filterLevel.toString());
         }
         
+        if (rateLimit > 0) {
+            p.put(prefix + "." + SERIALIZE_RATE_LIMIT, Integer.toString(rateLimit));
+        }
+        
         return;
     }
     
@@ -97,7 +103,9 @@ public class LogFilter {
         String process  = p.getProperty(prefix + "." + SERIALIZE_PROCESS);
         String tag      = p.getProperty(prefix + "." + SERIALIZE_TAG);
         String lvlname  = p.getProperty(prefix + "." + SERIALIZE_LEVEL);
+        String rate     = p.getProperty(prefix + "." + SERIALIZE_RATE_LIMIT);
         LogLevel level  = null;
+        int rateLimit   = 0;
         
         if (lvlname != null) {
             try {
@@ -106,9 +114,17 @@ public class LogFilter {
             catch(IllegalArgumentException e) {
             }
         }
+        
+        if (rate != null) {
+            try {
+                rateLimit = Integer.parseInt(rate);
+            }
+            catch(NumberFormatException e) {
+            }
+        }
 
         if (name != null) {
-            return new LogFilter(name, tag, process, level);
+            return new LogFilter(name, tag, process, level, rateLimit);
         }
         
         return null;
@@ -116,26 +132,14 @@ public class LogFilter {
     
 
     public boolean satisfy(LogEvent event) {
+        return criteria.satisfy(event);
+    }
 
-        boolean ok = true;
-
-        if(filterTag != null) {
-            ok &= filterTag.equalsIgnoreCase(event.getTag());
-        }
-        
-        if (filterProcess != null) {
-            ok &= filterProcess.equalsIgnoreCase(event.getProcessName());
-        }
-
-        if(filterPid != -1) {
-            ok &= (filterPid == event.getPid());
-        }
-
-        if(filterLevel != null) {
-            ok &= (event.getLevel().getPriority() >= filterLevel.getPriority());
-        }
-
-        return ok;
+    /**
+     * The criteria of this filter, without the presentation in the log window.
+     */
+    public LogEventFilter getCriteria() {
+        return criteria;
     }
 
     public LogLevel getFilterLevel() {
@@ -158,6 +162,14 @@ public class LogFilter {
         return name;
     }
 
+    /**
+     * Maximum number of entries per second shown for a single tag in this filter.
+     * @return the limit or 0, if there is no limit.
+     */
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
 
     /**
      * creates a string describing the criterias of this filter.
@@ -182,12 +194,16 @@ public class LogFilter {
             description += "<br/>" + NbBundle.getMessage(this.getClass(), "LogCatColumn.level") + ": " + filterLevel;
         }
         
+        if (rateLimit > 0) {
+            description += "<br/>" + NbBundle.getMessage(this.getClass(), "LogCatFilter.rateLimit", rateLimit);
+        }
+        
         return description;
     }
 
 
     @Override
     public String toString() {
-        return "[LogFilter name=" + name + " tag=" + filterTag + " process=" + filterProcess + " pid=" + filterPid + " level=" + filterLevel + "]";
+        return "[LogFilter name=" + name + " tag=" + filterTag + " process=" + filterProcess + " pid=" + filterPid + " level=" + filterLevel + " rateLimit=" + rateLimit + "]";
     }
 }
@@ -87,6 +87,24 @@ public class LogTableManager implements LogListener, ChangeListener {
         });
     }
     
+    /**
+     * Select the row of the given event and scroll to it.
+     * @return {@code false}, if the event is not shown in this table
+     */
+    public boolean showEvent(LogEvent event) {
+        int row = model.indexOf(event);
+        if (row >= 0 && table.getRowSorter() != null) {
+            row = table.getRowSorter().convertRowIndexToView(row);
+        }
+        if (row < 0) {
+            return false;
+        }
+
+        table.getSelectionModel().setSelectionInterval(row, row);
+        table.scrollRectToVisible(table.getCellRect(row, 0, true));
+        return true;
+    }
+    
     public void addAllEvents(final Collection<LogEvent> events) {
         SwingUtilities.invokeLater(new Runnable() {
             @Override
@@ -19,11 +19,15 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 import org.openide.util.NbBundle;
 import org.nyerel.nbandroid.logcat.LogEvent;
 import org.nyerel.nbandroid.logcat.LogEventInfo;
+import org.nyerel.nbandroid.logcat.TagRateLimiter;
 
 /**
  *
@@ -44,8 +48,12 @@ public class LogTableModel extends AbstractTableModel {
     public static final String COL_TAG_NAME = "tag";
     public static final String COL_MESSAGE_NAME = "message";
 
+    private static final Pattern TIME_PATTERN = Pattern.compile("(\\d{2}):(\\d{2}):(\\d{2})\\.(\\d{3})");
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
     private List<LogEvent> data;
     private LogFilter filter;
+    private TagRateLimiter rateLimiter;
 
     public LogTableModel() {
         this(null);
@@ -54,6 +62,10 @@ public class LogTableModel extends AbstractTableModel {
     public LogTableModel(LogFilter filter) {
         this.data   = Collections.synchronizedList(new ArrayList<LogEvent>());
         this.filter = filter;
+        
+        if (filter != null && filter.getRateLimit() > 0) {
+            this.rateLimiter = new TagRateLimiter(filter.getRateLimit());
+        }
     }
 
 
@@ -114,6 +126,14 @@ public class LogTableModel extends AbstractTableModel {
         return data.get(rowIndex);
     }
 
+    /**
+     * Get the row of the given event.
+     * @return the row index or -1, if the event is not in this model
+     */
+    public int indexOf(LogEvent event) {
+        return data.indexOf(event);
+    }
+
     public void clear() {
         data.clear();
         fireTableDataChanged();
@@ -145,21 +165,47 @@ public class LogTableModel extends AbstractTableModel {
             return;
         }
 
+        int oldsize = data.size();
+        if (!acceptRate(event, System.currentTimeMillis())) {
+            return;
+        }
+
         if (event.getTime().equals("")) {
             event = changeTime(event);
         }
         data.add(event);
-        fireTableRowsInserted(data.size() - 1, data.size() - 1);
+        fireTableRowsInserted(oldsize, data.size() - 1);
     }
 
+    /**
+     * Add the history of a device at once.
+     * The rate limit is applied by the times of the entries, not by the time they arrive,
+     * entries logged over minutes are not taken as a burst.
+     */
     public void addNewEvents(Collection<? extends LogEvent> events) {
         int oldsize = data.size();
+        long now = System.currentTimeMillis();
+        long dayOffset = 0;
+        long lastTime = -1;
 
         for(LogEvent event : events) {
             if (filter != null && !filter.satisfy(event)) {
                 continue;
             }
 
+            long time = timeOfDay(event.getTime());
+            if (time >= 0) {
+                // the history passed midnight
+                if (lastTime >= 0 && time + dayOffset < lastTime - DAY_MILLIS / 2) {
+                    dayOffset += DAY_MILLIS;
+                }
+                time += dayOffset;
+                lastTime = time;
+            }
+            if (!acceptRate(event, time >= 0 ? time : now)) {
+                continue;
+            }
+
             if (event.getTime().equals("")) {
                 event = changeTime(event);
             }
@@ -174,6 +220,55 @@ public class LogTableModel extends AbstractTableModel {
         return;
     }
 
+    /**
+     * Milliseconds since midnight of an entry time {@code hh:mm:ss.mmm}.
+     * @return the milliseconds or -1, if the text is not such a time
+     */
+    static long timeOfDay(String time) {
+        Matcher m = TIME_PATTERN.matcher(time);
+        if (!m.matches()) {
+            return -1;
+        }
+
+        return ((Long.parseLong(m.group(1)) * 60 + Long.parseLong(m.group(2))) * 60
+                + Long.parseLong(m.group(3))) * 1000 + Long.parseLong(m.group(4));
+    }
+
+    /**
+     * Apply the rate limit of the filter on the given event.
+     * When a tag becomes quiet again after being throttled, an entry reporting
+     * the number of suppressed entries is added first.
+     */
+    private boolean acceptRate(LogEvent event, long now) {
+        if (rateLimiter == null || event.getLevel().getPriority() >= LogLevel.ERROR.getPriority()) {
+            return true;
+        }
+
+        long suppressed = rateLimiter.accept(event.getTag(), now);
+        if (suppressed == TagRateLimiter.REJECTED) {
+            return false;
+        }
+
+        if (suppressed > 0) {
+            LogEventInfo info = new LogEventInfo(0, new String[]{""}, event.getTime(), event.getTag(), LogLevel.INFO);
+            data.add(new LogEvent(info, NbBundle.getMessage(getClass(), "LogCatFilter.suppressed",
+                    suppressed, event.getTag(), rateLimiter.getEntriesPerSecond())));
+        }
+
+        return true;
+    }
+
+    /**
+     * Number of entries suppressed by the rate limit of this filter for each tag.
+     */
+    public Map<String, Long> getSuppressedEntryCounts() {
+        if (rateLimiter == null) {
+            return Collections.emptyMap();
+        }
+
+        return rateLimiter.getSuppressedCounts();
+    }
+
     public void showError(String errorMessage) {
         LogEventInfo info = new LogEventInfo(0, new String[]{""}, "LogCat Error", "-----", LogLevel.ERROR);
         LogEvent event = new LogEvent(info, errorMessage);
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test recognition of crashes, ANRs and native crashes.
+ */
+public class LogIncidentDetectorTest {
+
+    private static LogEvent event(int pid, String tag, LogLevel level, String message) {
+        return new LogEvent(new LogEventInfo(pid, new String[] {"com.example"}, "12:00:00.000", tag, level), message);
+    }
+
+    @Test
+    public void testFatalException() {
+        LogIncidentDetector detector = new LogIncidentDetector("emulator-5554");
+        assertNull(detector.process(event(100, "ActivityThread", LogLevel.INFO, "Starting activity")));
+
+        LogIncident crash = detector.process(event(100, "AndroidRuntime", LogLevel.ERROR, "FATAL EXCEPTION: main"));
+        assertNotNull(crash);
+        assertEquals(LogIncident.Type.CRASH, crash.getType());
+        assertEquals("emulator-5554", crash.getDevice());
+        assertEquals(100, crash.getPid());
+
+        assertNull(detector.process(event(100, "AndroidRuntime", LogLevel.ERROR, "java.lang.NullPointerException")));
+        assertNull(detector.process(event(100, "AndroidRuntime", LogLevel.ERROR,
+                "\tat com.example.Main.onCreate(Main.java:42)")));
+        assertEquals(3, crash.getEvents().size());
+        assertEquals("com.example.Main", crash.getStackTraceElement().getClassName());
+        assertEquals(42, crash.getStackTraceElement().getLineNumber());
+        assertEquals(1, detector.getIncidents().size());
+    }
+
+    @Test
+    public void testAnr() {
+        LogIncidentDetector detector = new LogIncidentDetector("device");
+        LogIncident anr = detector.process(event(50, "ActivityManager", LogLevel.ERROR, "ANR in com.example"));
+        assertNotNull(anr);
+        assertEquals(LogIncident.Type.ANR, anr.getType());
+        detector.process(event(50, "ActivityManager", LogLevel.ERROR, "Reason: keyDispatchingTimedOut"));
+        detector.process(event(50, "ActivityManager", LogLevel.ERROR, "Load: 1.5 / 0.9 / 0.4"));
+        assertEquals(3, anr.getEvents().size());
+
+        // other messages of the same tag don't start an incident
+        assertNull(detector.process(event(50, "ActivityManager", LogLevel.INFO, "Start proc com.example")));
+    }
+
+    @Test
+    public void testNativeCrash() {
+        LogIncidentDetector detector = new LogIncidentDetector("device");
+        LogIncident tombstone = detector.process(event(70, "DEBUG", LogLevel.ASSERT,
+                "*** *** *** *** *** *** *** *** *** *** *** *** *** *** *** ***"));
+        assertEquals(LogIncident.Type.NATIVE_CRASH, tombstone.getType());
+    }
+
+    @Test
+    public void testContinuationGroupedByPidAndTag() {
+        LogIncidentDetector detector = new LogIncidentDetector("device");
+        LogIncident crash = detector.process(event(100, "AndroidRuntime", LogLevel.ERROR, "FATAL EXCEPTION: main"));
+        // another process using the same tag doesn't continue the incident and ends it
+        detector.process(event(200, "AndroidRuntime", LogLevel.ERROR, "java.lang.IllegalStateException"));
+        detector.process(event(100, "AndroidRuntime", LogLevel.ERROR, "java.lang.NullPointerException"));
+        assertEquals(1, crash.getEvents().size());
+
+        crash = detector.process(event(100, "AndroidRuntime", LogLevel.ERROR, "FATAL EXCEPTION: main"));
+        detector.process(event(100, "AndroidRuntime", LogLevel.ERROR, "java.lang.NullPointerException"));
+        // the same process with another tag ends the incident as well
+        detector.process(event(100, "Process", LogLevel.INFO, "Sending signal. PID: 100 SIG: 9"));
+        detector.process(event(100, "AndroidRuntime", LogLevel.ERROR, "\tat com.example.Main.onCreate(Main.java:42)"));
+        assertEquals(2, crash.getEvents().size());
+        assertNull(crash.getStackTraceElement());
+        assertEquals(2, detector.getIncidents().size());
+    }
+
+    @Test
+    public void testLimits() {
+        LogIncidentDetector detector = new LogIncidentDetector("device");
+        LogIncident crash = detector.process(event(100, "AndroidRuntime", LogLevel.ERROR, "FATAL EXCEPTION: main"));
+        for (int i = 0; i < LogIncidentDetector.MAX_INCIDENT_EVENTS + 10; i++) {
+            detector.process(event(100, "AndroidRuntime", LogLevel.ERROR, "\tat com.example.Main.f" + i + "(Main.java:1)"));
+        }
+        assertEquals(LogIncidentDetector.MAX_INCIDENT_EVENTS, crash.getEvents().size());
+
+        for (int i = 0; i < LogIncidentDetector.MAX_INCIDENTS; i++) {
+            detector.process(event(i, "ActivityManager", LogLevel.ERROR, "ANR in com.example"));
+        }
+        List<LogIncident> incidents = detector.getIncidents();
+        assertEquals(LogIncidentDetector.MAX_INCIDENTS, incidents.size());
+        assertEquals(LogIncident.Type.ANR, incidents.get(0).getType());
+
+        detector.clear();
+        assertTrue(detector.getIncidents().isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test parsing of {@code logcat -v long} output.
+ */
+public class LogLineParserTest {
+
+    private static final LogLineParser.ProcessNames NO_NAMES = new LogLineParser.ProcessNames() {
+
+        @Override
+        public String[] getProcessNameRef(int pid) {
+            return new String[1];
+        }
+    };
+
+    @Test
+    public void testHexThreadId() {
+        // devices before API level 21 print the thread ID in hex
+        LogLineParser parser = new LogLineParser(NO_NAMES);
+        LogEventInfo header = parser.parseHeader("[ 10-19 12:00:00.123  1234:0x162e I/ActivityManager ]");
+        assertNotNull(header);
+        assertEquals(1234, header.getPid());
+        assertEquals("12:00:00.123", header.getTime());
+        assertEquals("ActivityManager", header.getTag());
+        assertEquals(LogLevel.INFO, header.getLevel());
+        assertEquals("10-19 12:00:00.123", parser.getLastTimestamp());
+    }
+
+    @Test
+    public void testDecimalThreadId() {
+        // API level 21 and newer print it in decimal, padded by spaces
+        LogLineParser parser = new LogLineParser(NO_NAMES);
+        LogEventInfo header = parser.parseHeader("[ 10-19 12:00:00.123  1234: 5678 I/Tag ]");
+        assertNotNull(header);
+        assertEquals(1234, header.getPid());
+        assertEquals("Tag", header.getTag());
+
+        header = parser.parseHeader("[ 01-02 03:04:05.678   567:  567 W/chatty   ]");
+        assertNotNull(header);
+        assertEquals(567, header.getPid());
+        assertEquals("chatty", header.getTag());
+        assertEquals(LogLevel.WARN, header.getLevel());
+        assertEquals("01-02 03:04:05.678", parser.getLastTimestamp());
+    }
+
+    @Test
+    public void testAssertLevels() {
+        LogLineParser parser = new LogLineParser(NO_NAMES);
+        assertEquals(LogLevel.ASSERT, parser.parseHeader("[ 10-19 12:00:00.123  1234:0x162e A/DEBUG ]").getLevel());
+        assertEquals(LogLevel.ASSERT, parser.parseHeader("[ 10-19 12:00:00.123  1234: 1234 F/libc ]").getLevel());
+    }
+
+    @Test
+    public void testMessageUsesLastHeader() {
+        LogLineParser parser = new LogLineParser(NO_NAMES);
+        assertNull(parser.parseLine("[ 10-19 12:00:00.123  1234: 5678 E/AndroidRuntime ]"));
+        LogEvent event = parser.parseLine("FATAL EXCEPTION: main");
+        assertEquals("AndroidRuntime", event.getTag());
+        assertEquals(LogLevel.ERROR, event.getLevel());
+        assertEquals("FATAL EXCEPTION: main", event.getMessage());
+        assertNull(parser.parseLine(""));
+        assertNull(parser.parseLine("--------- beginning of /dev/log/main"));
+    }
+
+    @Test
+    public void testNoHeader() {
+        LogLineParser parser = new LogLineParser(NO_NAMES);
+        assertNull(parser.parseHeader("[ 10-19 12:00:00.123  1234: 5678 X/Tag ]"));
+        assertNull(parser.parseHeader("at com.example.Main.main(Main.java:10)"));
+        assertNull(parser.getLastTimestamp());
+    }
+
+    @Test
+    public void testCompareTimestamps() {
+        assertTrue(LogLineParser.compareTimestamps("10-19 12:00:00.123", "10-19 12:00:00.124") < 0);
+        assertTrue(LogLineParser.compareTimestamps("10-20 00:00:00.000", "10-19 23:59:59.999") > 0);
+        assertEquals(0, LogLineParser.compareTimestamps("10-19 12:00:00.123", "10-19 12:00:00.123"));
+        // turn of the year
+        assertTrue(LogLineParser.compareTimestamps("01-01 00:00:00.001", "12-31 23:59:59.999") > 0);
+        assertTrue(LogLineParser.compareTimestamps("12-31 23:59:59.999", "01-01 00:00:00.001") < 0);
+    }
+}
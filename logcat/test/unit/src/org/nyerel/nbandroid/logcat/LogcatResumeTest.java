@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test resuming the logcat of reconnected devices.
+ */
+public class LogcatResumeTest {
+
+    private static final String SERIAL = "emulator-5554";
+
+    @Test
+    public void testFirstConnectionReadsEverything() {
+        LogcatResume resume = new LogcatResume();
+        LogcatResume.Session session = resume.start(SERIAL, true);
+        assertEquals("logcat -v long", session.getCommand());
+        assertFalse(session.isReplayed("03-01 10:00:00.000"));
+        assertFalse(session.isReplayed("02-01 10:00:00.000"));
+    }
+
+    @Test
+    public void testResumeWithSince() {
+        LogcatResume resume = new LogcatResume();
+        LogcatResume.Session first = resume.start(SERIAL, true);
+        first.isReplayed("03-01 10:00:00.000");
+        first.isReplayed("03-01 10:00:01.000");
+        first.isReplayed("03-01 10:00:01.000");
+
+        LogcatResume.Session second = resume.start(SERIAL, true);
+        assertEquals("logcat -v long -T '03-01 10:00:01.000'", second.getCommand());
+        // -T repeats the entries of the last time, only new ones are read
+        assertTrue(second.isReplayed("03-01 10:00:01.000"));
+        assertTrue(second.isReplayed("03-01 10:00:01.000"));
+        assertFalse(second.isReplayed("03-01 10:00:01.000"));
+        assertFalse(second.isReplayed("03-01 10:00:02.000"));
+
+        assertEquals("other devices are independent", "logcat -v long",
+                resume.start("emulator-5556", true).getCommand());
+    }
+
+    @Test
+    public void testSkipHistoryOfOldDevices() {
+        LogcatResume resume = new LogcatResume();
+        LogcatResume.Session first = resume.start(SERIAL, false);
+        first.isReplayed("03-01 10:00:00.000");
+        first.isReplayed("03-01 10:00:01.000");
+
+        LogcatResume.Session second = resume.start(SERIAL, false);
+        assertEquals("logcat -v long", second.getCommand());
+        assertTrue(second.isReplayed("03-01 09:59:00.000"));
+        assertTrue(second.isReplayed("03-01 10:00:00.000"));
+        assertTrue(second.isReplayed("03-01 10:00:01.000"));
+        assertFalse(second.isReplayed("03-01 10:00:01.000"));
+        // once caught up, nothing is skipped any more
+        assertFalse(second.isReplayed("03-01 10:00:00.500"));
+
+        LogcatResume.Session third = resume.start(SERIAL, false);
+        assertTrue(third.isReplayed("03-01 10:00:01.000"));
+        assertTrue(third.isReplayed("03-01 10:00:01.000"));
+        assertFalse(third.isReplayed("03-01 10:00:02.000"));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat;
+
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the per-tag token bucket.
+ */
+public class TagRateLimiterTest {
+
+    @Test
+    public void testBurstThenRefill() {
+        TagRateLimiter limiter = new TagRateLimiter(10, 5, 0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("entry " + i, 0, limiter.accept("Tag", 1000));
+        }
+        assertEquals(TagRateLimiter.REJECTED, limiter.accept("Tag", 1000));
+        assertEquals(TagRateLimiter.REJECTED, limiter.accept("Tag", 1050));
+
+        // 10 entries per second, one token is back after 100 ms
+        assertEquals(2, limiter.accept("Tag", 1100));
+        assertEquals(TagRateLimiter.REJECTED, limiter.accept("Tag", 1100));
+        assertEquals(Collections.singletonMap("Tag", 3L), limiter.getSuppressedCounts());
+    }
+
+    @Test
+    public void testTagsAreIndependent() {
+        TagRateLimiter limiter = new TagRateLimiter(1, 1, 0);
+        assertEquals(0, limiter.accept("A", 0));
+        assertEquals(TagRateLimiter.REJECTED, limiter.accept("A", 0));
+        assertEquals(0, limiter.accept("B", 0));
+        assertEquals(TagRateLimiter.REJECTED, limiter.accept("A", 10));
+
+        // the recovered count belongs to the tag, not to the last rejected entry
+        assertEquals(0, limiter.accept("B", 1000));
+        assertEquals(2, limiter.accept("A", 1000));
+    }
+
+    @Test
+    public void testSampling() {
+        TagRateLimiter limiter = new TagRateLimiter(1, 1, 3);
+        assertEquals(0, limiter.accept("Tag", 0));
+        int accepted = 0;
+        for (int i = 0; i < 9; i++) {
+            if (limiter.accept("Tag", 0) != TagRateLimiter.REJECTED) {
+                accepted++;
+            }
+        }
+        assertEquals(3, accepted);
+        assertEquals(Long.valueOf(6), limiter.getSuppressedCounts().get("Tag"));
+    }
+
+    @Test
+    public void testDefaults() {
+        TagRateLimiter limiter = new TagRateLimiter(20);
+        assertEquals(20, limiter.getEntriesPerSecond());
+        assertEquals(20, limiter.getBurst());
+        assertEquals(TagRateLimiter.DEFAULT_SAMPLE_EVERY, limiter.getSampleEvery());
+    }
+
+    @Test
+    public void testReset() {
+        TagRateLimiter limiter = new TagRateLimiter(1, 1, 0);
+        limiter.accept("Tag", 0);
+        limiter.accept("Tag", 0);
+        assertFalse(limiter.getSuppressedCounts().isEmpty());
+        limiter.reset();
+        assertTrue(limiter.getSuppressedCounts().isEmpty());
+        assertEquals(0, limiter.accept("Tag", 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        new TagRateLimiter(0);
+    }
+}
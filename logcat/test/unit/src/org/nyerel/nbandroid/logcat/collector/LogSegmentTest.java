@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat.collector;
+
+import com.android.ddmlib.Log.LogLevel;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nyerel.nbandroid.logcat.LogEvent;
+import org.nyerel.nbandroid.logcat.LogEventInfo;
+import org.nyerel.nbandroid.logcat.LogEventStore;
+import static org.junit.Assert.*;
+
+/**
+ * Test writing log segments and reading them back.
+ */
+public class LogSegmentTest {
+
+    private static final String DEVICE = "emulator-5554";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("logsegments", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static List<LogEvent> events() {
+        LogEventInfo start = new LogEventInfo(100, new String[] {"com.example"}, "12:00:00.001", "AndroidRuntime", LogLevel.ERROR);
+        LogEventInfo unknown = new LogEventInfo(200, new String[1], "12:00:00.002", "dalvikvm", LogLevel.DEBUG);
+        LogEventInfo later = new LogEventInfo(100, new String[] {"com.example"}, "12:00:01.000", "AndroidRuntime", LogLevel.ERROR);
+        return Arrays.asList(
+                new LogEvent(start, "FATAL EXCEPTION: main"),
+                new LogEvent(start, "java.lang.NullPointerException"),
+                new LogEvent(start, "    at com.example.Main.onCreate(Main.java:42)"),
+                new LogEvent(unknown, "GC_CONCURRENT freed 1024K"),
+                new LogEvent(later, "Caused by: ünicode"));
+    }
+
+    private List<LogEvent> readAll(File[] segments) throws IOException {
+        LogEventStore store = new LogEventStore();
+        Arrays.sort(segments);
+        for (File segment : segments) {
+            assertEquals(DEVICE, LogSegmentReader.read(segment, store));
+        }
+        return new ArrayList<LogEvent>(store.getEvents(DEVICE));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        LogSegmentWriter writer = new LogSegmentWriter(dir, DEVICE, 1000);
+        for (LogEvent event : events()) {
+            writer.write(event);
+        }
+        writer.close();
+
+        List<LogEvent> read = readAll(dir.listFiles());
+        assertEquals(events(), read);
+        assertEquals("com.example", read.get(0).getProcessName());
+        assertNull(read.get(3).getProcessNameRef()[0]);
+        assertEquals(LogLevel.DEBUG, read.get(3).getLevel());
+        assertNotNull(read.get(2).getStackTraceElement());
+    }
+
+    @Test
+    public void testSegmentsAreRotated() throws IOException {
+        LogSegmentWriter writer = new LogSegmentWriter(dir, DEVICE, 2);
+        for (LogEvent event : events()) {
+            writer.write(event);
+        }
+        writer.close();
+
+        assertEquals(3, dir.listFiles().length);
+        assertEquals(events(), readAll(dir.listFiles()));
+    }
+
+    @Test
+    public void testWriteAfterCloseIsIgnored() throws IOException {
+        LogSegmentWriter writer = new LogSegmentWriter(dir, DEVICE, 1000);
+        writer.write(events().get(0));
+        writer.close();
+        writer.write(events().get(3));
+        writer.flush();
+        writer.close();
+
+        assertEquals(1, dir.listFiles().length);
+        assertEquals(events().subList(0, 1), readAll(dir.listFiles()));
+    }
+
+    @Test
+    public void testTruncatedSegment() throws IOException {
+        LogSegmentWriter writer = new LogSegmentWriter(dir, DEVICE, 1000);
+        for (LogEvent event : events()) {
+            writer.write(event);
+        }
+        writer.close();
+
+        // cut the segment like a killed collector would
+        File segment = dir.listFiles()[0];
+        byte[] data = new byte[(int) segment.length()];
+        FileInputStream in = new FileInputStream(segment);
+        try {
+            assertEquals(data.length, in.read(data));
+        } finally {
+            in.close();
+        }
+        FileOutputStream out = new FileOutputStream(segment);
+        try {
+            out.write(data, 0, data.length - 12);
+        } finally {
+            out.close();
+        }
+
+        List<LogEvent> read = readAll(dir.listFiles());
+        assertFalse(read.isEmpty());
+        assertEquals(events().subList(0, read.size()), read);
+    }
+}
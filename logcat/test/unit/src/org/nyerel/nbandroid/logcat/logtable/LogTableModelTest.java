@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nyerel.nbandroid.logcat.logtable;
+
+import com.android.ddmlib.Log.LogLevel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.nyerel.nbandroid.logcat.LogEvent;
+import org.nyerel.nbandroid.logcat.LogEventInfo;
+import static org.junit.Assert.*;
+
+/**
+ * Test the rate limit of filtered tables.
+ */
+public class LogTableModelTest {
+
+    private static List<LogEvent> history(String... times) {
+        List<LogEvent> events = new ArrayList<LogEvent>();
+        for (int i = 0; i < times.length; i++) {
+            LogEventInfo info = new LogEventInfo(100, new String[] {"com.example"}, times[i], "Chatty", LogLevel.DEBUG);
+            events.add(new LogEvent(info, "message " + i));
+        }
+        return events;
+    }
+
+    @Test
+    public void testTimeOfDay() {
+        assertEquals(0, LogTableModel.timeOfDay("00:00:00.000"));
+        assertEquals(((13 * 60 + 2) * 60 + 3) * 1000 + 4, LogTableModel.timeOfDay("13:02:03.004"));
+        assertEquals(-1, LogTableModel.timeOfDay(""));
+        assertEquals(-1, LogTableModel.timeOfDay("LogCat Error"));
+    }
+
+    @Test
+    public void testSpreadHistoryIsNotSuppressed() {
+        LogTableModel model = new LogTableModel(new LogFilter("chatty", null, null, null, 1));
+        model.addNewEvents(history("10:00:00.000", "10:00:02.000", "10:00:04.000", "10:00:06.000",
+                "23:59:59.000", "00:00:01.000", "00:00:03.000"));
+        assertEquals(7, model.getRowCount());
+        assertTrue(model.getSuppressedEntryCounts().isEmpty());
+    }
+
+    @Test
+    public void testBurstInHistoryIsSuppressed() {
+        LogTableModel model = new LogTableModel(new LogFilter("chatty", null, null, null, 1));
+        model.addNewEvents(history("10:00:00.000", "10:00:00.100", "10:00:00.200", "10:00:00.300"));
+        assertEquals(1, model.getRowCount());
+        assertEquals(Long.valueOf(3), model.getSuppressedEntryCounts().get("Chatty"));
+    }
+}
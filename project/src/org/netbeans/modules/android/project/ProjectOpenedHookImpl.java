@@ -14,14 +14,24 @@
 
 package org.netbeans.modules.android.project;
 
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.netbeans.modules.android.core.sdk.DalvikPlatformManager;
 import org.netbeans.modules.android.project.queries.ClassPathProviderImpl;
+import org.netbeans.modules.android.project.spi.AndroidProjectWarmUp;
 import org.netbeans.spi.project.ui.ProjectOpenedHook;
+import org.openide.util.Lookup;
+import org.openide.util.RequestProcessor;
 
 final class ProjectOpenedHookImpl extends ProjectOpenedHook {
 
+    private static final Logger LOG = Logger.getLogger(ProjectOpenedHookImpl.class.getName());
+    /** Runs warm-up of opened projects one by one, interruptible when a project is closed. */
+    private static final RequestProcessor RP = new RequestProcessor(ProjectOpenedHookImpl.class.getName(), 1, true);
+
     private final AndroidProject project;
     private final PropertiesHelper propHelper;
+    private RequestProcessor.Task warmUpTask;
 
     ProjectOpenedHookImpl(AndroidProject project, PropertiesHelper propHelper) {
         this.project = project;
@@ -36,10 +46,41 @@ final class ProjectOpenedHookImpl extends ProjectOpenedHook {
 
         // do an upgrade if needed
         AndroidProjectUtil.upgradeProject(project);
+
+        scheduleWarmUp();
     }
 
     protected @Override void projectClosed() {
         project.getLookup().lookup(ClassPathProviderImpl.class).unregister();
+        synchronized (this) {
+            if (warmUpTask != null) {
+                warmUpTask.cancel();
+                warmUpTask = null;
+            }
+        }
+    }
+
+    private synchronized void scheduleWarmUp() {
+        if (warmUpTask != null) {
+            warmUpTask.cancel();
+        }
+        warmUpTask = RP.post(new Runnable() {
+
+            @Override
+            public void run() {
+                for (AndroidProjectWarmUp warmUp : Lookup.getDefault().lookupAll(AndroidProjectWarmUp.class)) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        LOG.log(Level.FINE, "warm-up of {0} cancelled", project);
+                        return;
+                    }
+                    try {
+                        warmUp.warmUp(project);
+                    } catch (RuntimeException ex) {
+                        LOG.log(Level.INFO, "warm-up of " + project + " failed", ex);
+                    }
+                }
+            }
+        }, 0, Thread.MIN_PRIORITY);
     }
 
 }
@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.netbeans.modules.android.project.spi;
+
+import org.netbeans.api.project.Project;
+
+/**
+ * Extension registered into global lookup to prepare data used by editors of an Android project
+ * (e.g. parsed platform metadata) before they are needed.
+ * <p>
+ * Called in a low priority background thread after a project is opened. The thread is interrupted
+ * when the project is closed, implementations should check {@link Thread#isInterrupted()} of the current
+ * thread between steps. They should not clear the interrupted status, the caller checks it too.
+ */
+public interface AndroidProjectWarmUp {
+
+  void warmUp(Project project);
+}